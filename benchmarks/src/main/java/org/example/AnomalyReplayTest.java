@@ -0,0 +1,166 @@
+package org.example;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejeu d'un trafic avec incident à travers le service ({@link AnomalyDetector} sur chaque epoch fermée).
+ *
+ * {@code windows} fenêtres de {@code logsPerWindow} logs : trafic normal (≈ 1 % de 404, 0,5 % de 500, latence 40-160 ms),
+ * puis à partir de la fenêtre {@code 3/4} et pendant 5 fenêtres, l'URL /pay du service payment passe à 30 % de 503
+ * et sa latence triple. Chaque epoch est fermée à la main une fois tous ses logs traités, comme l'epoch closer.
+ *
+ * Rapporte le délai de détection (en fenêtres : 0 = alerte à la fermeture de la première fenêtre du pic) de chaque signal
+ * attendu, le délai entre le début de la fermeture et la publication des alertes, les fausses alertes, et le coût
+ * de la détection (étape {@code detect}, un seul thread) par fenêtre et par million de logs.
+ * Sort avec le code 1 si un signal attendu n'est pas détecté dans la fenêtre du pic, ou en cas de fausse alerte.
+ *
+ * Usage : AnomalyReplayTest [windows] [logsPerWindow] [urls]
+ */
+public class AnomalyReplayTest {
+    private static final int POOL = 100_000;
+    private static final int SPIKE_WINDOWS = 5;
+    private static final String SPIKE_URL = "/pay";
+    private static final String SPIKE_SERVICE = "payment";
+    private static final List<String> EXPECTED = List.of(
+            "url /pay errorRate5xx", "url /pay latencyMs", "service payment errorRate5xx", "service payment latencyMs");
+
+    public static void main(String[] args) throws Exception {
+        int windows = args.length > 0 ? Integer.parseInt(args[0]) : 60;
+        int logsPerWindow = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int urls = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int spikeStart = windows * 3 / 4;
+        Metrics.addRegistry(new SimpleMeterRegistry());
+
+        String[] urlNames = LogGenerator.vocabulary(LogGenerator.DEFAULT_URLS, "/api/resource/", urls);
+        String[] serviceNames = LogGenerator.vocabulary(LogGenerator.DEFAULT_SERVICES, "service-", 8);
+        byte[][] normal = pool(urlNames, serviceNames, false, 1);
+        byte[][] spike = pool(urlNames, serviceNames, true, 2);
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(1, TimeUnit.HOURS.toMillis(1));
+        Map<String, Long> detectedAt = new LinkedHashMap<>();
+        Map<String, Long> resolvedAt = new LinkedHashMap<>();
+        List<String> falseAlerts = new ArrayList<>();
+        LatencyHistogram closeToAlertMicros = new LatencyHistogram();
+        LatencyHistogram detectNanosPerWindow = new LatencyHistogram();
+        long records = 0;
+        try {
+            service.startWorkers();
+            SplittableRandom random = new SplittableRandom(11);
+            for (int window = 0; window < windows; window++) {
+                boolean spiking = window >= spikeStart && window < spikeStart + SPIKE_WINDOWS;
+                service.submitRecords(slice(spiking ? spike : normal, random.nextInt(POOL), logsPerWindow));
+                service.awaitSubmitted();
+                records += logsPerWindow;
+
+                double detectBefore = KafkaLogAnalyserService.metrics.detect.totalTime(TimeUnit.NANOSECONDS);
+                long closeStart = System.nanoTime();
+                service.closeEpoch();
+                detectNanosPerWindow.record((long) (KafkaLogAnalyserService.metrics.detect.totalTime(TimeUnit.NANOSECONDS) - detectBefore));
+                long epoch = service.epochs();
+                boolean any = false;
+                for (Object item : (List<?>) KafkaLogAnalyserService.alerts.data().get("recent")) {
+                    Map<?, ?> alert = (Map<?, ?>) item;
+                    if (((Number) alert.get("epoch")).longValue() != epoch) {
+                        break;
+                    }
+                    any = true;
+                    String name = alert.get("scope") + " " + alert.get("key") + " " + alert.get("signal");
+                    if ("RESOLVED".equals(alert.get("state"))) {
+                        resolvedAt.putIfAbsent(name, (long) window);
+                    } else if (EXPECTED.contains(name) && window >= spikeStart) {
+                        detectedAt.putIfAbsent(name, (long) window - spikeStart);
+                    } else {
+                        falseAlerts.add("fenêtre " + window + " : " + name);
+                    }
+                }
+                if (any) {
+                    closeToAlertMicros.record((System.nanoTime() - closeStart) / 1000);
+                }
+            }
+        } finally {
+            service.stopWorkers();
+            System.setOut(console);
+        }
+
+        double detectNanos = KafkaLogAnalyserService.metrics.detect.totalTime(TimeUnit.NANOSECONDS);
+        long evaluated = KafkaLogAnalyserService.metrics.detect.count();
+        console.printf("Rejeu            : %d fenêtres × %,d logs, %d URLs, pic de %d fenêtres à partir de la fenêtre %d%n",
+                windows, logsPerWindow, urls, SPIKE_WINDOWS, spikeStart);
+        boolean ok = true;
+        for (String expected : EXPECTED) {
+            Long delay = detectedAt.get(expected);
+            Long resolved = resolvedAt.get(expected);
+            ok &= delay != null && delay == 0;
+            console.printf("  %-30s détecté %s, résolu %s%n", expected,
+                    delay == null ? "NON" : "après " + delay + " fenêtre(s)",
+                    resolved == null ? "—" : (resolved - spikeStart - SPIKE_WINDOWS) + " fenêtre(s) après la fin du pic");
+        }
+        console.printf("Fausses alertes  : %d%n", falseAlerts.size());
+        falseAlerts.stream().limit(10).forEach(alert -> console.println("  " + alert));
+        console.printf("Fermeture → alertes publiées : p50 %.2f ms | max %.2f ms%n",
+                closeToAlertMicros.valueAtPercentile(50) / 1000.0, closeToAlertMicros.max() / 1000.0);
+        console.printf("Coût détection   : %.1f µs par fenêtre en moyenne (JIT à froid compris), %.2f ms par million de logs%n",
+                detectNanos / evaluated / 1000, detectNanos / records);
+        long medianNanos = detectNanosPerWindow.valueAtPercentile(50);
+        console.printf("                   médiane %.1f µs par fenêtre, soit %.3f ms par million de logs à ce remplissage%n",
+                medianNanos / 1000.0, medianNanos * 1e6 / logsPerWindow / 1e6);
+        System.exit(ok && falseAlerts.isEmpty() ? 0 : 1);
+    }
+
+    /** {@code count} logs du pool à partir de {@code from}, en bouclant. */
+    private static List<byte[]> slice(byte[][] pool, int from, int count) {
+        List<byte[]> slice = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            slice.add(pool[(from + i) % pool.length]);
+        }
+        return slice;
+    }
+
+    /** Logs au format du Producer ; chaque URL appartient toujours au même service, et payment n'a que /pay. */
+    private static byte[][] pool(String[] urls, String[] services, boolean spike, long seed) {
+        String[] others = Arrays.stream(services).filter(name -> !name.equals(SPIKE_SERVICE)).toArray(String[]::new);
+        SplittableRandom random = new SplittableRandom(seed);
+        String timestamp = LocalDateTime.now().toString();
+        byte[][] pool = new byte[POOL][];
+        for (int i = 0; i < POOL; i++) {
+            int urlIndex = random.nextInt(urls.length);
+            String url = urls[urlIndex];
+            String service = url.equals(SPIKE_URL) ? SPIKE_SERVICE : others[urlIndex % others.length];
+            boolean incident = spike && url.equals(SPIKE_URL);
+            double draw = random.nextDouble();
+            int status = incident && draw < 0.30 ? 503 : draw < 0.005 ? 500 : draw < 0.015 ? 404 : 200;
+            long latencyMs = (40 + random.nextInt(120)) * (incident ? 3 : 1);
+            String level = status >= 500 ? "ERROR" : status >= 400 ? "WARN" : "INFO";
+            pool[i] = String.format("""
+                    {
+                      "timestamp": "%s",
+                      "level": "%s",
+                      "method": "%s",
+                      "url": "%s",
+                      "status": %d,
+                      "latencyMs": %d,
+                      "clientIp": "10.0.%d.%d",
+                      "message": "Requête traitée",
+                      "service": "%s"
+                    }
+                    """, timestamp, level, random.nextBoolean() ? "GET" : "POST", url, status, latencyMs,
+                    random.nextInt(256), random.nextInt(256), service).getBytes(StandardCharsets.UTF_8);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,226 @@
+package org.example;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Archive locale ({@link LogArchive}) : écriture par les workers, puis lecture des segments mappés et rejeu.
+ *
+ * {@code records} logs répartis sur {@code hours} heures d'event time traversent le service (extraction, agrégation,
+ * archivage), puis l'archive est relue :
+ * <ul>
+ *   <li>scan brut (CRC, décompression, décodage des colonnes, sans agrégation) : Go/s lus et logs/s ;</li>
+ *   <li>rejeu complet par le chemin d'agrégation du service ({@code aggregate}), pour 1 thread et chaque nombre
+ *       de threads demandé : logs/s et facteur par rapport au temps réel couvert par l'archive ;</li>
+ *   <li>rejeu d'une URL rare (un export de quelques minutes) sur un quart de la plage : blocs sautés grâce à l'index
+ *       (plage d'heures et filtre des URLs de chaque bloc).</li>
+ * </ul>
+ * Les segments viennent d'être écrits : ils sont dans le cache de pages, comme une archive récente relue.
+ * Sort avec le code 1 si un rejeu ne retrouve pas tous les logs archivés.
+ *
+ * Usage : ArchiveScanBenchmark [records] [hours] [threads...]
+ */
+public class ArchiveScanBenchmark {
+    private static final int CHUNK = 100_000;
+    private static final int URLS = 200;
+    private static final int ROUNDS = 5;
+    private static final String RARE_URL = "/api/export";
+
+    public static void main(String[] args) throws Exception {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int hours = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        List<Integer> threads = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            threads.add(Integer.parseInt(args[i]));
+        }
+        if (threads.isEmpty()) {
+            threads.add(1);
+            int cpus = Runtime.getRuntime().availableProcessors();
+            for (int n = 2; n <= cpus; n *= 2) {
+                threads.add(n);
+            }
+        }
+        Metrics.addRegistry(new SimpleMeterRegistry());
+
+        Path directory = Files.createTempDirectory("archive-bench");
+        LogArchive archive = new LogArchive(directory, 8192, 64L * 1024 * 1024, Long.MAX_VALUE, 1000, 256);
+        long startMillis = LocalDateTime.of(2024, 1, 1, 0, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+        long spanMillis = TimeUnit.HOURS.toMillis(hours);
+        String[] urls = LogGenerator.vocabulary(LogGenerator.DEFAULT_URLS, "/api/resource/", URLS);
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long jsonBytes = 0;
+        long ingestNanos;
+        try {
+            KafkaLogAnalyserService service = new KafkaLogAnalyserService(
+                    Math.max(1, Runtime.getRuntime().availableProcessors()), TimeUnit.HOURS.toMillis(1),
+                    null, null, null, archive);
+            service.startWorkers();
+            SplittableRandom random = new SplittableRandom(5);
+            long start = System.nanoTime();
+            for (int from = 0; from < records; from += CHUNK) {
+                List<byte[]> chunk = chunk(random, urls, from, Math.min(CHUNK, records - from), records, startMillis, spanMillis);
+                for (byte[] record : chunk) {
+                    jsonBytes += record.length;
+                }
+                service.submitRecords(chunk);
+            }
+            service.awaitSubmitted();
+            ingestNanos = System.nanoTime() - start;
+            service.stopWorkers();
+        } finally {
+            System.setOut(console);
+        }
+
+        long archiveBytes = size(directory);
+        console.printf("Archive          : %,d logs (%,d perdus), %,.1f Mo de JSON → %,.1f Mo sur disque (× %.1f), %d segment(s)%n",
+                archive.archivedRecords(), records - archive.archivedRecords(), jsonBytes / 1e6, archiveBytes / 1e6,
+                (double) jsonBytes / archiveBytes, segments(directory));
+        console.printf("Ingestion        : %,.0f logs/s (JSON → fenêtres + archive, %d workers)%n",
+                records / (ingestNanos / 1e9), Runtime.getRuntime().availableProcessors());
+
+        boolean ok = archive.archivedRecords() == records;
+        long endMillis = startMillis + spanMillis;
+        for (int n : threads) {
+            ForkJoinPool pool = new ForkJoinPool(n);
+            LogArchive.Replay<Scan> scan = best(() -> archive.replay(startMillis, endMillis, null, pool, Scan::new));
+            LogArchive.Replay<Aggregate> replay = best(() -> archive.replay(startMillis, endMillis, null, pool, Aggregate::new));
+            pool.shutdown();
+            double scanSeconds = scan.nanos() / 1e9;
+            double replaySeconds = replay.nanos() / 1e9;
+            console.printf("%2d thread(s)     : scan %.2f Go/s lus (%.2f Go/s décompressés), %,.0f logs/s | "
+                            + "rejeu %,.0f logs/s, %,.0f × le temps réel%n",
+                    n, scan.compressedBytes() / scanSeconds / 1e9, scan.rawBytes() / scanSeconds / 1e9,
+                    scan.scannedRecords() / scanSeconds, replay.matchedRecords() / replaySeconds,
+                    spanMillis / 1e3 / replaySeconds);
+            ok &= scan.result().records == records && replay.result().window.getTotalLogs() == records;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads.get(threads.size() - 1));
+        String url = RARE_URL;
+        LogArchive.Replay<Aggregate> filtered = archive.replay(startMillis + spanMillis / 4, startMillis + spanMillis / 2,
+                url, pool, Aggregate::new);
+        pool.shutdown();
+        console.printf("Rejeu filtré     : %s sur un quart de la plage → %,d logs, %d blocs lus, %d sautés par l'index, %.1f ms%n",
+                url, filtered.result().window.getTotalLogs(), filtered.blocks(), filtered.skippedBlocks(),
+                filtered.nanos() / 1e6);
+        ok &= filtered.result().window.getTotalLogs() == filtered.matchedRecords() && filtered.matchedRecords() > 0;
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private interface ReplayRun<P> {
+        LogArchive.Replay<P> run() throws IOException;
+    }
+
+    /** Meilleur de ROUNDS rejeux, le premier servant aussi de chauffe. */
+    private static <P> LogArchive.Replay<P> best(ReplayRun<P> run) throws IOException {
+        LogArchive.Replay<P> best = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            LogArchive.Replay<P> replay = run.run();
+            if (best == null || replay.nanos() < best.nanos()) {
+                best = replay;
+            }
+        }
+        return best;
+    }
+
+    /** Scan brut : lecture et décodage des logs, sans agrégation. */
+    private static final class Scan implements LogArchive.Partial<Scan> {
+        long records;
+        long checksum;
+
+        @Override
+        public void accept(LogFields fields) {
+            records++;
+            checksum += fields.status() + fields.latencyMs();
+        }
+
+        @Override
+        public void merge(Scan other) {
+            records += other.records;
+            checksum += other.checksum;
+        }
+    }
+
+    /** Rejeu complet, par le même chemin d'agrégation que les workers. */
+    private static final class Aggregate implements LogArchive.Partial<Aggregate> {
+        final WindowAccumulator window = new WindowAccumulator();
+        final KafkaLogAnalyserService.IdCaches ids = new KafkaLogAnalyserService.IdCaches();
+
+        @Override
+        public void accept(LogFields fields) {
+            KafkaLogAnalyserService.aggregate(fields, ids, window, false);
+        }
+
+        @Override
+        public void merge(Aggregate other) {
+            window.merge(other.window);
+        }
+    }
+
+    /** Logs {@code from} à {@code from + count} au format du Producer, heures réparties uniformément sur la plage. */
+    private static List<byte[]> chunk(SplittableRandom random, String[] urls, int from, int count, int records,
+                                      long startMillis, long spanMillis) {
+        List<byte[]> chunk = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            long time = startMillis + spanMillis * i / records;
+            double draw = random.nextDouble();
+            int status = draw < 0.01 ? 500 : draw < 0.04 ? 404 : 200;
+            String level = status >= 500 ? "ERROR" : status >= 400 ? "WARN" : "INFO";
+            //L'export ne tourne que quelques minutes, vers le tiers de la plage
+            boolean export = Math.abs(time - startMillis - spanMillis / 3) < spanMillis / 120 && random.nextInt(20) == 0;
+            String url = export ? RARE_URL : urls[random.nextInt(urls.length)];
+            chunk.add(String.format("""
+                    {
+                      "timestamp": "%s",
+                      "level": "%s",
+                      "method": "%s",
+                      "url": "%s",
+                      "status": %d,
+                      "latencyMs": %d,
+                      "clientIp": "10.0.%d.%d",
+                      "message": "Requête traitée",
+                      "service": "service-%d"
+                    }
+                    """, Instant.ofEpochMilli(time),
+                    level, random.nextBoolean() ? "GET" : "POST", url, status, 20 + random.nextInt(400),
+                    random.nextInt(16), random.nextInt(256), Math.floorMod(url.hashCode(), 8))
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        return chunk;
+    }
+
+    private static long size(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static long segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
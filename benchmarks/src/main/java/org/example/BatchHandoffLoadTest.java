@@ -0,0 +1,210 @@
+package org.example;
+
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare la remise des batches collecteur → workers avant et après le passage aux octets :
+ * <ul>
+ *   <li>legacy : StringDeserializer, copie {@code new ArrayList<>(currentBatch)}, LinkedBlockingQueue,
+ *       puis ré-encodage en octets pour l'extracteur ;</li>
+ *   <li>ring : ByteArrayDeserializer, {@link LogBatch} pré-alloués dans un {@link BatchRingBuffer}.</li>
+ * </ul>
+ * Affiche le débit, les octets alloués par log (tous threads confondus) et l'activité du GC.
+ *
+ * Usage : BatchHandoffLoadTest [workers] [durationSeconds]
+ */
+public class BatchHandoffLoadTest {
+    private static final int BATCH_SIZE = 20;
+    private static final int POLL_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        List<byte[]> records = SyntheticLogs.records(POLL_SIZE, 42);
+
+        System.out.printf("%-8s %15s %12s %10s %10s%n", "mode", "logs/s", "B/log", "gc count", "gc ms");
+        for (String mode : new String[]{"legacy", "ring", "legacy", "ring"}) {
+            Result r = measure(mode, workers, durationSeconds, records);
+            System.out.printf("%-8s %15.0f %12.1f %10d %10d%n",
+                    mode, r.throughput, r.bytesPerRecord, r.gcCount, r.gcMillis);
+        }
+    }
+
+    private static Result measure(String mode, int workers, int durationSeconds, List<byte[]> records)
+            throws Exception {
+        AtomicLong processed = new AtomicLong();
+        List<Thread> threads = mode.equals("legacy")
+                ? legacyPipeline(workers, records, processed)
+                : ringPipeline(workers, records, processed);
+        threads.forEach(Thread::start);
+
+        Thread.sleep(2000);
+        long allocatedBefore = allocatedBytes();
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcMillis();
+        long countBefore = processed.get();
+        long start = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        long elapsed = System.nanoTime() - start;
+        long count = processed.get() - countBefore;
+        long allocated = allocatedBytes() - allocatedBefore;
+        Result result = new Result(count * 1e9 / elapsed, (double) allocated / count,
+                gcCount() - gcCountBefore, gcMillis() - gcTimeBefore);
+
+        for (Thread t : threads) {
+            t.interrupt();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        return result;
+    }
+
+    private static List<Thread> legacyPipeline(int workers, List<byte[]> records, AtomicLong processed) {
+        BlockingQueue<List<String>> queue = new LinkedBlockingQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            StringDeserializer deserializer = new StringDeserializer();
+            List<String> currentBatch = new ArrayList<>();
+            while (!Thread.currentThread().isInterrupted()) {
+                // La file n'était pas bornée : on limite ici pour ne pas mesurer un OutOfMemoryError
+                if (queue.size() > 1000) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                for (byte[] record : records) {
+                    currentBatch.add(deserializer.deserialize("web_logs", record));
+                    if (currentBatch.size() >= BATCH_SIZE) {
+                        queue.add(new ArrayList<>(currentBatch));
+                        currentBatch.clear();
+                    }
+                }
+            }
+        }, "legacy-collector"));
+        for (int i = 0; i < workers; i++) {
+            threads.add(new Thread(() -> {
+                Worker worker = new Worker(processed);
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        List<String> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                        if (batch != null) {
+                            for (String log : batch) {
+                                worker.process(log.getBytes(StandardCharsets.UTF_8));
+                            }
+                            worker.flush();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "legacy-worker-" + i));
+        }
+        return threads;
+    }
+
+    private static List<Thread> ringPipeline(int workers, List<byte[]> records, AtomicLong processed) {
+        BatchRingBuffer ring = new BatchRingBuffer(64, BATCH_SIZE);
+        List<Thread> threads = new ArrayList<>();
+        threads.add(new Thread(() -> {
+            LogBatch batch = null;
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    for (byte[] record : records) {
+                        if (batch == null) {
+                            batch = ring.claim();
+                        }
+                        batch.add(record);
+                        if (batch.isFull()) {
+                            ring.publish(batch);
+                            batch = null;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "ring-collector"));
+        for (int i = 0; i < workers; i++) {
+            threads.add(new Thread(() -> {
+                Worker worker = new Worker(processed);
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        LogBatch batch = ring.poll(100, TimeUnit.MILLISECONDS);
+                        if (batch != null) {
+                            for (int j = 0; j < batch.size(); j++) {
+                                worker.process(batch.get(j));
+                            }
+                            ring.release(batch);
+                            worker.flush();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "ring-worker-" + i));
+        }
+        return threads;
+    }
+
+    /** Corps de worker identique dans les deux modes : extraction streaming + compteurs locaux. */
+    private static final class Worker {
+        private final LogFieldExtractor extractor =
+                new StreamingLogFieldExtractor(EnumSet.of(LogField.URL, LogField.STATUS));
+        private final LogFields fields = new LogFields();
+        private final KeyIdCache urlIds = new KeyIdCache(KafkaLogAnalyserService.urlIds, 1024);
+        private final WindowAccumulator window = new WindowAccumulator();
+        private final AtomicLong processed;
+        private long pending;
+
+        Worker(AtomicLong processed) {
+            this.processed = processed;
+        }
+
+        void process(byte[] data) {
+            if (extractor.extract(data, fields)) {
+                window.record(fields.id(LogField.URL, urlIds), fields.status());
+                pending++;
+            }
+        }
+
+        void flush() {
+            processed.addAndGet(pending);
+            pending = 0;
+        }
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long id : mx.getAllThreadIds()) {
+            total += Math.max(0, mx.getThreadAllocatedBytes(id));
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private record Result(double throughput, double bytesPerRecord, long gcCount, long gcMillis) {
+    }
+}
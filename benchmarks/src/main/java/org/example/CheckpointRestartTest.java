@@ -0,0 +1,138 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Temps de redémarrage à chaud en fonction de la taille de l'état checkpointé.
+ *
+ * Pour chaque nombre d'URLs distinctes, un premier JVM traite des logs puis s'arrête (dernier point de
+ * reprise), un second JVM neuf relit ce point de reprise. On mesure la durée de restoreCheckpoint()
+ * (mmap, vérification CRC, décodage, premier snapshot JSON) à froid puis à chaud, et le délai depuis le lancement du JVM,
+ * et on vérifie que les cumuls relus sont exactement ceux d'avant l'arrêt. Sort avec le code 1 sinon.
+ *
+ * Usage : CheckpointRestartTest [logs]
+ */
+public class CheckpointRestartTest {
+    private static final int[] URL_COUNTS = {4, 64, 256, 1023};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--write")) {
+            write(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Path.of(args[3]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--restore")) {
+            restore(Path.of(args[1]));
+            return;
+        }
+
+        int logs = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        Path dir = Files.createTempDirectory("checkpoint-restart");
+        System.out.printf("%-8s %10s %12s %14s %16s %14s %8s%n",
+                "URLs", "logs", "taille Ko", "restore ms", "JVM → état ms", "à chaud ms", "exact");
+        boolean ok = true;
+        for (int urls : URL_COUNTS) {
+            Path file = dir.resolve("state-" + urls + ".ckpt");
+            String[] written = child("--write", Integer.toString(urls), Integer.toString(logs), file.toString());
+            String[] restored = child("--restore", file.toString());
+            boolean exact = written[1].equals(restored[0]);
+            ok &= exact;
+            System.out.printf("%-8d %10s %12d %14s %16s %14s %8s%n",
+                    urls, written[0], Files.size(file) / 1024, restored[1], restored[2], restored[3], exact ? "oui" : "NON");
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    /** Traite {@code logs} logs sur {@code urls} URLs distinctes, puis s'arrête en écrivant le point de reprise. */
+    private static void write(int urls, int logs, Path file) throws Exception {
+        List<byte[]> records = records(urls, logs, new Random(3));
+        PrintStream console = silence();
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(2, 60_000, null, file);
+        service.startWorkers();
+        service.submitRecords(records);
+        service.stopWorkers();
+        console.println("RESULT " + logs + " " + fingerprint());
+    }
+
+    private static void restore(Path file) {
+        PrintStream console = silence();
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(2, 60_000, null, file);
+        long start = System.nanoTime();
+        if (!service.restoreCheckpoint()) {
+            throw new IllegalStateException("Aucun point de reprise relu : " + file);
+        }
+        long restoreNanos = System.nanoTime() - start;
+        long sinceJvmStart = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        String restored = fingerprint();
+
+        // Relectures suivantes, JIT chaud : coût propre du mmap et du décodage
+        long warmNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            KafkaLogAnalyserService again = new KafkaLogAnalyserService(2, 60_000, null, file);
+            long warmStart = System.nanoTime();
+            again.restoreCheckpoint();
+            warmNanos = Math.min(warmNanos, System.nanoTime() - warmStart);
+        }
+        console.printf("RESULT %s %.1f %d %.2f%n", restored, restoreNanos / 1e6, sinceJvmStart, warmNanos / 1e6);
+    }
+
+    /** Empreinte des cumuls : totaux et compteur de chaque URL. */
+    private static String fingerprint() {
+        StatusCounts counts = KafkaLogAnalyserService.cumulativeCounts;
+        long hash = counts.getTotalLogs() * 31 + counts.getError4xx() * 17 + counts.getError5xx();
+        for (int id = 0; id < counts.urlLimit(); id++) {
+            hash = hash * 31 + counts.count(id, StatusCounts.REQUESTS);
+        }
+        return counts.getTotalLogs() + ":" + Long.toHexString(hash);
+    }
+
+    private static String[] child(String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), CheckpointRestartTest.class.getName()));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String result = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("RESULT ")) {
+                    result = line.substring("RESULT ".length());
+                }
+            }
+        }
+        if (process.waitFor() != 0 || result == null) {
+            throw new IllegalStateException("Échec du processus " + String.join(" ", args));
+        }
+        return result.split(" ");
+    }
+
+    private static PrintStream silence() {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return console;
+    }
+
+    /** Logs au format du Producer, sur {@code urls} URLs, avec des latences étalées sur plusieurs ordres de grandeur. */
+    private static List<byte[]> records(int urls, int logs, Random random) {
+        List<byte[]> records = new ArrayList<>(logs);
+        for (int i = 0; i < logs; i++) {
+            int status = random.nextInt(10) == 0 ? 500 : random.nextInt(10) == 0 ? 404 : 200;
+            long latencyMs = (long) Math.exp(random.nextDouble() * 12);
+            records.add(("{\"timestamp\": \"2025-01-01T12:00:00.000\", \"level\": \"INFO\", \"method\": \"GET\", "
+                    + "\"url\": \"/api/resource/" + random.nextInt(urls) + "\", \"status\": " + status
+                    + ", \"latencyMs\": " + latencyMs + ", \"clientIp\": \"10.0." + random.nextInt(256) + "." + random.nextInt(256)
+                    + "\", \"message\": \"ok\", \"service\": \"svc" + random.nextInt(8) + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coût des compteurs par log sous contention :
+ * <ul>
+ *   <li>{@code sharedAtomicLong} : ancien chemin, maps partagées URL → AtomicLong (fenêtre + cumul, 4xx/5xx par URL) ;</li>
+ *   <li>{@code sharedLongAdder} : mêmes maps avec des LongAdder (cellules striées par le JDK) ;</li>
+ *   <li>{@code denseIdCells} : chemin actuel, identifiant dense lu sur les octets puis cellules confinées au thread.</li>
+ * </ul>
+ * Le {@link #main} exécute les trois variantes à 1, 4, 16 et 64 threads (ou {@code -t N} via le runner JMH).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CounterContentionBenchmark {
+    private static final String[] URLS = {"/login", "/pay", "/home", "/dashboard"};
+    private static final int[] STATUSES = {200, 200, 200, 404, 500};
+
+    @State(Scope.Benchmark)
+    public static class SharedMaps {
+        final ConcurrentHashMap<String, AtomicLong> urlCounts = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, AtomicLong> urlCountsCumulative = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, AtomicLong> errorUrls = new ConcurrentHashMap<>();
+        final AtomicLong total = new AtomicLong();
+        final AtomicLong totalCumulative = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        final ConcurrentHashMap<String, LongAdder> urlAdders = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, LongAdder> urlAddersCumulative = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, LongAdder> errorUrlAdders = new ConcurrentHashMap<>();
+        final LongAdder totalAdder = new LongAdder();
+        final LongAdder totalAdderCumulative = new LongAdder();
+        final LongAdder errorAdder = new LongAdder();
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        final byte[][] urlBytes = new byte[URLS.length][];
+        final int[] urlPicks = new int[1024];
+        final int[] statusPicks = new int[1024];
+        int next;
+
+        final KeyIdCache urlIds = new KeyIdCache(KafkaLogAnalyserService.urlIds, 1024);
+        final StatusCounts cells = new StatusCounts();
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < URLS.length; i++) {
+                urlBytes[i] = URLS[i].getBytes(StandardCharsets.UTF_8);
+            }
+            Random random = new Random(Thread.currentThread().getId());
+            for (int i = 0; i < urlPicks.length; i++) {
+                urlPicks[i] = random.nextInt(URLS.length);
+                statusPicks[i] = STATUSES[random.nextInt(STATUSES.length)];
+            }
+        }
+    }
+
+    @Benchmark
+    public void sharedAtomicLong(SharedMaps maps, Worker worker) {
+        int i = worker.next++ & 1023;
+        // Comme l'ancien processLog() : une String par log puis les maps partagées
+        byte[] urlBytes = worker.urlBytes[worker.urlPicks[i]];
+        String url = new String(urlBytes, StandardCharsets.UTF_8);
+        int status = worker.statusPicks[i];
+        maps.urlCounts.computeIfAbsent(url, k -> new AtomicLong()).incrementAndGet();
+        maps.urlCountsCumulative.computeIfAbsent(url, k -> new AtomicLong()).incrementAndGet();
+        if (status >= 400) {
+            maps.errorUrls.computeIfAbsent(url, k -> new AtomicLong()).incrementAndGet();
+            maps.errors.incrementAndGet();
+        }
+        maps.total.incrementAndGet();
+        maps.totalCumulative.incrementAndGet();
+    }
+
+    @Benchmark
+    public void sharedLongAdder(SharedMaps maps, Worker worker) {
+        int i = worker.next++ & 1023;
+        byte[] urlBytes = worker.urlBytes[worker.urlPicks[i]];
+        String url = new String(urlBytes, StandardCharsets.UTF_8);
+        int status = worker.statusPicks[i];
+        maps.urlAdders.computeIfAbsent(url, k -> new LongAdder()).increment();
+        maps.urlAddersCumulative.computeIfAbsent(url, k -> new LongAdder()).increment();
+        if (status >= 400) {
+            maps.errorUrlAdders.computeIfAbsent(url, k -> new LongAdder()).increment();
+            maps.errorAdder.increment();
+        }
+        maps.totalAdder.increment();
+        maps.totalAdderCumulative.increment();
+    }
+
+    @Benchmark
+    public void denseIdCells(Worker worker) {
+        int i = worker.next++ & 1023;
+        byte[] urlBytes = worker.urlBytes[worker.urlPicks[i]];
+        // Le cumul est la somme des fenêtres faite par l'epoch closer : un seul jeu de cellules par log
+        worker.cells.record(worker.urlIds.get(urlBytes, 0, urlBytes.length), worker.statusPicks[i]);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16, 64}) {
+            Options options = new OptionsBuilder()
+                    .include(CounterContentionBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de bout en bout du mode collecteur : {@code records} logs passent par collectLogs(), l'anneau de batches,
+ * les workers et l'epoch closer, Kafka étant remplacé par une source en mémoire ({@link InMemoryRecordSource}).
+ *
+ * Rapporte le débit (du premier poll jusqu'au snapshot qui compte le dernier log), les allocations du JVM
+ * (hors client Kafka : les logs sont des tableaux pré-générés), l'activité du GC, et la latence entre
+ * le poll qui livre un log et la publication du premier snapshot qui le compte. Une première passe plus courte
+ * chauffe le JIT. Sort avec le code 1 si le total compté diffère du nombre de logs envoyés.
+ *
+ * Usage : EndToEndPipelineTest [millionsDeLogs] [threads] [urls] [epochMs]
+ */
+public class EndToEndPipelineTest {
+    private static final int RECORDS_PER_POLL = 500;
+    private static final int DISTINCT_PAYLOADS = 65_536;
+
+    public static void main(String[] args) throws Exception {
+        double millions = args.length > 0 ? Double.parseDouble(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int urls = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long epochMs = args.length > 3 ? Long.parseLong(args[3]) : 100;
+        long records = Math.max(1, Math.round(millions * 1e6 / RECORDS_PER_POLL)) * RECORDS_PER_POLL;
+
+        LogGenerator generator = new LogGenerator(urls, 8, 10_000, 1.0, 7);
+        byte[][] payloads = new byte[DISTINCT_PAYLOADS][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = generator.next();
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Result result;
+        long total;
+        try {
+            run(payloads, Math.min(records, 1_000_000), threads, epochMs);
+            result = run(payloads, records, threads, epochMs);
+            total = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+        } finally {
+            System.setOut(console);
+        }
+
+        double seconds = result.elapsedNanos / 1e9;
+        console.printf("Logs             : %,d (%d workers, %d URLs, epoch %d ms)%n", records, threads, urls, epochMs);
+        console.printf("Débit            : %,.0f logs/s en %.2f s%n", records / seconds, seconds);
+        console.printf("Allocations      : %,.0f Mo/s, %.0f octets/log%n",
+                result.allocatedBytes / seconds / (1024 * 1024), (double) result.allocatedBytes / records);
+        console.printf("GC               : %d collections, %d ms%n", result.gcCount, result.gcMillis);
+        LatencyHistogram latency = result.ingestToSnapshotMicros;
+        console.printf("Poll → snapshot  : p50 %.1f ms | p95 %.1f ms | p99 %.1f ms | max %.1f ms%n",
+                latency.valueAtPercentile(50) / 1000.0, latency.valueAtPercentile(95) / 1000.0,
+                latency.valueAtPercentile(99) / 1000.0, latency.max() / 1000.0);
+        console.printf("Total compté     : %,d (%s)%n", total, total == records ? "exact" : "attendu " + records);
+        System.exit(total == records ? 0 : 1);
+    }
+
+    private static Result run(byte[][] payloads, long records, int threads, long epochMs) {
+        long allocatedBefore = allocatedBytes();
+        long[] gcBefore = gcTotals();
+
+        InMemoryRecordSource source = new InMemoryRecordSource(payloads, records, RECORDS_PER_POLL, 0);
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(threads, epochMs);
+        service.startCollector(source);
+
+        // Chaque nouveau snapshot publié rend visibles les polls dont tous les logs sont comptés
+        LatencyHistogram latency = new LatencyHistogram();
+        JsonSnapshot seen = KafkaLogAnalyserService.latestStats;
+        long counted = 0;
+        long end = System.nanoTime();
+        while (counted < records) {
+            LockSupport.parkNanos(100_000);
+            JsonSnapshot latest = KafkaLogAnalyserService.latestStats;
+            if (latest == seen) {
+                continue;
+            }
+            end = System.nanoTime();
+            seen = latest;
+            // Les cumuls publiés sont ceux de ce service : il repart de zéro, le précédent est arrêté
+            counted = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+            source.recordVisible(counted, end, latency);
+        }
+
+        long allocated = allocatedBytes() - allocatedBefore;
+        long[] gcAfter = gcTotals();
+        service.stopKafkaAnalyser();
+        return new Result(end - source.firstPollNanos(), allocated, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], latency);
+    }
+
+    /** Octets alloués par les threads vivants ; ceux du service le sont tous jusqu'à son arrêt. */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    private record Result(long elapsedNanos, long allocatedBytes, long gcCount, long gcMillis,
+                          LatencyHistogram ingestToSnapshotMicros) {
+    }
+}
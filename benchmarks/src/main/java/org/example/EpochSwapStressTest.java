@@ -0,0 +1,82 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Test de stress de la bascule des fenêtres : les workers traitent des logs pendant que l'epoch closer
+ * bascule leurs slots toutes les millisecondes. À la fin, les cumuls (somme de toutes les fenêtres
+ * fermées) doivent être exactement égaux aux logs injectés, au total comme pour chaque URL et chaque
+ * classe de statut : aucun incrément perdu ni compté deux fois. Sort avec le code 1 sinon.
+ *
+ * Usage : EpochSwapStressTest [threads] [rounds]
+ */
+public class EpochSwapStressTest {
+    private static final int POLL_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(4, Runtime.getRuntime().availableProcessors());
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 4000;
+        List<byte[]> records = SyntheticLogs.records(POLL_SIZE, 7);
+
+        // Compteurs attendus, calculés par l'extracteur de repli sur un seul thread
+        KeyIdCache urls = new KeyIdCache(KafkaLogAnalyserService.urlIds, 64);
+        LogFieldExtractor extractor = new JsonObjectLogFieldExtractor(EnumSet.of(LogField.URL, LogField.STATUS));
+        LogFields fields = new LogFields();
+        StatusCounts perRound = new StatusCounts();
+        for (byte[] record : records) {
+            extractor.extract(record, fields);
+            perRound.record(fields.id(LogField.URL, urls), fields.status());
+        }
+        StatusCounts expected = new StatusCounts();
+        for (int i = 0; i < rounds; i++) {
+            expected.mergeCounts(perRound);
+        }
+
+        PrintStream console = System.out;
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(threads, 1);
+        long start = System.nanoTime();
+        // Le service affiche ses stats sur stdout à chaque epoch : on les coupe pendant le test
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            service.startWorkers();
+            for (int i = 0; i < rounds; i++) {
+                service.submitRecords(records);
+            }
+            service.stopWorkers();
+        } finally {
+            System.setOut(console);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        StatusCounts actual = KafkaLogAnalyserService.cumulativeCounts;
+        console.printf("%d logs, %d threads, %d epochs en %.1f s%n",
+                expected.getTotalLogs(), threads, service.epochs(), seconds);
+
+        boolean ok = check(console, "total", expected.getTotalLogs(), actual.getTotalLogs())
+                & check(console, "2xx", expected.getSuccess2xx(), actual.getSuccess2xx())
+                & check(console, "4xx", expected.getError4xx(), actual.getError4xx())
+                & check(console, "5xx", expected.getError5xx(), actual.getError5xx());
+        for (int id = 0; id < expected.urlLimit(); id++) {
+            for (int column : new int[]{StatusCounts.REQUESTS, StatusCounts.ERRORS_4XX, StatusCounts.ERRORS_5XX}) {
+                if (expected.count(id, column) != 0 || actual.count(id, column) != 0) {
+                    ok &= check(console, KafkaLogAnalyserService.urlIds.name(id) + "[" + column + "]",
+                            expected.count(id, column), actual.count(id, column));
+                }
+            }
+        }
+
+        console.println(ok ? "✅ Aucun incrément perdu" : "❌ Compteurs incohérents");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean check(PrintStream console, String name, long expected, long actual) {
+        if (expected != actual) {
+            console.printf("   %-20s attendu %d, obtenu %d%n", name, expected, actual);
+            return false;
+        }
+        return true;
+    }
+}
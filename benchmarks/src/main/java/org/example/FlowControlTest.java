@@ -0,0 +1,121 @@
+package org.example;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Régulation entre le collecteur et les workers ({@link FlowControl}), sur une source en mémoire.
+ * <ul>
+ *   <li>Rafale : tout un topic disponible d'emblée, un seul worker. Les logs lus mais pas encore traités restent
+ *       bornés par l'anneau (capacité × taille max d'un batch + un poll) : le reste attend dans le topic, partitions en pause.</li>
+ *   <li>Faible débit : quelques logs/s. Avec publication des batches incomplets après {@code lingerMs}, chaque log est
+ *       visible dans un snapshot en moins d'une seconde ; avec l'ancien batch fixe de 20 sans délai, il attend que
+ *       le batch se remplisse.</li>
+ * </ul>
+ * Sort avec le code 1 si l'une des deux garanties n'est pas tenue.
+ *
+ * Usage : FlowControlTest [logsRafale] [logs/s faible débit]
+ */
+public class FlowControlTest {
+    private static final int RING_CAPACITY = 64;
+    private static final int MAX_BATCH = 500;
+    private static final int RECORDS_PER_POLL = 500;
+    private static final long EPOCH_MS = 200;
+
+    public static void main(String[] args) {
+        long burst = args.length > 0 ? Long.parseLong(args[0]) : 2_000_000;
+        double lowRate = args.length > 1 ? Double.parseDouble(args[1]) : 5;
+        // Registre en mémoire : les compteurs du pipeline (logs traités, pauses) sont lus par le test
+        Metrics.addRegistry(new SimpleMeterRegistry());
+        System.setProperty("analyser.ring.capacity", Integer.toString(RING_CAPACITY));
+        System.setProperty("analyser.batch.max", Integer.toString(MAX_BATCH));
+
+        byte[][] payloads = new byte[4096][];
+        LogGenerator generator = new LogGenerator(100, 8, 10_000, 1.0, 7);
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = generator.next();
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        boolean ok;
+        try {
+            ok = burst(console, payloads, burst);
+            ok &= lowRate(console, payloads, lowRate, "adaptatif, linger 50 ms", "20", "500", "50", true);
+            ok &= lowRate(console, payloads, lowRate, "batch fixe de 20, sans délai", "20", "20", "3600000", false);
+        } finally {
+            System.setOut(console);
+        }
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean burst(PrintStream console, byte[][] payloads, long records) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        InMemoryRecordSource source = new InMemoryRecordSource(payloads, records, RECORDS_PER_POLL, 0);
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(1, EPOCH_MS);
+        double processedBefore = processed();
+        service.startCollector(source);
+
+        long maxBuffered = 0;
+        long maxHeap = 0;
+        long start = System.nanoTime();
+        while (KafkaLogAnalyserService.cumulativeCounts.getTotalLogs() < records) {
+            LockSupport.parkNanos(1_000_000);
+            maxBuffered = Math.max(maxBuffered, source.delivered() - (long) (processed() - processedBefore));
+            maxHeap = Math.max(maxHeap, memory.getHeapMemoryUsage().getUsed());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long pauses = (long) Metrics.globalRegistry.get("analyser.consumer.pauses").functionCounter().count();
+        service.stopKafkaAnalyser();
+
+        long bound = (long) RING_CAPACITY * MAX_BATCH + RECORDS_PER_POLL;
+        boolean ok = maxBuffered <= bound && pauses > 0;
+        console.printf("Rafale de %,d logs, 1 worker : %,.0f logs/s%n", records, records / seconds);
+        console.printf("  lus non traités max : %,d (borne %,d) | pauses : %d | heap max : %d Mo -> %s%n",
+                maxBuffered, bound, pauses, maxHeap / (1024 * 1024), ok ? "OK" : "ÉCHEC");
+        return ok;
+    }
+
+    private static boolean lowRate(PrintStream console, byte[][] payloads, double rate, String label,
+                                   String minBatch, String maxBatch, String lingerMs, boolean mustBeVisible) {
+        System.setProperty("analyser.batch.min", minBatch);
+        System.setProperty("analyser.batch.max", maxBatch);
+        System.setProperty("analyser.batch.lingerMs", lingerMs);
+        long records = Math.max(1, Math.round(rate * 6));
+        InMemoryRecordSource source = new InMemoryRecordSource(payloads, records, RECORDS_PER_POLL, rate);
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(1, EPOCH_MS);
+        service.startCollector(source);
+
+        // Chaque nouveau snapshot rend visibles les logs déjà comptés ; on attend 3 s de plus que la production
+        LatencyHistogram latency = new LatencyHistogram();
+        JsonSnapshot seen = KafkaLogAnalyserService.latestStats;
+        long deadline = System.nanoTime() + (long) ((records / rate + 3) * 1e9);
+        long counted = 0;
+        while (counted < records && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(100_000);
+            JsonSnapshot latest = KafkaLogAnalyserService.latestStats;
+            if (latest != seen) {
+                seen = latest;
+                counted = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+                source.recordVisible(counted, System.nanoTime(), latency);
+            }
+        }
+        service.stopKafkaAnalyser();
+        System.setProperty("analyser.batch.max", Integer.toString(MAX_BATCH));
+
+        boolean visible = counted == records && latency.max() < 1_000_000;
+        console.printf("Faible débit, %.0f logs/s, %s : %d/%d logs visibles | poll → snapshot p50 %.0f ms, max %.0f ms%n",
+                rate, label, counted, records, latency.valueAtPercentile(50) / 1000.0, latency.max() / 1000.0);
+        return !mustBeVisible || visible;
+    }
+
+    private static double processed() {
+        return Metrics.globalRegistry.get("analyser.logs.processed").counter().count();
+    }
+}
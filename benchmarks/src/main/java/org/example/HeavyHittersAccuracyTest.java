@@ -0,0 +1,120 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Compromis précision / mémoire de {@link HeavyHitters} sur un flux de Zipf (URLs avec identifiants,
+ * cardinalité non bornée), réparti sur 4 workers puis fusionné comme dans l'epoch closer.
+ * Pour chaque taille de sketch / capacité Space-Saving : mémoire, rappel du top 20, erreur relative
+ * maximale sur les comptes du vrai top 20 et borne ε·N annoncée, comparés à une map exacte.
+ *
+ * Usage : HeavyHittersAccuracyTest [events] [distinctKeys] [zipfExponent]
+ */
+public class HeavyHittersAccuracyTest {
+    private static final int WORKERS = 4;
+    private static final int TOP = 20;
+    private static final int[][] CONFIGS = {
+            // largeur Count-Min, profondeur, capacité Space-Saving
+            {256, 4, 32},
+            {1024, 4, 64},
+            {HeavyHitters.SKETCH_WIDTH, HeavyHitters.SKETCH_DEPTH, HeavyHitters.CAPACITY},
+            {8192, 4, 512},
+    };
+
+    public static void main(String[] args) {
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        double exponent = args.length > 2 ? Double.parseDouble(args[2]) : 1.1;
+
+        String[] keys = new String[distinct];
+        long[] hashes = new long[distinct];
+        for (int k = 0; k < distinct; k++) {
+            keys[k] = "/item?id=" + k;
+            byte[] bytes = keys[k].getBytes(StandardCharsets.UTF_8);
+            hashes[k] = ByteStringCache.hash64(bytes, 0, bytes.length);
+        }
+        int[] stream = zipfStream(events, distinct, exponent, new Random(11));
+
+        long[] exact = new long[distinct];
+        for (int k : stream) {
+            exact[k]++;
+        }
+        int seen = (int) Arrays.stream(exact).filter(c -> c > 0).count();
+        Integer[] byCount = new Integer[distinct];
+        for (int k = 0; k < distinct; k++) {
+            byCount[k] = k;
+        }
+        Arrays.sort(byCount, (a, b) -> Long.compare(exact[b], exact[a]));
+        Set<String> trueTop = new HashSet<>();
+        for (int r = 0; r < TOP; r++) {
+            trueTop.add(keys[byCount[r]]);
+        }
+
+        System.out.printf("%d logs, %d clés distinctes, Zipf s=%.2f ; map exacte ≈ %d Ko%n",
+                events, seen, exponent, exactMapBytes(seen) / 1024);
+        System.out.printf("%-8s %-6s %-8s %10s %12s %14s %12s %10s%n",
+                "largeur", "prof.", "top-K", "mémoire Ko", "rappel@" + TOP, "err. max top", "borne ε·N", "ns/log");
+
+        for (int[] config : CONFIGS) {
+            HeavyHitters[] workers = new HeavyHitters[WORKERS];
+            for (int w = 0; w < WORKERS; w++) {
+                workers[w] = new HeavyHitters(config[0], config[1], config[2]);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < stream.length; i++) {
+                int k = stream[i];
+                workers[i % WORKERS].add(keys[k], hashes[k], 1);
+            }
+            long elapsed = System.nanoTime() - start;
+            HeavyHitters merged = new HeavyHitters(config[0], config[1], config[2]);
+            for (HeavyHitters worker : workers) {
+                merged.merge(worker);
+            }
+
+            Map<String, Long> reported = new HashMap<>();
+            List<Map<String, Object>> top = merged.top(TOP);
+            for (Map<String, Object> item : top) {
+                reported.put((String) item.get("key"), (Long) item.get("count"));
+            }
+            long hits = trueTop.stream().filter(reported::containsKey).count();
+            double maxRelativeError = 0;
+            for (int r = 0; r < TOP; r++) {
+                int k = byCount[r];
+                long estimate = merged.estimate(hashes[k]);
+                maxRelativeError = Math.max(maxRelativeError, (estimate - exact[k]) / (double) exact[k]);
+            }
+            long bound = (long) merged.summary(0).get("errorBound");
+
+            System.out.printf("%-8d %-6d %-8d %10d %11.0f%% %13.2f%% %12d %10.1f%n",
+                    config[0], config[1], config[2], merged.memoryBytes() / 1024,
+                    hits * 100.0 / TOP, maxRelativeError * 100, bound, elapsed / (double) events);
+        }
+    }
+
+    private static int[] zipfStream(int events, int distinct, double exponent, Random random) {
+        double[] cdf = new double[distinct];
+        double sum = 0;
+        for (int k = 0; k < distinct; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        int[] stream = new int[events];
+        for (int i = 0; i < events; i++) {
+            int k = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            stream[i] = Math.min(k < 0 ? -k - 1 : k, distinct - 1);
+        }
+        return stream;
+    }
+
+    /** Ordre de grandeur d'une HashMap String → long[] : entrée, clé, tableau et case de table. */
+    private static long exactMapBytes(int keys) {
+        return keys * (32L + 56 + 24 + 8);
+    }
+}
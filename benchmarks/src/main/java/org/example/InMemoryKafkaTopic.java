@@ -0,0 +1,115 @@
+package org.example;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Topic Kafka multi-partitions simulé en mémoire, avec un groupe de consumers.
+ * Chaque partition produit à l'infini des logs pré-générés ; à chaque nouveau membre le groupe
+ * redistribue les partitions (round-robin) et chaque membre applique sa nouvelle affectation
+ * dans son propre poll(), en appelant son rebalance listener comme le ferait le vrai client.
+ */
+public final class InMemoryKafkaTopic {
+    private final String topic;
+    private final int partitions;
+    private final List<byte[]> payloads;
+    private final int recordsPerPoll;
+    private final long[] nextOffsets;
+    private final List<Member> members = new ArrayList<>();
+
+    public InMemoryKafkaTopic(String topic, int partitions, List<byte[]> payloads, int recordsPerPoll) {
+        this.topic = topic;
+        this.partitions = partitions;
+        this.payloads = payloads;
+        this.recordsPerPoll = recordsPerPoll;
+        this.nextOffsets = new long[partitions];
+    }
+
+    /** Nouveau membre du groupe, à passer comme fabrique de consumers au service. */
+    public synchronized Consumer<byte[], byte[]> newConsumer() {
+        Member member = new Member();
+        members.add(member);
+        return member;
+    }
+
+    private synchronized void join(Member member) {
+        member.joined = true;
+        List<Member> active = members.stream().filter(m -> m.joined && !m.left).toList();
+        for (int i = 0; i < active.size(); i++) {
+            List<TopicPartition> assignment = new ArrayList<>();
+            for (int p = i; p < partitions; p += active.size()) {
+                assignment.add(new TopicPartition(topic, p));
+            }
+            active.get(i).pendingAssignment = assignment;
+        }
+    }
+
+    private synchronized long reserve(int partition, int count) {
+        long first = nextOffsets[partition];
+        nextOffsets[partition] += count;
+        return first;
+    }
+
+    private synchronized Map<TopicPartition, Long> positions(Collection<TopicPartition> assignment) {
+        Map<TopicPartition, Long> offsets = new HashMap<>();
+        for (TopicPartition tp : assignment) {
+            offsets.put(tp, nextOffsets[tp.partition()]);
+        }
+        return offsets;
+    }
+
+    private final class Member extends MockConsumer<byte[], byte[]> {
+        private volatile List<TopicPartition> pendingAssignment;
+        private ConsumerRebalanceListener listener;
+        private boolean joined;
+        private boolean left;
+        private int payloadIndex;
+
+        Member() {
+            super(OffsetResetStrategy.EARLIEST);
+        }
+
+        @Override
+        public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+            super.subscribe(topics, listener);
+            this.listener = listener;
+            join(this);
+        }
+
+        @Override
+        public synchronized ConsumerRecords<byte[], byte[]> poll(Duration timeout) {
+            List<TopicPartition> assignment = pendingAssignment;
+            if (assignment != null) {
+                pendingAssignment = null;
+                listener.onPartitionsRevoked(assignment());
+                updateBeginningOffsets(positions(assignment));
+                rebalance(assignment);
+                listener.onPartitionsAssigned(assignment);
+            }
+            for (TopicPartition tp : assignment()) {
+                long offset = reserve(tp.partition(), recordsPerPoll);
+                for (int i = 0; i < recordsPerPoll; i++) {
+                    byte[] payload = payloads.get(payloadIndex++ % payloads.size());
+                    addRecord(new ConsumerRecord<>(topic, tp.partition(), offset + i, null, payload));
+                }
+            }
+            return super.poll(timeout);
+        }
+
+        @Override
+        public synchronized void close() {
+            synchronized (InMemoryKafkaTopic.this) {
+                left = true;
+            }
+            super.close();
+        }
+    }
+}
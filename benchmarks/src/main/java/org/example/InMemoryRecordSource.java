@@ -0,0 +1,151 @@
+package org.example;
+
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Source de logs en mémoire à la place du consumer Kafka du collecteur : une partition, {@code records} logs
+ * au total, au plus {@code recordsPerPoll} par poll, produits à {@code ratePerSecond} logs/s (0 = tous disponibles
+ * d'emblée, comme un topic déjà rempli). Respecte pause/resume et renvoie son lag (logs produits non lus).
+ * Note l'instant de chaque poll non vide et le nombre de logs livrés jusque-là.
+ */
+public final class InMemoryRecordSource extends MockConsumer<byte[], byte[]> {
+    private final TopicPartition partition = new TopicPartition("web_logs", 0);
+    private final byte[][] payloads;
+    private final long records;
+    private final int recordsPerPoll;
+    private final double ratePerSecond;
+    final long[] pollNanos;
+    final long[] pollEnd;
+    private volatile int polls;
+    private volatile long offset;
+    private ConsumerRebalanceListener listener;
+    private boolean assigned;
+    private boolean paused;
+    private long startNanos;
+    private int visibleCursor;
+
+    public InMemoryRecordSource(byte[][] payloads, long records, int recordsPerPoll, double ratePerSecond) {
+        super(OffsetResetStrategy.EARLIEST);
+        this.payloads = payloads;
+        this.records = records;
+        this.recordsPerPoll = recordsPerPoll;
+        this.ratePerSecond = ratePerSecond;
+        // Au débit imposé, un poll peut ne livrer qu'un log
+        long maxPolls = ratePerSecond > 0 ? records : (records + recordsPerPoll - 1) / recordsPerPoll;
+        this.pollNanos = new long[(int) maxPolls];
+        this.pollEnd = new long[(int) maxPolls];
+    }
+
+    /** Logs livrés au service jusqu'ici. */
+    public long delivered() {
+        return offset;
+    }
+
+    /**
+     * Enregistre dans {@code latency} (µs) le délai entre chaque poll et {@code now}, pour les polls dont tous les logs
+     * sont compris dans les {@code counted} premiers. À appeler à chaque nouveau snapshot, depuis un seul thread.
+     */
+    public void recordVisible(long counted, long now, LatencyHistogram latency) {
+        int done = polls;
+        while (visibleCursor < done && pollEnd[visibleCursor] <= counted) {
+            latency.record((now - pollNanos[visibleCursor]) / 1000);
+            visibleCursor++;
+        }
+    }
+
+    /** Instant du premier poll non vide. */
+    public long firstPollNanos() {
+        return pollNanos[0];
+    }
+
+    @Override
+    public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public synchronized Set<TopicPartition> assignment() {
+        return assigned ? Set.of(partition) : Set.of();
+    }
+
+    @Override
+    public synchronized void pause(Collection<TopicPartition> partitions) {
+        paused |= partitions.contains(partition);
+    }
+
+    @Override
+    public synchronized void resume(Collection<TopicPartition> partitions) {
+        paused &= !partitions.contains(partition);
+    }
+
+    @Override
+    public synchronized Set<TopicPartition> paused() {
+        return paused ? Set.of(partition) : Set.of();
+    }
+
+    @Override
+    public synchronized OptionalLong currentLag(TopicPartition topicPartition) {
+        return OptionalLong.of(available(System.nanoTime()) - offset);
+    }
+
+    @Override
+    public synchronized ConsumerRecords<byte[], byte[]> poll(Duration timeout) {
+        long now = System.nanoTime();
+        if (listener != null) {
+            startNanos = now;
+            assigned = true;
+            listener.onPartitionsAssigned(List.of(partition));
+            listener = null;
+        }
+        long deadline = now + timeout.toNanos();
+        // Comme Kafka : rien à lire (pause, source épuisée ou logs pas encore produits), on attend jusqu'au délai
+        while (paused || available(now) == offset) {
+            if (now - deadline >= 0) {
+                return ConsumerRecords.empty();
+            }
+            long wait = deadline - now;
+            if (!paused && offset < records && ratePerSecond > 0) {
+                wait = Math.min(wait, (long) ((offset + 1) * 1e9 / ratePerSecond) - (now - startNanos));
+            }
+            LockSupport.parkNanos(Math.max(10_000, wait));
+            if (Thread.currentThread().isInterrupted()) {
+                return ConsumerRecords.empty();
+            }
+            now = System.nanoTime();
+        }
+        int count = (int) Math.min(recordsPerPoll, available(now) - offset);
+        List<ConsumerRecord<byte[], byte[]>> batch = new ArrayList<>(count);
+        long next = offset;
+        for (int i = 0; i < count; i++, next++) {
+            batch.add(new ConsumerRecord<>(partition.topic(), 0, next, null, payloads[(int) (next % payloads.length)]));
+        }
+        int poll = polls;
+        pollNanos[poll] = now;
+        pollEnd[poll] = next;
+        offset = next;
+        polls = poll + 1;
+        return new ConsumerRecords<>(Map.of(partition, batch));
+    }
+
+    /** Logs produits dans la partition à l'instant {@code now}. */
+    private long available(long now) {
+        if (ratePerSecond <= 0) {
+            return records;
+        }
+        return Math.min(records, (long) ((now - startNanos) * ratePerSecond / 1e9));
+    }
+}
@@ -0,0 +1,52 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût par log de l'enregistrement des latences : un histogramme seul, puis le chemin complet
+ * de processLog() (histogramme par URL + histogramme par service).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LatencyHistogramBenchmark {
+    private final long[] latencies = new long[4096];
+    private int next;
+    private LatencyHistogram histogram;
+    private WindowAccumulator window;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(3);
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = 50 + random.nextInt(450);
+        }
+        histogram = new LatencyHistogram();
+        for (long latency : latencies) {
+            histogram.record(latency);
+        }
+        window = new WindowAccumulator();
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(latencies[next++ & 4095]);
+    }
+
+    @Benchmark
+    public void perUrlAndService() {
+        int i = next++ & 4095;
+        window.recordLatency(i & 3, (i >> 2) & 3, latencies[i]);
+    }
+
+    @Benchmark
+    public long p99() {
+        return histogram.valueAtPercentile(99);
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût d'extraction des champs d'un log Producer : extracteur streaming vs org.json vs Jackson.
+ * Lancer avec {@code -prof gc} pour comparer les allocations par opération.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LogFieldExtractorBenchmark {
+
+    /** "core" = url + status (chemin actuel du service) ; "all" = les 7 champs. */
+    @Param({"core", "all"})
+    public String fieldSet;
+
+    private byte[][] payloads;
+    private int next;
+
+    private LogFieldExtractor streaming;
+    private LogFieldExtractor jsonObject;
+    private LogFields fields;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Setup
+    public void setup() {
+        payloads = SyntheticLogs.records(1024, 7).toArray(new byte[0][]);
+        EnumSet<LogField> set = fieldSet.equals("core")
+                ? EnumSet.of(LogField.URL, LogField.STATUS)
+                : EnumSet.allOf(LogField.class);
+        streaming = new StreamingLogFieldExtractor(set);
+        jsonObject = new JsonObjectLogFieldExtractor(set);
+        fields = new LogFields();
+    }
+
+    private byte[] nextPayload() {
+        byte[] payload = payloads[next];
+        next = (next + 1) % payloads.length;
+        return payload;
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        streaming.extract(nextPayload(), fields);
+        bh.consume(fields.url());
+        bh.consume(fields.status());
+    }
+
+    @Benchmark
+    public void orgJson(Blackhole bh) {
+        jsonObject.extract(nextPayload(), fields);
+        bh.consume(fields.url());
+        bh.consume(fields.status());
+    }
+
+    @Benchmark
+    public void jacksonTree(Blackhole bh) throws IOException {
+        JsonNode node = mapper.readTree(nextPayload());
+        bh.consume(node.get("url").asText());
+        bh.consume(node.get("status").asInt());
+        if (fieldSet.equals("all")) {
+            bh.consume(node.get("latencyMs").asLong());
+            bh.consume(node.get("service").asText());
+            bh.consume(node.get("level").asText());
+            bh.consume(node.get("method").asText());
+            bh.consume(node.get("clientIp").asText());
+        }
+    }
+
+    @Benchmark
+    public void jacksonStreaming(Blackhole bh) throws IOException {
+        boolean all = fieldSet.equals("all");
+        try (JsonParser parser = jsonFactory.createParser(nextPayload())) {
+            parser.nextToken();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "url" -> bh.consume(parser.getText());
+                    case "status" -> bh.consume(parser.getIntValue());
+                    case "latencyMs" -> bh.consume(all ? parser.getLongValue() : 0);
+                    case "service", "level", "method", "clientIp" -> bh.consume(all ? parser.getText() : null);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+    }
+}
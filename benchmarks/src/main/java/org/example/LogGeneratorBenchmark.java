@@ -0,0 +1,39 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coût de génération d'un log par le Producer : {@code String.format} puis encodage UTF-8 (ancien chemin)
+ * vs fragments pré-encodés de {@link LogGenerator}, uniforme ou Zipf sur un grand vocabulaire.
+ * Lancer avec {@code -prof gc} pour comparer les allocations par log.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LogGeneratorBenchmark {
+    private final Random random = new Random(7);
+    private final LogGenerator uniform = new LogGenerator(4, 4, 254, 0, 7);
+    private final LogGenerator zipf = new LogGenerator(100_000, 64, 1_000_000, 1.1, 7);
+
+    @Benchmark
+    public byte[] stringFormat() {
+        return SyntheticLogs.log(random).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] templates() {
+        return uniform.next();
+    }
+
+    @Benchmark
+    public byte[] templatesZipf() {
+        return zipf.next();
+    }
+}
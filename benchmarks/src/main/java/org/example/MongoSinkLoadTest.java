@@ -0,0 +1,122 @@
+package org.example;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import org.bson.RawBsonDocument;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Écritures/s de {@link MongoSink} (insertMany non ordonné, par batches) comparées à un
+ * {@code insertOne} synchrone par log, comme le faisait le Producer.
+ *
+ * Sans URI, la cible est une doublure en mémoire qui facture un aller-retour réseau fixe par appel
+ * ({@code roundTripMicros}) et une copie des octets de chaque document : c'est le nombre d'allers-retours
+ * qui sépare les deux approches. Avec une URI (ex. mongodb://localhost:27017), les deux écrivent dans
+ * la base {@code benchmarks} d'un vrai mongod.
+ *
+ * Usage : MongoSinkLoadTest [logs] [roundTripMicros] [mongoUri]
+ */
+public class MongoSinkLoadTest {
+    private static final int[] BATCH_SIZES = {10, 100, 1000, 10_000};
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        long roundTripMicros = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        String uri = args.length > 2 ? args[2] : null;
+        List<byte[]> logs = SyntheticLogs.records(count, 7);
+
+        System.out.println(uri == null
+                ? "Cible : doublure en mémoire, aller-retour " + roundTripMicros + " µs"
+                : "Cible : " + uri);
+        System.out.printf("%-22s %12s %12s %10s%n", "mode", "écritures/s", "allers-ret.", "speedup");
+
+        // insertOne : un aller-retour par log ; échantillon réduit, c'est de loin le plus lent
+        int sample = Math.min(count, 20_000);
+        double baseline = insertOne(logs.subList(0, sample), roundTripMicros, uri);
+        System.out.printf("%-22s %12.0f %12d %9.2fx%n", "insertOne", baseline, sample, 1.0);
+
+        for (int batchSize : BATCH_SIZES) {
+            Target target = uri == null ? new SimulatedMongo(roundTripMicros) : new Target(MongoSink.mongoTarget(uri, "benchmarks"));
+            MongoSink sink = new MongoSink(target, "sinkLogs", "sinkEpochs",
+                    50_000, batchSize, MongoSink.MAX_BATCH_BYTES, 50, MongoSink.Overflow.BLOCK);
+            sink.start();
+            long start = System.nanoTime();
+            for (byte[] log : logs) {
+                sink.offerLog(log);
+            }
+            while (sink.written() < count) {
+                Thread.sleep(1);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink.stop();
+            double throughput = count * 1e9 / elapsed;
+            System.out.printf("%-22s %12.0f %12d %9.2fx%n",
+                    "insertMany x" + batchSize, throughput, target.calls.get(), throughput / baseline);
+        }
+    }
+
+    private static double insertOne(List<byte[]> logs, long roundTripMicros, String uri) {
+        long start;
+        if (uri == null) {
+            SimulatedMongo mongo = new SimulatedMongo(roundTripMicros);
+            start = System.nanoTime();
+            for (byte[] log : logs) {
+                mongo.insertMany("insertOne", List.of(RawBsonDocument.parse(new String(log, StandardCharsets.UTF_8))));
+            }
+        } else {
+            try (MongoClient client = MongoClients.create(uri)) {
+                MongoCollection<RawBsonDocument> collection = client.getDatabase("benchmarks")
+                        .getCollection("insertOne", RawBsonDocument.class);
+                start = System.nanoTime();
+                for (byte[] log : logs) {
+                    collection.insertOne(RawBsonDocument.parse(new String(log, StandardCharsets.UTF_8)));
+                }
+                return logs.size() * 1e9 / (System.nanoTime() - start);
+            }
+        }
+        return logs.size() * 1e9 / (System.nanoTime() - start);
+    }
+
+    /** Compte les appels de la cible enveloppée. */
+    private static class Target implements MongoSink.Target {
+        final AtomicLong calls = new AtomicLong();
+        private final MongoSink.Target delegate;
+
+        Target(MongoSink.Target delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MongoSink.Rejected insertMany(String collection, List<RawBsonDocument> documents) {
+            calls.incrementAndGet();
+            return delegate.insertMany(collection, documents);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+
+    /** Doublure de mongod : un aller-retour fixe par appel, puis copie des octets BSON reçus. */
+    private static final class SimulatedMongo extends Target {
+        SimulatedMongo(long roundTripMicros) {
+            super((collection, documents) -> {
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+                for (RawBsonDocument document : documents) {
+                    document.getByteBuffer().array().clone();
+                }
+                while (System.nanoTime() < deadline) {
+                    LockSupport.parkNanos(deadline - System.nanoTime());
+                }
+                return MongoSink.Rejected.NONE;
+            });
+        }
+    }
+}
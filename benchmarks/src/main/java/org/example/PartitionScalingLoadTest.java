@@ -0,0 +1,55 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Débit du mode partition-parallèle (un consumer Kafka par thread, état confiné) en fonction
+ * du nombre de consumers, sur un topic multi-partitions simulé par {@link InMemoryKafkaTopic}.
+ *
+ * Usage : PartitionScalingLoadTest [maxConsumers] [partitions] [durationSeconds]
+ */
+public class PartitionScalingLoadTest {
+    private static final int RECORDS_PER_POLL = 100;
+
+    public static void main(String[] args) throws Exception {
+        int maxConsumers = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int partitions = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        PrintStream console = System.out;
+        console.printf("%-10s %15s %18s %10s%n", "consumers", "logs/s", "logs/s/consumer", "speedup");
+        double baseline = 0;
+        for (int consumers = 1; consumers <= Math.min(maxConsumers, partitions); consumers *= 2) {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            double throughput;
+            try {
+                throughput = run(consumers, partitions, durationSeconds);
+            } finally {
+                System.setOut(console);
+            }
+            if (baseline == 0) {
+                baseline = throughput;
+            }
+            console.printf("%-10d %15.0f %18.0f %9.2fx%n",
+                    consumers, throughput, throughput / consumers, throughput / baseline);
+        }
+    }
+
+    private static double run(int consumers, int partitions, int durationSeconds) throws Exception {
+        InMemoryKafkaTopic topic = new InMemoryKafkaTopic("web_logs", partitions,
+                SyntheticLogs.records(1000, 11), RECORDS_PER_POLL);
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(consumers, 200);
+        service.startPartitionConsumers(consumers, topic::newConsumer);
+
+        Thread.sleep(2000);
+        long start = System.nanoTime();
+        long before = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+        Thread.sleep(durationSeconds * 1000L);
+        long after = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+        long elapsed = System.nanoTime() - start;
+
+        service.stopWorkers();
+        return (after - before) * 1e9 / elapsed;
+    }
+}
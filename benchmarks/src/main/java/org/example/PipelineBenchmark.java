@@ -0,0 +1,112 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Étapes du pipeline d'analyse, une par benchmark, pour servir de référence avant toute montée en charge :
+ * <ul>
+ *   <li>{@code processBatch} : un batch de 20 logs traité par un worker (extraction des champs, compteurs,
+ *       top-K et histogrammes de latence de la fenêtre) ;</li>
+ *   <li>{@code closeEpoch} : fermeture d'une epoch de 1000 logs (fusion des fenêtres, cumuls, snapshots JSON
+ *       de displayStatistics() et de /statsCumulative) ;</li>
+ *   <li>{@code serializeStats} / {@code serializeCumulative} : sérialisation JSON des deux snapshots ;</li>
+ *   <li>{@code statsResponse} : réponse de StatsController à partir du snapshot pré-sérialisé.</li>
+ * </ul>
+ * {@code urls} fixe la taille du vocabulaire d'URLs (loi de Zipf), donc celle des snapshots.
+ * Lancer avec {@code -prof gc} pour les allocations par opération.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineBenchmark {
+    private static final int BATCH_SIZE = 20;
+    private static final int EPOCH_LOGS = 1000;
+
+    @Param({"4", "1000"})
+    public int urls;
+
+    private PrintStream console;
+    private KafkaLogAnalyserService service;
+    private KafkaLogAnalyserService.WorkerState worker;
+    private LogBatch[] batches;
+    private int next;
+    private StatsController controller;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Le service affiche ses stats sur stdout : on les coupe pendant la mesure
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        service = new KafkaLogAnalyserService(1, 60_000);
+        worker = service.new WorkerState();
+        controller = new StatsController(service);
+
+        LogGenerator generator = new LogGenerator(urls, 8, 10_000, 1.0, 7);
+        batches = new LogBatch[EPOCH_LOGS / BATCH_SIZE];
+        for (int b = 0; b < batches.length; b++) {
+            batches[b] = new LogBatch(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batches[b].add(generator.next());
+            }
+        }
+        // Toutes les URLs connues et des snapshots complets avant la première mesure
+        fillEpoch();
+        service.closeEpoch();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    /** Une epoch de logs dans la fenêtre du worker. */
+    private void fillEpoch() {
+        for (LogBatch batch : batches) {
+            service.processBatch(batch, 0, worker);
+        }
+    }
+
+    @Benchmark
+    public void processBatch() {
+        service.processBatch(batches[next], 0, worker);
+        next = (next + 1) % batches.length;
+    }
+
+    @Benchmark
+    public long closeEpoch(EpochFill fill) {
+        service.closeEpoch();
+        return service.epochs();
+    }
+
+    @Benchmark
+    public JsonSnapshot serializeStats() {
+        return JsonSnapshot.of(KafkaLogAnalyserService.latestStats.data());
+    }
+
+    @Benchmark
+    public JsonSnapshot serializeCumulative() {
+        return JsonSnapshot.of(KafkaLogAnalyserService.cumulativeStats.data());
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> statsResponse() {
+        return controller.getStats(null);
+    }
+
+    /** Remplit la fenêtre du worker avant chaque fermeture d'epoch mesurée. */
+    @State(Scope.Thread)
+    public static class EpochFill {
+        @Setup(Level.Invocation)
+        public void fill(PipelineBenchmark benchmark) {
+            benchmark.fillEpoch();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Débit et latence (p50 / p99, en µs) des GET /stats et /statsCumulative sur une application déjà
+ * démarrée, avec {@code threads} clients en boucle fermée. Chaque endpoint est mesuré deux fois :
+ * requêtes simples (200 + corps JSON), puis revalidation avec {@code If-None-Match} (304 tant que
+ * l'epoch n'a pas changé).
+ *
+ * Usage : RestReadLoadTest [baseUrl] [threads] [durationSeconds]
+ */
+public class RestReadLoadTest {
+    private static final String[] ENDPOINTS = {"/stats", "/statsCumulative"};
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8081";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        System.out.printf("%-18s %-14s %12s %10s %10s %10s %8s%n",
+                "endpoint", "mode", "req/s", "p50 µs", "p99 µs", "max µs", "304 %");
+        for (String endpoint : ENDPOINTS) {
+            URI uri = URI.create(baseUrl + endpoint);
+            for (boolean revalidate : new boolean[]{false, true}) {
+                // Échauffement : JIT, connexions keep-alive
+                run(client, uri, revalidate, threads, 2);
+                Result result = run(client, uri, revalidate, threads, durationSeconds);
+                System.out.printf("%-18s %-14s %12.0f %10d %10d %10d %7.1f%%%n",
+                        endpoint, revalidate ? "If-None-Match" : "GET",
+                        result.requests * 1e9 / result.elapsedNanos,
+                        result.latency.valueAtPercentile(50), result.latency.valueAtPercentile(99),
+                        result.latency.max(), result.notModified * 100.0 / Math.max(1, result.requests));
+            }
+        }
+    }
+
+    private record Result(long requests, long notModified, long elapsedNanos, LatencyHistogram latency) {
+    }
+
+    private static Result run(HttpClient client, URI uri, boolean revalidate, int threads, int durationSeconds)
+            throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LatencyHistogram[] latencies = new LatencyHistogram[threads];
+        long[] requests = new long[threads];
+        long[] notModified = new long[threads];
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            latencies[t] = new LatencyHistogram();
+            Thread thread = new Thread(() -> {
+                String etag = null;
+                while (running.get()) {
+                    HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+                    if (revalidate && etag != null) {
+                        request.header("If-None-Match", etag);
+                    }
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+                        latencies[id].record((System.nanoTime() - start) / 1000);
+                        requests[id]++;
+                        if (response.statusCode() == 304) {
+                            notModified[id]++;
+                        }
+                        etag = response.headers().firstValue("ETag").orElse(null);
+                    } catch (Exception e) {
+                        System.err.println("❌ " + uri + " : " + e.getMessage());
+                        return;
+                    }
+                }
+            }, "rest-client-" + t);
+            clients.add(thread);
+        }
+
+        long start = System.nanoTime();
+        clients.forEach(Thread::start);
+        Thread.sleep(durationSeconds * 1000L);
+        running.set(false);
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        LatencyHistogram merged = new LatencyHistogram();
+        long total = 0;
+        long total304 = 0;
+        for (int t = 0; t < threads; t++) {
+            merged.merge(latencies[t]);
+            total += requests[t];
+            total304 += notModified[t];
+        }
+        return new Result(total, total304, elapsed, merged);
+    }
+}
@@ -0,0 +1,90 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requêtes ad hoc sur le cube {@link RollupCube} rempli sur toute sa rétention (1 h de buckets de 10 s) :
+ * <ul>
+ *   <li>{@code errorRate} : taux de 5xx de payment POST /pay sur 10 min, regroupé par classe de statut ;</li>
+ *   <li>{@code topUrls5xx} : top 20 des URLs en 5xx sur 1 h ;</li>
+ *   <li>{@code groupByAll} : service × méthode × niveau × statut sur 10 min ;</li>
+ *   <li>{@code recordEpoch} : fusion d'une epoch dans le bucket courant (copie puis publication).</li>
+ * </ul>
+ * {@code urls} fixe le vocabulaire d'URLs : 4 (quelques centaines de cellules par bucket) ou 1000
+ * (la borne de cellules est atteinte, le détail des URLs rares est replié). L'occupation mémoire est affichée au démarrage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RollupCubeBenchmark {
+    private static final int LOGS_PER_BUCKET = 20_000;
+    private static final String[] METHODS = {"GET", "POST"};
+    private static final String[] LEVELS = {"INFO", "WARN", "ERROR"};
+    private static final int[] STATUSES = {200, 404, 500};
+
+    @Param({"4", "1000"})
+    public int urls;
+
+    private RollupCube cube;
+    private CubeCells epoch;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        KeyDictionary urlIds = new KeyDictionary(1024, KeyDictionary.OTHER);
+        KeyDictionary serviceIds = new KeyDictionary(256, KeyDictionary.OTHER);
+        KeyDictionary methodIds = new KeyDictionary(64, KeyDictionary.OTHER);
+        KeyDictionary levelIds = new KeyDictionary(64, KeyDictionary.OTHER);
+        String[] urlNames = LogGenerator.vocabulary(LogGenerator.DEFAULT_URLS, "/api/resource/", urls);
+        String[] serviceNames = LogGenerator.vocabulary(LogGenerator.DEFAULT_SERVICES, "service-", 8);
+        cube = new RollupCube(urlIds, serviceIds, methodIds, levelIds, 3600 / RollupCube.BUCKET_SECONDS);
+
+        SplittableRandom random = new SplittableRandom(7);
+        now = RollupCube.bucketStart(System.currentTimeMillis());
+        for (long start = now - 3600 + RollupCube.BUCKET_SECONDS; start <= now; start += RollupCube.BUCKET_SECONDS) {
+            CubeCells cells = new CubeCells(RollupCube.MAX_CELLS);
+            for (int i = 0; i < LOGS_PER_BUCKET; i++) {
+                // URLs tirées avec une forte asymétrie : les premières du vocabulaire dominent
+                int url = (int) (urlNames.length * Math.pow(random.nextDouble(), 3));
+                long key = RollupCube.key(serviceIds.idOf(serviceNames[random.nextInt(serviceNames.length)]),
+                        urlIds.idOf(urlNames[url]), methodIds.idOf(METHODS[random.nextInt(METHODS.length)]),
+                        levelIds.idOf(LEVELS[random.nextInt(LEVELS.length)]), STATUSES[random.nextInt(STATUSES.length)]);
+                cells.add(key, 50 + random.nextInt(450));
+            }
+            if (start == now) {
+                epoch = cells.copy();
+            }
+            cube.record(start, cells);
+        }
+        System.out.println("Cube : " + cube.memory());
+    }
+
+    @Benchmark
+    public Map<String, Object> errorRate() {
+        return cube.query(now - 600, now, Map.of("service", List.of("payment"), "method", List.of("POST"), "url", List.of("/pay")),
+                List.of("statusClass"), 20);
+    }
+
+    @Benchmark
+    public Map<String, Object> topUrls5xx() {
+        return cube.query(now - 3600, now, Map.of("status", List.of("5xx")), List.of("url"), 20);
+    }
+
+    @Benchmark
+    public Map<String, Object> groupByAll() {
+        return cube.query(now - 600, now, Map.of(), List.of("service", "method", "level", "status"), 1000);
+    }
+
+    @Benchmark
+    public void recordEpoch() {
+        cube.record(now, epoch);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Génère des logs au même format que {@link Producer}, pour alimenter les benchmarks sans Kafka.
+ */
+public final class SyntheticLogs {
+    private static final String[] LEVELS = {"INFO", "WARN", "ERROR"};
+    private static final String[] SERVICES = {"auth", "payment", "frontend", "backend"};
+    private static final String[] HTTP_METHODS = {"GET", "POST"};
+    private static final String[] URLS = {"/login", "/pay", "/home", "/dashboard"};
+
+    private SyntheticLogs() {
+    }
+
+    public static String log(Random random) {
+        String level = LEVELS[random.nextInt(LEVELS.length)];
+        String service = SERVICES[random.nextInt(SERVICES.length)];
+        String httpMethod = HTTP_METHODS[random.nextInt(HTTP_METHODS.length)];
+        String url = URLS[random.nextInt(URLS.length)];
+        String clientIp = "192.168.1." + (random.nextInt(254) + 1);
+        int httpStatus = (level.equals("ERROR")) ? 500 : (level.equals("WARN")) ? 404 : 200;
+        long latencyMs = 50 + random.nextInt(450);
+        String msg = String.format("Requête %s effectuée sur le service %s", httpMethod, url);
+
+        return String.format("""
+                {
+                  "timestamp": "%s",
+                  "level": "%s",
+                  "method": "%s",
+                  "url": "%s",
+                  "status": %d,
+                  "latencyMs": %d,
+                  "clientIp": "%s",
+                  "message": "%s",
+                  "service": "%s"
+                }
+                """, LocalDateTime.now(), level, httpMethod, url, httpStatus, latencyMs, clientIp, msg, service);
+    }
+
+    /** Logs encodés en UTF-8, tels que reçus par le consumer avec ByteArrayDeserializer. */
+    public static List<byte[]> records(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(log(random).getBytes(StandardCharsets.UTF_8));
+        }
+        return records;
+    }
+}
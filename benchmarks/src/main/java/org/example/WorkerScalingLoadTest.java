@@ -0,0 +1,70 @@
+package org.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Test de charge : débit des workers (sans Kafka) quand on passe de 1 à N threads.
+ * Sans barrière entre workers, le débit doit croître presque linéairement tant qu'il reste des cœurs libres.
+ *
+ * Usage : WorkerScalingLoadTest [maxThreads] [durationSeconds]
+ */
+public class WorkerScalingLoadTest {
+    // Taille d'un "poll" Kafka simulé
+    private static final int POLL_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int durationSeconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        List<byte[]> records = SyntheticLogs.records(POLL_SIZE, 42);
+
+        PrintStream console = System.out;
+        console.printf("%-8s %15s %10s%n", "threads", "logs/s", "speedup");
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            // Le service affiche ses stats sur stdout : on les coupe pendant la mesure
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            double throughput;
+            try {
+                throughput = run(threads, durationSeconds, records);
+            } finally {
+                System.setOut(console);
+            }
+            if (baseline == 0) {
+                baseline = throughput;
+            }
+            console.printf("%-8d %15.0f %9.2fx%n", threads, throughput, throughput / baseline);
+        }
+    }
+
+    private static double run(int threads, int durationSeconds, List<byte[]> records) throws Exception {
+        KafkaLogAnalyserService service = new KafkaLogAnalyserService(threads, 200);
+        service.startWorkers();
+
+        // L'anneau est borné : le feeder attend dès que les workers sont saturés
+        Thread feeder = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    service.submitRecords(records);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "feeder");
+        feeder.start();
+
+        // Échauffement JIT
+        Thread.sleep(2000);
+        long start = System.nanoTime();
+        long before = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+        Thread.sleep(durationSeconds * 1000L);
+        long after = KafkaLogAnalyserService.cumulativeCounts.getTotalLogs();
+        long elapsed = System.nanoTime() - start;
+
+        feeder.interrupt();
+        feeder.join();
+        service.stopWorkers();
+        return (after - before) * 1e9 / elapsed;
+    }
+}
@@ -22,6 +22,11 @@ const colors = [
 ];
 const getColor = (index) => colors[index % colors.length];
 
+const STEP_SECONDS = 10;
+const MAX_POINTS = 30;
+// Retard accepté par le service (2 min, voir EventTimeWindows) plus une epoch : fenêtre redemandée à chaque appel
+const LATENESS_SECONDS = 130;
+
 const LogLineChart = ({ isDarkMode,  isPaused }) => {
     const [dataPoints, setDataPoints] = useState([]);
     const [selectedUrls, setSelectedUrls] = useState([]);
@@ -30,22 +35,39 @@ const LogLineChart = ({ isDarkMode,  isPaused }) => {
     const containerRef = useRef(); // ✅ html2canvas target
     const colorMapRef = useRef({});
 
+    // Dernier bucket reçu : les appels suivants redemandent la fin de la série à partir de ce bucket moins LATENESS_SECONDS
+    const lastTimeRef = useRef(null);
+
     useEffect(() => {
         if (isPaused) return;
         const fetchData = () => {
-            fetch('http://localhost:8081/statsHistory')
+            // Les logs en retard comptent dans la seconde de leur propre heure : les buckets récents changent encore
+            const from = lastTimeRef.current !== null
+                ? lastTimeRef.current - LATENESS_SECONDS
+                : Math.floor(Date.now() / 1000) - STEP_SECONDS * MAX_POINTS;
+            fetch(`http://localhost:8081/statsHistory?from=${from}&step=${STEP_SECONDS}`)
                 .then(res => res.json())
-                .then(data => {
+                .then(series => {
+                    const newPoints = series.timestamps.map((time, i) => {
+                        const urlStats = {};
+                        Object.entries(series.urls || {}).forEach(([url, counts]) => {
+                            urlStats[url] = { count: counts[i] };
+                        });
+                        return { time, urlStats };
+                    });
                     setDataPoints(prev => {
-                        const lastTimestamp = prev[prev.length - 1]?.timestamp;
-                        const newPoints = data.filter(d => d.timestamp !== lastTimestamp);
-                        return [...prev, ...newPoints].slice(-30);
+                        // Les buckets redemandés remplacent ceux déjà reçus (retardataires compris)
+                        const kept = prev.filter(p => p.time !== undefined && p.time < series.from);
+                        return [...kept, ...newPoints].slice(-MAX_POINTS);
                     });
+                    if (series.timestamps.length > 0) {
+                        lastTimeRef.current = series.timestamps[series.timestamps.length - 1];
+                    }
                 })
                 .catch(console.error);
         };
         fetchData();
-        const intervalId = setInterval(fetchData, 10000);
+        const intervalId = setInterval(fetchData, STEP_SECONDS * 1000);
         return () => clearInterval(intervalId);
     }, [isPaused]);
 
@@ -65,7 +87,12 @@ const LogLineChart = ({ isDarkMode,  isPaused }) => {
 
         const saved = localStorage.getItem('logLineDataPoints');
         if (saved) {
-            setDataPoints(JSON.parse(saved));
+            // Ignore les points sauvegardés dans l'ancien format (timestamp texte)
+            const points = JSON.parse(saved).filter(p => p.time !== undefined);
+            setDataPoints(points);
+            if (points.length > 0) {
+                lastTimeRef.current = points[points.length - 1].time;
+            }
         }
     }, []);
 
@@ -104,7 +131,7 @@ const LogLineChart = ({ isDarkMode,  isPaused }) => {
             tension: 0.4,
         }));
 
-    const labels = dataPoints.map(p => p.timestamp.substring(11, 19)); // HH:mm:ss
+    const labels = dataPoints.map(p => new Date(p.time * 1000).toLocaleTimeString()); // HH:mm:ss
 
     const chartData = { labels, datasets };
 
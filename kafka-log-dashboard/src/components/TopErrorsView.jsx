@@ -2,7 +2,7 @@
 import React from 'react';
 import '../styles/main.css';
 
-const ErrorBar = ({ url, count, total, type }) => {
+const ErrorBar = ({ url, count, total, type, label }) => {
     const percentage = total > 0 ? (count / total) * 100 : 0;
     const colorClass = type === '5xx' ? 'bar-red' : 'bar-orange';
 
@@ -12,12 +12,40 @@ const ErrorBar = ({ url, count, total, type }) => {
             <div className="error-bar-wrapper">
                 <div className={`error-bar ${colorClass}`} style={{ width: `${percentage}%` }}></div>
             </div>
-            <span className="error-count">{count} erreurs</span>
+            <span className="error-count">{label ?? `${count} erreurs`}</span>
         </div>
     );
 };
 
-const TopErrorsView = ({ urls4xx = {}, urls5xx = {}, isDarkMode }) => {
+// Top cumulé approximatif (Count-Min + Space-Saving) : le compte réel est entre minCount et count
+const HeavyHitterList = ({ title, summary, type, unit }) => {
+    const items = summary?.items ?? [];
+    const total = items.reduce((acc, item) => acc + item.count, 0);
+
+    return (
+        <>
+            <h3>{title}</h3>
+            {items.length === 0 ? (
+                <p>Aucune donnée cumulée.</p>
+            ) : (
+                items.slice(0, 10).map(item => (
+                    <ErrorBar
+                        key={item.key}
+                        url={item.key}
+                        count={item.count}
+                        total={total}
+                        type={type}
+                        label={item.count === item.minCount
+                            ? `${item.count} ${unit}`
+                            : `≤ ${item.count} ${unit} (≥ ${item.minCount})`}
+                    />
+                ))
+            )}
+        </>
+    );
+};
+
+const TopErrorsView = ({ urls4xx = {}, urls5xx = {}, heavyHitters, isDarkMode }) => {
     const total4xx = Object.values(urls4xx).reduce((acc, v) => acc + v, 0);
     const total5xx = Object.values(urls5xx).reduce((acc, v) => acc + v, 0);
 
@@ -42,6 +70,11 @@ const TopErrorsView = ({ urls4xx = {}, urls5xx = {}, isDarkMode }) => {
                     <ErrorBar key={url} url={url} count={count} total={total4xx} type="4xx" />
                 ))
             )}
+
+            <h2>📈 Top cumulé depuis le démarrage</h2>
+            <HeavyHitterList title="URLs en erreur serveur (5xx)" summary={heavyHitters?.urls5xx} type="5xx" unit="erreurs" />
+            <HeavyHitterList title="URLs en erreur client (4xx)" summary={heavyHitters?.urls4xx} type="4xx" unit="erreurs" />
+            <HeavyHitterList title="IPs clients les plus actives" summary={heavyHitters?.clientIps} type="4xx" unit="requêtes" />
         </div>
     );
 };
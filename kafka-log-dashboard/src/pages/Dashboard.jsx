@@ -4,7 +4,7 @@ import StatCard from '../components/StatCard';
 import StatusIndicator from '../components/StatusIndicator';
 
 import Navbar from '../components/Navbar';
-import { fetchStats } from '../services/statsService';
+import { fetchStats, subscribeStats } from '../services/statsService';
 import '../styles/main.css';
 import LogLineChart from '../components/LogLineChart';
 import LogBarChart from '../components/LogBarChart';
@@ -45,35 +45,37 @@ const Dashboard = () => {
     });
     const getStats = async ({ updateDisplay = true } = {}) => {
         try {
-            const data = await fetchStats();
+            applyStats(await fetchStats(), { updateDisplay });
+        } catch (error) {
+            console.error("Erreur lors de la récupération des stats :", error);
+        }
+    };
 
-            if (!isPaused) {
-                setStats(data);
-                localStorage.setItem('dashboardStats', JSON.stringify(data));
-            }
+    const applyStats = (data, { updateDisplay = true } = {}) => {
+        if (!isPaused) {
+            setStats(data);
+            localStorage.setItem('dashboardStats', JSON.stringify(data));
+        }
 
-            if (updateDisplay) {
-                const now = new Date().toLocaleTimeString();
-                setLastUpdate(now);
-                localStorage.setItem('dashboardLastUpdate', now);
+        if (updateDisplay) {
+            const now = new Date().toLocaleTimeString();
+            setLastUpdate(now);
+            localStorage.setItem('dashboardLastUpdate', now);
 
-                setLogHistory(prev => [...prev.slice(-9), { timestamp: now, count: data.totalProcessedLogs }]);
+            setLogHistory(prev => [...prev.slice(-9), { timestamp: now, count: data.totalProcessedLogs }]);
 
 
-                const newPieData = {
-                    success2xx: data.success2xx || 0,
-                    errors4xx: data.errors4xx || 0,
-                    errors5xx: data.errors5xx || 0,
-                };
-                setPieData(newPieData);
-                localStorage.setItem('dashboardPieData', JSON.stringify(newPieData));
+            const newPieData = {
+                success2xx: data.success2xx || 0,
+                errors4xx: data.errors4xx || 0,
+                errors5xx: data.errors5xx || 0,
+            };
+            setPieData(newPieData);
+            localStorage.setItem('dashboardPieData', JSON.stringify(newPieData));
 
-                const newBarData = data.urlStats || {};
-                setBarData(newBarData);
-                localStorage.setItem('dashboardBarData', JSON.stringify(newBarData));
-            }
-        } catch (error) {
-            console.error("Erreur lors de la récupération des stats :", error);
+            const newBarData = data.urlStats || {};
+            setBarData(newBarData);
+            localStorage.setItem('dashboardBarData', JSON.stringify(newBarData));
         }
     };
 
@@ -95,14 +97,14 @@ const Dashboard = () => {
     }, [isPaused]);
 
     useEffect(() => {
-
-        getStats({ updateDisplay: !isPaused });
-
-        // Si pas en pause, continuer à récupérer toutes les 10s
-        if (!isPaused) {
-            const interval = setInterval(getStats, 10000);
-            return () => clearInterval(interval);
-        }
+        // En pause : on garde l'affichage figé et on ne s'abonne pas
+        if (isPaused) return;
+
+        // Le serveur pousse chaque nouveau snapshot (SSE) : plus d'interrogation périodique de /stats
+        return subscribeStats(data => {
+            applyStats(data);
+            setBackgroundStats(data);
+        });
     }, [isPaused]);
 
 
@@ -110,7 +112,8 @@ const Dashboard = () => {
 
 
     useEffect(() => {
-        if (selectedChart === 'cumulative') {
+        // Le top cumulé des erreurs vient aussi de /statsCumulative
+        if (selectedChart === 'cumulative' || selectedChart === 'errors') {
             getCumulativeStats();
 
             const interval = setInterval(getCumulativeStats, 10000);
@@ -123,26 +126,6 @@ const Dashboard = () => {
     useEffect(() => {
         document.body.classList.toggle('dark-mode', isDarkMode);
     }, [isDarkMode]);
-    useEffect(() => {
-        const interval = setInterval(async () => {
-            if (!isPaused) {
-                const data = await fetchStats();
-                setBackgroundStats(data);
-                setStats(data);
-            }
-        }, 10000);
-
-
-        if (!isPaused) {
-            (async () => {
-                const data = await fetchStats();
-                setBackgroundStats(data);
-                setStats(data);
-            })();
-        }
-
-        return () => clearInterval(interval);
-    }, [isPaused]);
 
 
     return (
@@ -211,6 +194,7 @@ const Dashboard = () => {
                             <TopErrorsView
                                 urls4xx={stats?.urls4xx}
                                 urls5xx={stats?.urls5xx}
+                                heavyHitters={cumulativeStats?.heavyHitters}
                                 isDarkMode={isDarkMode}
                             />
                         </div>
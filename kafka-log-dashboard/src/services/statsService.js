@@ -4,3 +4,44 @@ export async function fetchStats() {
     return await response.json();
 
 }
+
+// Applique un patch JSON (RFC 7386) : null supprime la clé, un sous-objet est fusionné récursivement
+function applyPatch(target, patch) {
+    const next = { ...target };
+    Object.entries(patch).forEach(([key, value]) => {
+        if (value === null) {
+            delete next[key];
+        } else if (isObject(value) && isObject(next[key])) {
+            next[key] = applyPatch(next[key], value);
+        } else {
+            next[key] = value;
+        }
+    });
+    return next;
+}
+
+function isObject(value) {
+    return value !== null && typeof value === 'object' && !Array.isArray(value);
+}
+
+// Flux SSE : snapshot complet à la connexion, puis deltas (patchs JSON) appliqués sur le dernier état
+export function subscribeStats(onStats) {
+    const source = new EventSource('http://localhost:8081/stats/stream');
+    let current = null;
+
+    source.addEventListener('snapshot', event => {
+        current = JSON.parse(event.data);
+        onStats(current);
+    });
+    source.addEventListener('delta', event => {
+        if (!current) return;
+        current = applyPatch(current, JSON.parse(event.data));
+        onStats(current);
+    });
+    source.onerror = () => {
+        // EventSource se reconnecte seul ; le serveur renverra alors un snapshot complet
+        current = null;
+    };
+
+    return () => source.close();
+}
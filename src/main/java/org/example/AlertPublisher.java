@@ -0,0 +1,121 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publication des alertes de {@link AnomalyDetector} dans un topic Kafka ({@code alerts} par défaut) :
+ * une alerte = un message JSON, clé {@code scope:clé:signal} (les changements d'état d'une même clé restent ordonnés).
+ *
+ * L'epoch closer ne fait que déposer l'alerte dans une petite file ; le send() Kafka, qui peut attendre
+ * les métadonnées du broker, se fait sur un thread dédié. File pleine ou broker absent : l'alerte est comptée
+ * perdue pour Kafka, elle reste visible sur /alerts et dans le flux SSE.
+ */
+final class AlertPublisher {
+    private static final int CAPACITY = 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Producer<byte[], byte[]> producer;
+    private final String topic;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadPoolExecutor sender = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CAPACITY), r -> {
+                Thread thread = new Thread(r, "alert-publisher");
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> dropped.incrementAndGet());
+
+    AlertPublisher(Producer<byte[], byte[]> producer, String topic) {
+        this.producer = producer;
+        this.topic = topic;
+    }
+
+    /** Publication configurée par propriétés système, ou {@code null} si {@code analyser.alerts.bootstrap} est vide. */
+    static AlertPublisher fromSystemProperties() {
+        String bootstrap = System.getProperty("analyser.alerts.bootstrap", "localhost:9092");
+        if (bootstrap.isBlank()) {
+            return null;
+        }
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrap);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        //Peu de messages, à livrer vite : pas de linger, et pas plus de quelques secondes d'attente du broker
+        props.put(ProducerConfig.LINGER_MS_CONFIG, "0");
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "5000");
+        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, "30000");
+        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "10000");
+        return new AlertPublisher(new KafkaProducer<>(props), System.getProperty("analyser.alerts.topic", "alerts"));
+    }
+
+    /** Dépose une alerte à publier (epoch closer) ; ne bloque jamais. */
+    void offer(AnomalyDetector.Alert alert) {
+        byte[] key = (alert.scope().key + ":" + alert.key() + ":" + alert.signal().key).getBytes(StandardCharsets.UTF_8);
+        byte[] value;
+        try {
+            value = mapper.writeValueAsBytes(alert.toMap());
+        } catch (JsonProcessingException e) {
+            failed.incrementAndGet();
+            return;
+        }
+        sender.execute(() -> send(key, value));
+    }
+
+    private void send(byte[] key, byte[] value) {
+        try {
+            producer.send(new ProducerRecord<>(topic, key, value), (metadata, e) -> {
+                if (e == null) {
+                    sent.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+        }
+    }
+
+    /** Attend les envois en cours puis ferme le producer. */
+    void stop() {
+        sender.shutdown();
+        try {
+            sender.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        producer.close(Duration.ofSeconds(5));
+    }
+
+    /** Nombre d'alertes dont la publication est terminée (envoyées, en échec ou perdues) : change à chaque issue. */
+    long progress() {
+        return sent.get() + failed.get() + dropped.get();
+    }
+
+    /** Compteurs de publication, pour /alerts. */
+    Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("topic", topic);
+        summary.put("sent", sent.get());
+        summary.put("failed", failed.get());
+        summary.put("dropped", dropped.get());
+        summary.put("pending", sender.getQueue().size());
+        return summary;
+    }
+}
@@ -0,0 +1,285 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Détection d'anomalies incrémentale, évaluée à chaque fermeture d'epoch sur la fenêtre fusionnée.
+ *
+ * Pour chaque URL et chaque service, trois signaux de la fenêtre : taux de 4xx, taux de 5xx (en %) et latence
+ * moyenne (ms). Chacun a une ligne de base EWMA (moyenne et variance à décroissance exponentielle, facteur
+ * {@code alpha}) ; l'écart de la fenêtre est exprimé en score z. Une alerte {@link State#FIRING} part dès que
+ * le score atteint {@code threshold} à la hausse, {@link State#RESOLVED} quand il repasse sous la moitié.
+ *
+ * <ul>
+ *   <li>Mise à jour en O(1) par clé et par signal, dans des tableaux primitifs indexés par l'identifiant dense
+ *       ({@link KeyDictionary}) : rien n'est alloué par fenêtre hors agrandissement et alertes émises.</li>
+ *   <li>Pas d'alerte avant {@code warmupWindows} fenêtres observées, ni sur une fenêtre de moins de
+ *       {@code minRequests} logs pour la clé. Aux taux s'ajoute leur bruit d'échantillonnage p(1 − p)/n :
+ *       quelques erreurs sur une URL peu appelée ne suffisent pas.</li>
+ *   <li>Écart-type plancher (1 point de taux, 5 % de la latence de base) : une clé parfaitement stable
+ *       n'alerte pas sur la première erreur venue.</li>
+ *   <li>Pendant une alerte, la ligne de base n'avance qu'à {@code alpha / 10} : le pic n'est pas absorbé
+ *       tout de suite, mais un nouveau régime durable finit par devenir la norme.</li>
+ * </ul>
+ * Les taux par service sont lus dans les cellules du cube de la fenêtre ({@link CubeCells}) : aucun compteur
+ * de plus par log. Non thread-safe : utilisé uniquement par l'epoch closer.
+ *
+ * Réglages : {@code -Danalyser.anomaly.alpha} (0.1), {@code .threshold} (4), {@code .warmupWindows} (12),
+ * {@code .minRequests} (20).
+ */
+public final class AnomalyDetector {
+    /** Ensemble de clés surveillées. */
+    public enum Scope {
+        URL("url"), SERVICE("service");
+
+        final String key;
+
+        Scope(String key) {
+            this.key = key;
+        }
+    }
+
+    /** Signal mesuré sur chaque fenêtre. */
+    public enum Signal {
+        ERRORS_4XX("errorRate4xx"), ERRORS_5XX("errorRate5xx"), LATENCY("latencyMs");
+
+        final String key;
+
+        Signal(String key) {
+            this.key = key;
+        }
+    }
+
+    public enum State {
+        FIRING, RESOLVED
+    }
+
+    /** Changement d'état d'une clé sur un signal, à l'epoch {@code epoch}. */
+    public record Alert(State state, Scope scope, String key, Signal signal, double value, double baseline,
+                        double zScore, long windowLogs, long epoch, long detectedAtMillis) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("state", state.name());
+            map.put("scope", scope.key);
+            map.put("key", key);
+            map.put("signal", signal.key);
+            map.put("value", round(value));
+            map.put("baseline", round(baseline));
+            map.put("zScore", round(zScore));
+            map.put("windowLogs", windowLogs);
+            map.put("epoch", epoch);
+            map.put("detectedAt", detectedAtMillis);
+            return map;
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100) / 100.0;
+        }
+    }
+
+    private static final Signal[] SIGNALS = Signal.values();
+    private static final double RATE_FLOOR = 1.0;
+    private static final double LATENCY_FLOOR_RATIO = 0.05;
+    private static final double LATENCY_FLOOR_MS = 1.0;
+
+    private final double alpha;
+    private final double threshold;
+    private final int warmupWindows;
+    private final int minRequests;
+    private final KeyDictionary urls;
+    private final KeyDictionary services;
+    private final Baselines urlBaselines = new Baselines();
+    private final Baselines serviceBaselines = new Baselines();
+
+    // Compteurs par service de la fenêtre en cours d'évaluation, remis à zéro à chaque fenêtre
+    private long[] serviceRequests = new long[16];
+    private long[] service4xx = new long[16];
+    private long[] service5xx = new long[16];
+    private final CubeCells.Visitor serviceCounter = this::countService;
+
+    // Alertes émises par le dernier appel à evaluate(), réutilisée d'une fenêtre à l'autre
+    private final List<Alert> emitted = new ArrayList<>();
+    private long fired;
+
+    public AnomalyDetector(KeyDictionary urls, KeyDictionary services, double alpha, double threshold,
+                           int warmupWindows, int minRequests) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha doit être dans ]0, 1] : " + alpha);
+        }
+        this.urls = urls;
+        this.services = services;
+        this.alpha = alpha;
+        this.threshold = threshold;
+        this.warmupWindows = warmupWindows;
+        this.minRequests = minRequests;
+    }
+
+    static AnomalyDetector fromSystemProperties(KeyDictionary urls, KeyDictionary services) {
+        return new AnomalyDetector(urls, services,
+                Double.parseDouble(System.getProperty("analyser.anomaly.alpha", "0.1")),
+                Double.parseDouble(System.getProperty("analyser.anomaly.threshold", "4")),
+                Integer.getInteger("analyser.anomaly.warmupWindows", 12),
+                Integer.getInteger("analyser.anomaly.minRequests", 20));
+    }
+
+    /**
+     * Évalue la fenêtre fusionnée de l'epoch {@code epoch} et met à jour les lignes de base.
+     * Renvoie les alertes émises ; la liste est réutilisée par l'appel suivant.
+     */
+    public List<Alert> evaluate(WindowAccumulator window, long epoch, long nowMillis) {
+        emitted.clear();
+
+        int urlLimit = Math.min(window.urlLimit(), urls.size());
+        for (int id = 0; id < urlLimit; id++) {
+            long requests = window.count(id, StatusCounts.REQUESTS);
+            if (requests > 0) {
+                observe(Scope.URL, urlBaselines, id, requests, window.count(id, StatusCounts.ERRORS_4XX),
+                        window.count(id, StatusCounts.ERRORS_5XX), latency(window.urlLatency, id), epoch, nowMillis);
+            }
+        }
+
+        int serviceLimit = services.size();
+        if (serviceLimit > serviceRequests.length) {
+            serviceRequests = Arrays.copyOf(serviceRequests, serviceLimit);
+            service4xx = Arrays.copyOf(service4xx, serviceLimit);
+            service5xx = Arrays.copyOf(service5xx, serviceLimit);
+        }
+        Arrays.fill(serviceRequests, 0);
+        Arrays.fill(service4xx, 0);
+        Arrays.fill(service5xx, 0);
+        for (CubeCells cells : window.rollups.values()) {
+            cells.forEach(serviceCounter);
+        }
+        for (int id = 0; id < serviceLimit; id++) {
+            if (serviceRequests[id] > 0) {
+                observe(Scope.SERVICE, serviceBaselines, id, serviceRequests[id], service4xx[id], service5xx[id],
+                        latency(window.serviceLatency, id), epoch, nowMillis);
+            }
+        }
+        return emitted;
+    }
+
+    private void countService(long key, long count, long latencyCount, long latencySum, long latencyMax) {
+        int id = RollupCube.Dimension.SERVICE.value(key);
+        if (id < 0 || id >= serviceRequests.length) {
+            return;
+        }
+        serviceRequests[id] += count;
+        int statusClass = RollupCube.Dimension.STATUS_CLASS.value(key);
+        if (statusClass == 4) {
+            service4xx[id] += count;
+        } else if (statusClass == 5) {
+            service5xx[id] += count;
+        }
+    }
+
+    private static double latency(LatencyHistogram[] histograms, int id) {
+        return id < histograms.length && histograms[id] != null && histograms[id].count() > 0 ? histograms[id].mean() : -1;
+    }
+
+    private void observe(Scope scope, Baselines baselines, int id, long requests, long errors4xx, long errors5xx,
+                         double latencyMs, long epoch, long nowMillis) {
+        if (requests < minRequests) {
+            return;
+        }
+        baselines.ensure(id);
+        int base = id * SIGNALS.length;
+        double rate4xx = errors4xx * 100.0 / requests;
+        double rate5xx = errors5xx * 100.0 / requests;
+        update(scope, baselines, base + Signal.ERRORS_4XX.ordinal(), id, Signal.ERRORS_4XX, rate4xx,
+                rate4xx * (100 - rate4xx) / requests, requests, epoch, nowMillis);
+        update(scope, baselines, base + Signal.ERRORS_5XX.ordinal(), id, Signal.ERRORS_5XX, rate5xx,
+                rate5xx * (100 - rate5xx) / requests, requests, epoch, nowMillis);
+        if (latencyMs >= 0) {
+            update(scope, baselines, base + Signal.LATENCY.ordinal(), id, Signal.LATENCY, latencyMs, 0,
+                    requests, epoch, nowMillis);
+        }
+    }
+
+    /** Une observation d'un signal : score z par rapport à la base, changement d'état éventuel, puis mise à jour de la base. */
+    private void update(Scope scope, Baselines baselines, int i, int id, Signal signal, double value,
+                        double samplingVariance, long requests, long epoch, long nowMillis) {
+        int observed = baselines.observations[i];
+        double mean = baselines.mean[i];
+        if (observed == 0) {
+            baselines.mean[i] = value;
+            baselines.observations[i] = 1;
+            return;
+        }
+        double floor = signal == Signal.LATENCY ? Math.max(LATENCY_FLOOR_MS, mean * LATENCY_FLOOR_RATIO) : RATE_FLOOR;
+        double deviation = Math.sqrt(Math.max(baselines.variance[i] + samplingVariance, floor * floor));
+        double z = (value - mean) / deviation;
+
+        boolean firing = baselines.firing[i];
+        if (!firing && observed >= warmupWindows && z >= threshold) {
+            baselines.firing[i] = true;
+            fired++;
+            emitted.add(new Alert(State.FIRING, scope, name(scope, id), signal, value, mean, z, requests, epoch, nowMillis));
+        } else if (firing && z < threshold / 2) {
+            baselines.firing[i] = false;
+            emitted.add(new Alert(State.RESOLVED, scope, name(scope, id), signal, value, mean, z, requests, epoch, nowMillis));
+        }
+
+        // Moyenne et variance exponentielles en une passe : la variance utilise l'écart à l'ancienne moyenne
+        double weight = baselines.firing[i] ? alpha / 10 : alpha;
+        double diff = value - mean;
+        double increment = weight * diff;
+        baselines.mean[i] = mean + increment;
+        baselines.variance[i] = (1 - weight) * (baselines.variance[i] + diff * increment);
+        baselines.observations[i] = observed + 1;
+    }
+
+    private String name(Scope scope, int id) {
+        return scope == Scope.URL ? urls.name(id) : services.name(id);
+    }
+
+    /** Nombre d'alertes {@link State#FIRING} émises depuis le démarrage. */
+    public long fired() {
+        return fired;
+    }
+
+    /** Clés et signaux actuellement en alerte, avec leur ligne de base. */
+    public List<Map<String, Object>> active() {
+        List<Map<String, Object>> active = new ArrayList<>();
+        urlBaselines.collectFiring(Scope.URL, this, active);
+        serviceBaselines.collectFiring(Scope.SERVICE, this, active);
+        return active;
+    }
+
+    /** Lignes de base d'un ensemble de clés, en colonnes : id × signal → moyenne, variance, observations, alerte. */
+    private static final class Baselines {
+        double[] mean = new double[0];
+        double[] variance = new double[0];
+        int[] observations = new int[0];
+        boolean[] firing = new boolean[0];
+
+        void ensure(int id) {
+            int needed = (id + 1) * SIGNALS.length;
+            if (needed > mean.length) {
+                int length = Math.max(needed, mean.length * 2);
+                mean = Arrays.copyOf(mean, length);
+                variance = Arrays.copyOf(variance, length);
+                observations = Arrays.copyOf(observations, length);
+                firing = Arrays.copyOf(firing, length);
+            }
+        }
+
+        void collectFiring(Scope scope, AnomalyDetector detector, List<Map<String, Object>> into) {
+            for (int i = 0; i < firing.length; i++) {
+                if (firing[i]) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("scope", scope.key);
+                    item.put("key", detector.name(scope, i / SIGNALS.length));
+                    item.put("signal", SIGNALS[i % SIGNALS.length].key);
+                    item.put("baseline", Math.round(mean[i] * 100) / 100.0);
+                    into.add(item);
+                }
+            }
+        }
+    }
+}
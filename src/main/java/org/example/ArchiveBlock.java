@@ -0,0 +1,302 @@
+package org.example;
+
+import net.jpountz.lz4.LZ4Compressor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Bloc de logs en cours d'archivage, rempli par un seul worker puis encodé par le thread d'écriture de {@link LogArchive}.
+ *
+ * Côté worker, {@link #append} ne fait que ranger les valeurs extraites dans des colonnes primitives
+ * (heure, statut, latence, octets des champs texte) : ni String, ni hachage, ni compression sur le chemin du log.
+ *
+ * Côté écriture, {@link #encode} produit le bloc sur disque : un en-tête (nombre de logs, plage d'heures, filtre
+ * de Bloom des URLs, tailles des colonnes, CRC32C) puis chaque colonne compressée séparément en LZ4.
+ * La plage d'heures et le filtre servent d'index : le rejeu saute un bloc sans le décompresser. Les entiers sont des varints
+ * (l'heure en écart au log précédent) ; chaque champ texte devient un code dans le dictionnaire du bloc,
+ * rangé dans la colonne {@link Column#DICTIONARY} avec les valeurs distinctes des autres champs texte.
+ */
+final class ArchiveBlock {
+    static final int MAGIC = 0x4C4F4742; // "LOGB"
+
+    /** Colonnes d'un bloc, dans l'ordre où elles sont écrites. */
+    enum Column {
+        TIME, STATUS, LATENCY, URL, SERVICE, METHOD, LEVEL, CLIENT_IP, DICTIONARY
+    }
+
+    // Champs texte archivés, dans l'ordre des colonnes URL à CLIENT_IP
+    static final LogField[] TEXT_FIELDS = {LogField.URL, LogField.SERVICE, LogField.METHOD, LogField.LEVEL, LogField.CLIENT_IP};
+    static final int COLUMNS = Column.values().length;
+    // Filtre de Bloom des URLs d'un bloc : 2048 bits, ≈ 3 % de faux positifs pour 200 URLs distinctes
+    static final int FILTER_WORDS = 32;
+    static final int FILTER = 32;
+    static final int COLUMN_SIZES = FILTER + FILTER_WORDS * 8;
+    // magic, logs, heure min, heure max, taille des données, CRC, filtre des URLs, puis (compressé, brut) par colonne
+    static final int HEADER_BYTES = COLUMN_SIZES + COLUMNS * 8;
+
+    private final int capacity;
+    private int size;
+    private long createdNanos;
+    private final long[] times;
+    private final int[] statuses;
+    private final long[] latencies;
+    // Octets des champs texte mis bout à bout, par champ ; longueur -1 si le champ est absent du log
+    private final byte[][] textBytes = new byte[TEXT_FIELDS.length][];
+    private final int[] textUsed = new int[TEXT_FIELDS.length];
+    private final int[][] textLengths = new int[TEXT_FIELDS.length][];
+
+    ArchiveBlock(int capacity) {
+        this.capacity = capacity;
+        times = new long[capacity];
+        statuses = new int[capacity];
+        latencies = new long[capacity];
+        for (int f = 0; f < TEXT_FIELDS.length; f++) {
+            textBytes[f] = new byte[capacity * 16];
+            textLengths[f] = new int[capacity];
+        }
+    }
+
+    /** Ajoute un log déjà agrégé ; {@code eventTime} est l'heure retenue pour ses fenêtres. */
+    void append(LogFields fields, long eventTime) {
+        if (size == 0) {
+            createdNanos = System.nanoTime();
+        }
+        times[size] = eventTime;
+        statuses[size] = fields.status();
+        latencies[size] = fields.latencyMs();
+        for (int f = 0; f < TEXT_FIELDS.length; f++) {
+            int length = fields.utf8Length(TEXT_FIELDS[f]);
+            textLengths[f][size] = length;
+            if (length > 0) {
+                int used = textUsed[f];
+                if (used + length > textBytes[f].length) {
+                    textBytes[f] = Arrays.copyOf(textBytes[f], Math.max(used + length, textBytes[f].length * 2));
+                }
+                fields.copyUtf8(TEXT_FIELDS[f], textBytes[f], used);
+                textUsed[f] = used + length;
+            }
+        }
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    /** Bloc non vide commencé depuis au moins {@code lingerNanos}. */
+    boolean lingerExpired(long now, long lingerNanos) {
+        return size > 0 && now - createdNanos >= lingerNanos;
+    }
+
+    void clear() {
+        size = 0;
+        Arrays.fill(textUsed, 0);
+    }
+
+    /**
+     * Encode le bloc (thread d'écriture uniquement) dans {@code encoder}, dont le tampon {@link Encoder#output()}
+     * contient ensuite l'en-tête et les colonnes compressées, prêt à écrire.
+     */
+    void encode(Encoder encoder) {
+        encoder.reset();
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long previous = 0;
+        Column[] columns = Column.values();
+        ColumnWriter time = encoder.column(Column.TIME);
+        ColumnWriter status = encoder.column(Column.STATUS);
+        ColumnWriter latency = encoder.column(Column.LATENCY);
+        for (int i = 0; i < size; i++) {
+            long t = times[i];
+            minTime = Math.min(minTime, t);
+            maxTime = Math.max(maxTime, t);
+            time.writeSignedVarLong(t - previous);
+            previous = t;
+            status.writeVarLong(Math.max(0, statuses[i]));
+            latency.writeVarLong(latencies[i] + 1);
+        }
+        ColumnWriter dictionary = encoder.column(Column.DICTIONARY);
+        Arrays.fill(encoder.urlFilter, 0);
+        for (int f = 0; f < TEXT_FIELDS.length; f++) {
+            encoder.dictionary.encode(textBytes[f], textLengths[f], size, encoder.column(columns[Column.URL.ordinal() + f]),
+                    dictionary, TEXT_FIELDS[f] == LogField.URL ? encoder.urlFilter : null);
+        }
+        encoder.finish(size, minTime, maxTime);
+    }
+
+    /** Les deux bits d'une valeur dans le filtre de Bloom d'un en-tête, d'après son hash64 : indices sur 11 bits chacun. */
+    static int filterBit(long hash64, int which) {
+        return (int) (hash64 >>> (which * 11)) & (FILTER_WORDS * 64 - 1);
+    }
+
+    /** Tampons réutilisés d'un bloc à l'autre par le thread d'écriture. */
+    static final class Encoder {
+        private final LZ4Compressor compressor;
+        private final ColumnWriter[] columns = new ColumnWriter[COLUMNS];
+        private final BlockDictionary dictionary = new BlockDictionary();
+        private final CRC32C crc = new CRC32C();
+        private final long[] urlFilter = new long[FILTER_WORDS];
+        private ByteBuffer output = ByteBuffer.allocate(1 << 20);
+
+        Encoder(LZ4Compressor compressor) {
+            this.compressor = compressor;
+            for (int c = 0; c < COLUMNS; c++) {
+                columns[c] = new ColumnWriter();
+            }
+        }
+
+        ColumnWriter column(Column column) {
+            return columns[column.ordinal()];
+        }
+
+        private void reset() {
+            for (ColumnWriter column : columns) {
+                column.size = 0;
+            }
+        }
+
+        private void finish(int records, long minTime, long maxTime) {
+            int bound = HEADER_BYTES;
+            for (ColumnWriter column : columns) {
+                bound += compressor.maxCompressedLength(column.size);
+            }
+            if (output.capacity() < bound) {
+                output = ByteBuffer.allocate(Math.max(bound, output.capacity() * 2));
+            }
+            output.clear();
+            int position = HEADER_BYTES;
+            for (int c = 0; c < COLUMNS; c++) {
+                ColumnWriter column = columns[c];
+                int compressed = compressor.compress(column.bytes, 0, column.size, output.array(), position,
+                        output.capacity() - position);
+                output.putInt(COLUMN_SIZES + c * 8, compressed).putInt(COLUMN_SIZES + c * 8 + 4, column.size);
+                position += compressed;
+            }
+            crc.reset();
+            crc.update(output.array(), HEADER_BYTES, position - HEADER_BYTES);
+            output.putInt(0, MAGIC).putInt(4, records).putLong(8, minTime).putLong(16, maxTime)
+                    .putInt(24, position - HEADER_BYTES).putInt(28, (int) crc.getValue());
+            for (int w = 0; w < FILTER_WORDS; w++) {
+                output.putLong(FILTER + w * 8, urlFilter[w]);
+            }
+            output.limit(position);
+        }
+
+        /** En-tête et colonnes compressées du dernier bloc encodé. */
+        ByteBuffer output() {
+            return output;
+        }
+
+        /** Octets bruts (avant compression) du dernier bloc encodé. */
+        long rawBytes() {
+            long raw = HEADER_BYTES;
+            for (ColumnWriter column : columns) {
+                raw += column.size;
+            }
+            return raw;
+        }
+    }
+
+    /** Colonne en cours d'encodage : tableau d'octets agrandi au besoin. */
+    static final class ColumnWriter {
+        private byte[] bytes = new byte[1 << 14];
+        private int size;
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void write(byte[] source, int offset, int length) {
+            ensure(length);
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+    }
+
+    /**
+     * Dictionnaire d'un champ texte dans un bloc : valeurs distinctes dans l'ordre d'apparition, codes 1..n
+     * (0 = champ absent). Table à adressage ouvert sur les octets, réutilisée d'un champ et d'un bloc à l'autre.
+     * {@link #encode} ajoute aussi les valeurs distinctes au filtre de Bloom {@code filter} s'il n'est pas nul.
+     */
+    private static final class BlockDictionary {
+        private int[] slots = new int[1 << 10];
+        private int[] entryOffsets = new int[256];
+        private int[] entryLengths = new int[256];
+        private int entries;
+
+        void encode(byte[] bytes, int[] lengths, int records, ColumnWriter codes, ColumnWriter dictionary, long[] filter) {
+            int needed = Integer.highestOneBit(Math.max(4, records * 2 - 1)) << 1;
+            if (slots.length < needed) {
+                slots = new int[needed];
+            }
+            Arrays.fill(slots, 0);
+            if (entryOffsets.length < records) {
+                entryOffsets = new int[records];
+                entryLengths = new int[records];
+            }
+            entries = 0;
+            int mask = slots.length - 1;
+            int offset = 0;
+            for (int i = 0; i < records; i++) {
+                int length = lengths[i];
+                if (length < 0) {
+                    codes.writeVarLong(0);
+                    continue;
+                }
+                int slot = ByteStringCache.hash(bytes, offset, length) & mask;
+                int code;
+                while (true) {
+                    code = slots[slot];
+                    if (code == 0) {
+                        code = ++entries;
+                        entryOffsets[code - 1] = offset;
+                        entryLengths[code - 1] = length;
+                        slots[slot] = code;
+                        break;
+                    }
+                    int entry = code - 1;
+                    if (Arrays.equals(bytes, entryOffsets[entry], entryOffsets[entry] + entryLengths[entry],
+                            bytes, offset, offset + length)) {
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                codes.writeVarLong(code);
+                offset += length;
+            }
+            dictionary.writeVarLong(entries);
+            for (int e = 0; e < entries; e++) {
+                dictionary.writeVarLong(entryLengths[e]);
+                dictionary.write(bytes, entryOffsets[e], entryLengths[e]);
+                if (filter != null) {
+                    long hash = ByteStringCache.hash64(bytes, entryOffsets[e], entryLengths[e]);
+                    for (int which = 0; which < 2; which++) {
+                        int bit = filterBit(hash, which);
+                        filter[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package org.example;
+
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Lecture des logs d'un bloc archivé ({@link ArchiveBlock}), directement depuis le segment mappé en mémoire.
+ *
+ * {@link #load} vérifie le CRC puis décompresse les colonnes dans des tableaux réutilisés ; {@link #next} remplit
+ * un {@link LogFields} comme le ferait l'extracteur : nombres posés tels quels, champs texte en plages d'octets
+ * dans le dictionnaire du bloc. Les identifiants denses et les top-K se calculent donc sur ces octets, sans String.
+ * Une instance par thread de rejeu.
+ */
+final class ArchiveCursor {
+    private static final int TEXT = ArchiveBlock.TEXT_FIELDS.length;
+
+    private final LZ4FastDecompressor decompressor;
+    private final CRC32C crc = new CRC32C();
+    private final byte[][] columns = new byte[ArchiveBlock.COLUMNS][];
+    private final ByteBuffer[] wrapped = new ByteBuffer[ArchiveBlock.COLUMNS];
+    private final int[] positions = new int[ArchiveBlock.COLUMNS];
+    // Dictionnaire de chaque champ texte : plage de chaque code (1..n) dans la colonne DICTIONARY
+    private final int[][] entryOffsets = new int[TEXT][];
+    private final int[][] entryLengths = new int[TEXT][];
+    private final int[] entries = new int[TEXT];
+
+    private int records;
+    private int read;
+    private long previousTime;
+    private long compressedBytes;
+    private long rawBytes;
+
+    ArchiveCursor(LZ4FastDecompressor decompressor) {
+        this.decompressor = decompressor;
+        for (int c = 0; c < ArchiveBlock.COLUMNS; c++) {
+            columns[c] = new byte[1 << 14];
+            wrapped[c] = ByteBuffer.wrap(columns[c]);
+        }
+        for (int f = 0; f < TEXT; f++) {
+            entryOffsets[f] = new int[256];
+            entryLengths[f] = new int[256];
+        }
+    }
+
+    /** Décompresse le bloc qui commence à {@code offset} dans {@code segment} ; lève une exception si le CRC ne correspond pas. */
+    void load(ByteBuffer segment, int offset) {
+        records = segment.getInt(offset + 4);
+        int payload = segment.getInt(offset + 24);
+        int expectedCrc = segment.getInt(offset + 28);
+        int position = offset + ArchiveBlock.HEADER_BYTES;
+        crc.reset();
+        crc.update(segment.slice(position, payload));
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Bloc corrompu à l'offset " + offset + " (CRC)");
+        }
+        for (int c = 0; c < ArchiveBlock.COLUMNS; c++) {
+            int compressed = segment.getInt(offset + ArchiveBlock.COLUMN_SIZES + c * 8);
+            int raw = segment.getInt(offset + ArchiveBlock.COLUMN_SIZES + c * 8 + 4);
+            if (columns[c].length < raw) {
+                columns[c] = new byte[Math.max(raw, columns[c].length * 2)];
+                wrapped[c] = ByteBuffer.wrap(columns[c]);
+            }
+            decompressor.decompress(segment, position, wrapped[c], 0, raw);
+            position += compressed;
+            positions[c] = 0;
+            rawBytes += raw;
+        }
+        compressedBytes += ArchiveBlock.HEADER_BYTES + payload;
+        readDictionaries();
+        read = 0;
+        previousTime = 0;
+    }
+
+    private void readDictionaries() {
+        int d = ArchiveBlock.Column.DICTIONARY.ordinal();
+        for (int f = 0; f < TEXT; f++) {
+            int count = (int) readVarLong(d);
+            if (entryOffsets[f].length <= count) {
+                entryOffsets[f] = new int[count + 1];
+                entryLengths[f] = new int[count + 1];
+            }
+            entries[f] = count;
+            for (int code = 1; code <= count; code++) {
+                int length = (int) readVarLong(d);
+                entryOffsets[f][code] = positions[d];
+                entryLengths[f][code] = length;
+                positions[d] += length;
+            }
+        }
+    }
+
+    /**
+     * Code de {@code value} dans le dictionnaire du champ texte {@code field} (indice dans {@link ArchiveBlock#TEXT_FIELDS})
+     * du bloc chargé, ou -1 si aucun log du bloc n'a cette valeur.
+     */
+    int code(int field, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        byte[] dictionary = columns[ArchiveBlock.Column.DICTIONARY.ordinal()];
+        int[] offsets = entryOffsets[field];
+        int[] lengths = entryLengths[field];
+        for (int code = 1; code <= entries[field]; code++) {
+            if (Arrays.equals(dictionary, offsets[code], offsets[code] + lengths[code], bytes, 0, bytes.length)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    boolean hasNext() {
+        return read < records;
+    }
+
+    /**
+     * Remplit {@code fields} avec le log suivant et renvoie le code de son champ texte {@code codeField}
+     * (0 si absent), pour filtrer sans décoder le texte.
+     */
+    int next(LogFields fields, int codeField) {
+        read++;
+        fields.reset(columns[ArchiveBlock.Column.DICTIONARY.ordinal()]);
+        long delta = readVarLong(ArchiveBlock.Column.TIME.ordinal());
+        previousTime += (delta >>> 1) ^ -(delta & 1);
+        fields.setNumber(LogField.TIMESTAMP, previousTime);
+        long status = readVarLong(ArchiveBlock.Column.STATUS.ordinal());
+        if (status > 0) {
+            fields.setNumber(LogField.STATUS, status);
+        }
+        long latency = readVarLong(ArchiveBlock.Column.LATENCY.ordinal()) - 1;
+        if (latency >= 0) {
+            fields.setNumber(LogField.LATENCY_MS, latency);
+        }
+        int selected = 0;
+        for (int f = 0; f < TEXT; f++) {
+            int code = (int) readVarLong(ArchiveBlock.Column.URL.ordinal() + f);
+            if (code > 0) {
+                fields.setRange(ArchiveBlock.TEXT_FIELDS[f], entryOffsets[f][code], entryLengths[f][code]);
+            }
+            if (f == codeField) {
+                selected = code;
+            }
+        }
+        return selected;
+    }
+
+    /** Heure du dernier log lu par {@link #next}. */
+    long time() {
+        return previousTime;
+    }
+
+    /** Octets lus dans les segments (en-têtes et colonnes compressées) depuis la création. */
+    long compressedBytes() {
+        return compressedBytes;
+    }
+
+    /** Octets décompressés depuis la création. */
+    long rawBytes() {
+        return rawBytes;
+    }
+
+    private long readVarLong(int column) {
+        byte[] bytes = columns[column];
+        int position = positions[column];
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        positions[column] = position;
+        return value;
+    }
+}
@@ -0,0 +1,126 @@
+package org.example;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Anneau borné de {@link LogBatch} pré-alloués entre le collecteur Kafka (un seul producteur)
+ * et les workers (plusieurs consommateurs).
+ *
+ * Chaque slot porte un numéro de séquence : {@code position} quand il est libre,
+ * {@code position + 1} quand le batch est publié, puis {@code position + capacité} quand le worker
+ * l'a rendu. Le producteur remplit le batch en place, le worker le traite en place et le rend :
+ * aucune allocation ni copie par batch, et le producteur attend quand l'anneau est plein.
+ */
+public final class BatchRingBuffer {
+    private final LogBatch[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    // Accédé uniquement par le thread producteur
+    private long producerPosition;
+    private volatile long publishedPosition;
+    private final AtomicLong consumerPosition = new AtomicLong();
+    private final AtomicLong releasedCount = new AtomicLong();
+
+    public BatchRingBuffer(int capacity, int batchCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        slots = new LogBatch[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new LogBatch(batchCapacity);
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /** Réserve le prochain batch libre (producteur unique). Bloque tant que l'anneau est plein. */
+    public LogBatch claim() throws InterruptedException {
+        long position = producerPosition;
+        int slot = (int) position & mask;
+        int idle = 0;
+        while (sequences.get(slot) != position) {
+            idle = idle(idle);
+        }
+        LogBatch batch = slots[slot];
+        batch.position = position;
+        return batch;
+    }
+
+    /** Rend le batch réservé visible aux workers. */
+    public void publish(LogBatch batch) {
+        long position = batch.position;
+        producerPosition = position + 1;
+        sequences.set((int) position & mask, position + 1);
+        publishedPosition = position + 1;
+    }
+
+    /** Prend le prochain batch publié, ou {@code null} si aucun n'arrive avant le délai. */
+    public LogBatch poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idle = 0;
+        while (true) {
+            long position = consumerPosition.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position + 1) {
+                if (consumerPosition.compareAndSet(position, position + 1)) {
+                    return slots[slot];
+                }
+            } else if (sequence <= position) {
+                // Rien de publié à cette position
+                if (System.nanoTime() - deadline >= 0) {
+                    return null;
+                }
+                idle = idle(idle);
+            }
+            // Sinon un autre worker a déjà pris ce slot : on relit la position
+        }
+    }
+
+    /** Rend au producteur un batch obtenu par {@link #poll}. */
+    public void release(LogBatch batch) {
+        long position = batch.position;
+        batch.clear();
+        sequences.set((int) position & mask, position + slots.length);
+        releasedCount.incrementAndGet();
+    }
+
+    /** Attend que tous les batches publiés aient été traités et rendus (thread producteur uniquement). */
+    public void awaitIdle() throws InterruptedException {
+        int idle = 0;
+        while (releasedCount.get() != producerPosition) {
+            idle = idle(idle);
+        }
+    }
+
+    /** Batches publiés et pas encore rendus, en file ou en cours de traitement (thread producteur uniquement). */
+    public int inFlight() {
+        return (int) (producerPosition - releasedCount.get());
+    }
+
+    /** Nombre approximatif de batches publiés et pas encore pris par un worker. */
+    public int size() {
+        return (int) Math.max(0, publishedPosition - consumerPosition.get());
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    private static int idle(int idle) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(1_000_000L, 10_000L * (idle - 199)));
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Petit cache à adressage direct qui associe une suite d'octets UTF-8 à une String.
+ * Pour des valeurs peu variées (URL, service, méthode...), un accès réussi ne crée aucun objet.
+ * Non thread-safe : une instance par worker.
+ */
+public final class ByteStringCache {
+    private final byte[][] keys;
+    private final String[] values;
+    private final int mask;
+
+    public ByteStringCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        keys = new byte[size][];
+        values = new String[size];
+        mask = size - 1;
+    }
+
+    public String get(byte[] data, int offset, int length) {
+        int hash = hash(data, offset, length);
+        int slot = hash & mask;
+        byte[] key = keys[slot];
+        if (key != null && Arrays.equals(key, 0, key.length, data, offset, offset + length)) {
+            return values[slot];
+        }
+        // Absent ou collision : on remplace l'entrée, le cache reste de taille fixe
+        String value = new String(data, offset, length, StandardCharsets.UTF_8);
+        keys[slot] = Arrays.copyOfRange(data, offset, offset + length);
+        values[slot] = value;
+        return value;
+    }
+
+    /** FNV-1a 64 bits, pour les structures qui ont besoin de plusieurs fonctions de hachage indépendantes. */
+    static long hash64(byte[] data, int offset, int length) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ (data[i] & 0xff)) * 0x100000001b3L;
+        }
+        return h ^ (h >>> 29);
+    }
+
+    static int hash(byte[] data, int offset, int length) {
+        int h = 0x811c9dc5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = (h ^ data[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Fichier de point de reprise binaire, écrit et relu par projection mémoire (mmap).
+ *
+ * Format : en-tête de 16 octets (magic, version, taille du contenu, CRC32 du contenu), puis le contenu
+ * écrit par un {@link Part}. L'écriture se fait dans un fichier temporaire forcé sur disque, puis
+ * renommé atomiquement : un crash laisse toujours l'ancien point de reprise ou le nouveau, entier.
+ */
+final class Checkpoint {
+    private static final int MAGIC = 0x4C414350; // "LACP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    /** Contenu d'un point de reprise : taille exacte, puis écriture et relecture dans le même ordre. */
+    interface Part {
+        int checkpointBytes();
+
+        void writeTo(ByteBuffer out);
+
+        void readFrom(ByteBuffer in);
+    }
+
+    private Checkpoint() {
+    }
+
+    /** Écrit {@code part} dans {@code file} et ne rend la main qu'une fois le fichier durable ; renvoie sa taille. */
+    static long write(Path file, Part part) throws IOException {
+        int payload = part.checkpointBytes();
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + payload);
+            buffer.position(HEADER_BYTES);
+            part.writeTo(buffer);
+            if (buffer.position() != HEADER_BYTES + payload) {
+                throw new IllegalStateException("Taille de point de reprise incohérente : "
+                        + (buffer.position() - HEADER_BYTES) + " au lieu de " + payload);
+            }
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, payload).putInt(12, crc(buffer, payload));
+            buffer.force();
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        //Le renommage lui-même doit survivre à un crash
+        try (FileChannel directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // Certains systèmes n'autorisent pas l'ouverture d'un répertoire ; le renommage reste atomique
+        }
+        return HEADER_BYTES + payload;
+    }
+
+    /**
+     * Relit {@code file} dans {@code part} ; renvoie sa taille, ou -1 s'il n'existe pas.
+     * Un fichier tronqué ou corrompu est rejeté avant toute lecture du contenu.
+     */
+    static long read(Path file, Part part) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Point de reprise tronqué : " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("Format de point de reprise inconnu : " + file);
+            }
+            int payload = buffer.getInt(8);
+            if (payload != size - HEADER_BYTES || buffer.getInt(12) != crc(buffer, payload)) {
+                throw new IOException("Point de reprise corrompu (taille ou CRC) : " + file);
+            }
+            buffer.position(HEADER_BYTES);
+            part.readFrom(buffer);
+            return size;
+        }
+    }
+
+    private static int crc(ByteBuffer buffer, int payload) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + payload));
+        return (int) crc.getValue();
+    }
+
+    static int stringBytes(String value) {
+        return Integer.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static void putString(ByteBuffer out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+    }
+
+    static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
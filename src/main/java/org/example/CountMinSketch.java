@@ -0,0 +1,109 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sketch Count-Min : estime le nombre d'occurrences de n'importe quelle clé avec une mémoire fixe
+ * de {@code depth × width} compteurs. L'estimation ne sous-estime jamais ; elle dépasse la vraie valeur
+ * d'au plus ε·N (ε = e / width, N = total ajouté) avec une probabilité d'au moins 1 − δ (δ = e^−depth).
+ *
+ * Les {@code depth} fonctions de hachage sont dérivées d'une seule empreinte 64 bits (h1 + i·h2).
+ * Non thread-safe : un sketch par worker, fusionnés par addition dans l'epoch closer.
+ */
+public final class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+    private long totalCount;
+
+    /** {@code width} est arrondi à la puissance de deux supérieure. */
+    public CountMinSketch(int width, int depth) {
+        this.width = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.depth = depth;
+        this.mask = this.width - 1;
+        this.counters = new long[this.width * depth];
+    }
+
+    public void add(long hash, long count) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + ((h1 + row * h2) & mask)] += count;
+        }
+        totalCount += count;
+    }
+
+    public long estimate(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + ((h1 + row * h2) & mask)]);
+        }
+        return min;
+    }
+
+    /** Ajoute {@code other}, qui doit avoir les mêmes dimensions. */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Dimensions de sketch différentes");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        totalCount += other.totalCount;
+    }
+
+    public void reset() {
+        Arrays.fill(counters, 0);
+        totalCount = 0;
+    }
+
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /** Erreur relative maximale ε (par rapport au total). */
+    public double epsilon() {
+        return Math.E / width;
+    }
+
+    /** Probabilité δ que l'erreur dépasse ε·N. */
+    public double delta() {
+        return Math.exp(-depth);
+    }
+
+    /** Surestimation maximale ε·N, avec probabilité 1 − δ. */
+    public long errorBound() {
+        return (long) Math.ceil(epsilon() * totalCount);
+    }
+
+    int checkpointBytes() {
+        return 2 * Integer.BYTES + Long.BYTES + counters.length * Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(width).putInt(depth).putLong(totalCount);
+        out.asLongBuffer().put(counters);
+        out.position(out.position() + counters.length * Long.BYTES);
+    }
+
+    /** Remplace les compteurs par ceux écrits par {@link #writeTo} ; les dimensions doivent être les mêmes. */
+    void readFrom(ByteBuffer in) {
+        int storedWidth = in.getInt();
+        int storedDepth = in.getInt();
+        if (storedWidth != width || storedDepth != depth) {
+            throw new IllegalStateException("Sketch " + storedWidth + "x" + storedDepth
+                    + " incompatible avec " + width + "x" + depth);
+        }
+        totalCount = in.getLong();
+        in.asLongBuffer().get(counters);
+        in.position(in.position() + counters.length * Long.BYTES);
+    }
+
+    public long memoryBytes() {
+        return (long) counters.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,198 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Cellules d'un bucket du cube {@link RollupCube} : table à adressage ouvert de clés {@code long}
+ * (identifiants de dimensions empaquetés, voir {@link RollupCube#key}) vers des compteurs primitifs
+ * (nombre de logs, nombre de latences, somme et maximum des latences). Aucun objet par cellule.
+ * Les clés sont rangées à part (parcourues seules par les requêtes) ; les quatre compteurs d'une cellule
+ * sont contigus dans {@code values}, un log ne touche donc que deux lignes de cache.
+ *
+ * Au plus {@code maxCells} cellules : passé 7/8 de la borne, les nouvelles combinaisons perdent leur URL
+ * (regroupées sous {@link RollupCube#OTHER}) ; la dernière cellule reçoit tout ce qui ne trouve plus de place.
+ * Rien n'est perdu dans les totaux, seul le détail est replié.
+ *
+ * Non thread-safe : écrite par un seul worker, ou par l'epoch closer sur une copie avant publication.
+ */
+final class CubeCells {
+    private static final long EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 64;
+    // Compteurs d'une cellule dans values
+    private static final int COUNT = 0;
+    private static final int LATENCY_COUNT = 1;
+    private static final int LATENCY_SUM = 2;
+    private static final int LATENCY_MAX = 3;
+    private static final int STRIDE = 4;
+
+    private final int maxCells;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    // Décalage du hachage de Fibonacci : on garde les bits de poids fort du produit
+    private int shift;
+    private int size;
+    // Logs dont la combinaison a été repliée faute de place
+    private long folded;
+
+    CubeCells(int maxCells) {
+        this.maxCells = Math.max(2, maxCells);
+        allocate(Math.min(INITIAL_CAPACITY, tableSize(this.maxCells)));
+    }
+
+    private CubeCells(CubeCells source) {
+        maxCells = source.maxCells;
+        keys = source.keys.clone();
+        values = source.values.clone();
+        mask = source.mask;
+        shift = source.shift;
+        size = source.size;
+        folded = source.folded;
+    }
+
+    /** Copie indépendante, modifiable sans toucher à celle-ci. */
+    CubeCells copy() {
+        return new CubeCells(this);
+    }
+
+    /** Compte un log ; {@code latencyMs} vaut -1 si le log n'a pas de latence. */
+    void add(long key, long latencyMs) {
+        int cell = slotFor(key, 1) * STRIDE;
+        values[cell + COUNT]++;
+        if (latencyMs >= 0) {
+            values[cell + LATENCY_COUNT]++;
+            values[cell + LATENCY_SUM] += latencyMs;
+            values[cell + LATENCY_MAX] = Math.max(values[cell + LATENCY_MAX], latencyMs);
+        }
+    }
+
+    /** Ajoute les cellules de {@code other} à celles-ci. */
+    void merge(CubeCells other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != EMPTY) {
+                int from = i * STRIDE;
+                int cell = slotFor(other.keys[i], other.values[from + COUNT]) * STRIDE;
+                values[cell + COUNT] += other.values[from + COUNT];
+                values[cell + LATENCY_COUNT] += other.values[from + LATENCY_COUNT];
+                values[cell + LATENCY_SUM] += other.values[from + LATENCY_SUM];
+                values[cell + LATENCY_MAX] = Math.max(values[cell + LATENCY_MAX], other.values[from + LATENCY_MAX]);
+            }
+        }
+        folded += other.folded;
+    }
+
+    /** Vide les cellules en gardant la table allouée. */
+    void reset() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        size = 0;
+        folded = 0;
+    }
+
+    /** Emplacement de la cellule de {@code key}, créée (ou repliée, pour {@code logs} logs) si besoin. */
+    private int slotFor(long key, long logs) {
+        int slot = find(key);
+        if (keys[slot] == key) {
+            return slot;
+        }
+        long cellKey = key;
+        if (size >= maxCells - maxCells / 8) {
+            // Plus de place pour le détail : d'abord sans l'URL, puis dans la cellule de débordement
+            folded += logs;
+            cellKey = RollupCube.withoutUrl(key);
+            slot = find(cellKey);
+            if (keys[slot] == cellKey) {
+                return slot;
+            }
+            if (size >= maxCells - 1) {
+                cellKey = RollupCube.OVERFLOW_KEY;
+                slot = find(cellKey);
+                if (keys[slot] == cellKey) {
+                    return slot;
+                }
+            }
+        }
+        if ((size + 1) * 4L > keys.length * 3L) {
+            grow();
+            slot = find(cellKey);
+        }
+        keys[slot] = cellKey;
+        size++;
+        return slot;
+    }
+
+    /** Emplacement de {@code key}, ou premier emplacement libre de sa séquence de sondage. */
+    private int find(long key) {
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                System.arraycopy(oldValues, i * STRIDE, values, slot * STRIDE, STRIDE);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new long[capacity * STRIDE];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /** Taille de table qui tient {@code cells} cellules sous 3/4 de remplissage. */
+    private static int tableSize(int cells) {
+        return Integer.highestOneBit(Math.max(1, cells * 4 / 3)) << 1;
+    }
+
+    /** Parcourt les cellules occupées. */
+    void forEach(Visitor visitor) {
+        forEach(key -> true, visitor);
+    }
+
+    /** Parcourt les cellules occupées dont la clé passe {@code filter} ; les colonnes des autres ne sont pas lues. */
+    void forEach(LongPredicate filter, Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            long key = keys[i];
+            if (key != EMPTY && filter.test(key)) {
+                int cell = i * STRIDE;
+                visitor.cell(key, values[cell + COUNT], values[cell + LATENCY_COUNT], values[cell + LATENCY_SUM],
+                        values[cell + LATENCY_MAX]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    long folded() {
+        return folded;
+    }
+
+    /** Mémoire des colonnes, en octets. */
+    long memoryBytes() {
+        return keys.length * 8L * (STRIDE + 1);
+    }
+
+    /** Mémoire maximale des colonnes une fois la borne de cellules atteinte, en octets. */
+    static long maxMemoryBytes(int maxCells) {
+        return tableSize(Math.max(2, maxCells)) * 8L * (STRIDE + 1);
+    }
+
+    interface Visitor {
+        void cell(long key, long count, long latencyCount, long latencySum, long latencyMax);
+    }
+}
@@ -0,0 +1,229 @@
+package org.example;
+
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Fenêtres glissantes et fixes (tumbling) calculées sur l'heure écrite dans chaque log (event time),
+ * et non sur l'heure de traitement. Les résultats ne dépendent donc ni du retard du consumer
+ * ni du découpage en batches : un rejeu du topic redonne les mêmes chiffres.
+ *
+ * <ul>
+ *   <li>Agrégation incrémentale par panes (tranches de la taille du PGCD des tailles/pas) : une fenêtre
+ *       est la somme de ses panes, et les panes trop anciennes sont purgées, la mémoire reste bornée.</li>
+ *   <li>Watermark = plus grande heure vue − désordre maximal toléré. Une fenêtre est émise quand
+ *       le watermark dépasse sa fin. Les heures trop loin dans le futur sont ramenées à l'heure de traitement
+ *       en amont ({@link IsoTimestamps#MAX_FUTURE_SKEW_MS}) : un seul log mal daté ne peut pas faire expirer les suivants.</li>
+ *   <li>Un log en retard arrivant avant {@code fin + allowedLateness} met à jour la pane et ré-émet
+ *       les fenêtres déjà émises qui la contiennent ; au-delà il est compté dans {@code lateDropped}.</li>
+ * </ul>
+ *
+ * Utilisé uniquement par l'epoch closer ; les vues lues par l'API REST sont publiées immuables.
+ */
+public final class EventTimeWindows {
+    private static final int MAX_RESULTS = 60;
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /** Fenêtres de {@code sizeMillis} démarrant tous les {@code slideMillis} (tumbling si égaux). */
+    public record Spec(String name, long sizeMillis, long slideMillis) {
+        public static Spec tumbling(String name, long sizeMillis) {
+            return new Spec(name, sizeMillis, sizeMillis);
+        }
+
+        public static Spec sliding(String name, long sizeMillis, long slideMillis) {
+            return new Spec(name, sizeMillis, slideMillis);
+        }
+
+        long lastEndContaining(long time) {
+            return Math.floorDiv(time, slideMillis) * slideMillis + sizeMillis;
+        }
+
+        long firstEndContaining(long time) {
+            return (Math.floorDiv(time - sizeMillis, slideMillis) + 1) * slideMillis + sizeMillis;
+        }
+    }
+
+    private final KeyDictionary urls;
+    private final List<Spec> specs;
+    private final long paneMillis;
+    private final long maxSizeMillis;
+    private final long maxOutOfOrdernessMillis;
+    private final long allowedLatenessMillis;
+
+    private final TreeMap<Long, StatusCounts> panes = new TreeMap<>();
+    private long maxEventTime = Long.MIN_VALUE;
+    private long watermark = Long.MIN_VALUE;
+    private long lateAccepted;
+    private long lateDropped;
+
+    private final long[] lastFiredEnd;
+    private final List<TreeSet<Long>> dirtyEnds = new ArrayList<>();
+    private final List<Deque<Map<String, Object>>> results = new ArrayList<>();
+
+    private volatile Map<String, Map<String, Object>> views = Map.of();
+
+    public EventTimeWindows(KeyDictionary urls, List<Spec> specs, long maxOutOfOrdernessMillis, long allowedLatenessMillis) {
+        this.urls = urls;
+        this.specs = List.copyOf(specs);
+        long gcd = 0;
+        long maxSize = 0;
+        for (Spec spec : specs) {
+            gcd = gcd(gcd, gcd(spec.sizeMillis(), spec.slideMillis()));
+            maxSize = Math.max(maxSize, spec.sizeMillis());
+            dirtyEnds.add(new TreeSet<>());
+            results.add(new ArrayDeque<>());
+        }
+        this.paneMillis = gcd;
+        this.maxSizeMillis = maxSize;
+        this.maxOutOfOrdernessMillis = maxOutOfOrdernessMillis;
+        this.allowedLatenessMillis = allowedLatenessMillis;
+        this.lastFiredEnd = new long[specs.size()];
+        Arrays.fill(lastFiredEnd, Long.MIN_VALUE);
+    }
+
+    /** Intègre les compteurs par seconde d'event time remis par les workers pendant une epoch. */
+    public void add(Map<Long, StatusCounts> eventSeconds) {
+        eventSeconds.forEach((second, counts) -> {
+            long time = second * 1000;
+            if (isExpired(time)) {
+                lateDropped += counts.totalLogs;
+                return;
+            }
+            long paneStart = Math.floorDiv(time, paneMillis) * paneMillis;
+            panes.computeIfAbsent(paneStart, k -> new StatusCounts()).mergeCounts(counts);
+            maxEventTime = Math.max(maxEventTime, time + 999);
+
+            // Fenêtres déjà émises contenant cette pane : à ré-émettre avec le log en retard
+            boolean late = false;
+            for (int i = 0; i < specs.size(); i++) {
+                Spec spec = specs.get(i);
+                for (long end = spec.firstEndContaining(paneStart); end <= Math.min(lastFiredEnd[i], spec.lastEndContaining(paneStart)); end += spec.slideMillis()) {
+                    if (end + allowedLatenessMillis > watermark) {
+                        dirtyEnds.get(i).add(end);
+                        late = true;
+                    }
+                }
+            }
+            if (late) {
+                lateAccepted += counts.totalLogs;
+            }
+        });
+    }
+
+    /** Avance le watermark, émet les fenêtres terminées et les mises à jour tardives, puis purge les panes expirées. */
+    public void advance() {
+        if (maxEventTime != Long.MIN_VALUE) {
+            watermark = Math.max(watermark, maxEventTime - maxOutOfOrdernessMillis);
+        }
+        for (int i = 0; i < specs.size(); i++) {
+            fireCompleted(i);
+            for (long end : dirtyEnds.get(i)) {
+                emit(i, end, true);
+            }
+            dirtyEnds.get(i).clear();
+        }
+        if (watermark != Long.MIN_VALUE) {
+            panes.headMap(watermark - allowedLatenessMillis - maxSizeMillis).clear();
+        }
+        publishViews();
+    }
+
+    private void fireCompleted(int i) {
+        Spec spec = specs.get(i);
+        while (true) {
+            // Prochaine fenêtre non vide après la dernière émise
+            long from = lastFiredEnd[i] == Long.MIN_VALUE ? Long.MIN_VALUE : lastFiredEnd[i] + spec.slideMillis() - spec.sizeMillis();
+            Long pane = from == Long.MIN_VALUE ? (panes.isEmpty() ? null : panes.firstKey()) : panes.ceilingKey(from);
+            if (pane == null) {
+                return;
+            }
+            long end = spec.firstEndContaining(pane);
+            if (lastFiredEnd[i] != Long.MIN_VALUE) {
+                end = Math.max(end, lastFiredEnd[i] + spec.slideMillis());
+            }
+            if (end > watermark) {
+                return;
+            }
+            emit(i, end, false);
+            lastFiredEnd[i] = end;
+        }
+    }
+
+    private void emit(int i, long end, boolean lateUpdate) {
+        Spec spec = specs.get(i);
+        long start = end - spec.sizeMillis();
+        StatusCounts window = new StatusCounts();
+        panes.subMap(start, end).values().forEach(window::mergeCounts);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("start", IsoTimestamps.toLocal(start).format(FORMATTER));
+        result.put("end", IsoTimestamps.toLocal(end).format(FORMATTER));
+        result.put("totalLogs", window.totalLogs);
+        result.put("success2xx", window.success2xx);
+        result.put("errors4xx", window.error4xx);
+        result.put("errors5xx", window.error5xx);
+        result.put("errorRatePercent", window.totalLogs > 0
+                ? String.format("%.2f", (window.error5xx * 100.0) / window.totalLogs) : "0.00");
+        result.put("urlStats", window.byUrl(StatusCounts.REQUESTS, urls));
+        result.put("lateUpdate", lateUpdate);
+
+        Deque<Map<String, Object>> deque = results.get(i);
+        if (lateUpdate) {
+            // Remplace le résultat déjà émis pour cette fenêtre s'il est encore dans l'historique
+            deque.removeIf(r -> r.get("end").equals(result.get("end")));
+        }
+        deque.addLast(result);
+        while (deque.size() > MAX_RESULTS) {
+            deque.removeFirst();
+        }
+    }
+
+    private boolean isExpired(long time) {
+        if (watermark == Long.MIN_VALUE) {
+            return false;
+        }
+        for (Spec spec : specs) {
+            if (spec.lastEndContaining(time) + allowedLatenessMillis > watermark) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void publishViews() {
+        Map<String, Map<String, Object>> published = new LinkedHashMap<>();
+        for (int i = 0; i < specs.size(); i++) {
+            Spec spec = specs.get(i);
+            Map<String, Object> view = summary();
+            view.put("window", spec.name());
+            view.put("sizeSeconds", spec.sizeMillis() / 1000);
+            view.put("slideSeconds", spec.slideMillis() / 1000);
+            List<Map<String, Object>> windows = new ArrayList<>(results.get(i));
+            windows.sort(Comparator.comparing(r -> (String) r.get("end")));
+            view.put("windows", windows);
+            published.put(spec.name(), Collections.unmodifiableMap(view));
+        }
+        views = published;
+    }
+
+    /** Watermark et compteurs de retard, pour le snapshot /stats. */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("watermark", watermark == Long.MIN_VALUE ? null : IsoTimestamps.toLocal(watermark).format(FORMATTER));
+        summary.put("maxOutOfOrdernessSeconds", maxOutOfOrdernessMillis / 1000);
+        summary.put("allowedLatenessSeconds", allowedLatenessMillis / 1000);
+        summary.put("lateAccepted", lateAccepted);
+        summary.put("lateDropped", lateDropped);
+        summary.put("openPanes", panes.size());
+        return summary;
+    }
+
+    /** Dernière vue publiée pour la fenêtre {@code name}, ou {@code null} si elle n'existe pas. */
+    public Map<String, Object> view(String name) {
+        return views.get(name);
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
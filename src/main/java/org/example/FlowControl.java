@@ -0,0 +1,125 @@
+package org.example;
+
+import org.apache.kafka.clients.consumer.Consumer;
+
+/**
+ * Régulation du flux entre le collecteur et les workers (mode collecteur).
+ * <ul>
+ *   <li>Taille de batch adaptative, entre {@code minBatch} et {@code maxBatch} : un batch vise
+ *       {@code targetBatchMicros} de travail d'après le coût par log mesuré par les workers, et grossit quand
+ *       les batches s'accumulent dans l'anneau (workers en retard : moins de passages de main par log).</li>
+ *   <li>Un batch incomplet est publié au plus tard {@code lingerMs} après sa réservation : à faible débit,
+ *       les logs arrivent quand même dans l'epoch suivante.</li>
+ *   <li>Contre-pression : au-delà de {@code highWater} batches en vol, le collecteur met ses partitions en pause
+ *       ({@code consumer.pause}) et continue de poller sans rien recevoir, ce qui le garde dans le groupe ;
+ *       il reprend sous {@code lowWater}. Les logs non lus restent dans Kafka, pas dans le heap.</li>
+ * </ul>
+ * Le coût par log est écrit par les workers ; tout le reste n'est utilisé que par le thread collecteur.
+ */
+final class FlowControl {
+    private final int minBatch;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final long targetBatchNanos;
+    private final int highWater;
+    private final int lowWater;
+
+    // Moyenne mobile du coût de traitement d'un log (ns), mise à jour par les workers ; une mise à jour perdue est sans gravité
+    private volatile long costNanos = 1_000;
+    private volatile int target;
+    private volatile boolean paused;
+    private volatile long pauses;
+
+    FlowControl(int minBatch, int maxBatch, long lingerMs, long targetBatchMicros, int ringCapacity) {
+        this.minBatch = Math.max(1, minBatch);
+        this.maxBatch = Math.max(this.minBatch, maxBatch);
+        this.lingerNanos = lingerMs * 1_000_000L;
+        this.targetBatchNanos = targetBatchMicros * 1_000L;
+        this.highWater = Math.max(1, ringCapacity * 3 / 4);
+        this.lowWater = ringCapacity / 4;
+        this.target = this.minBatch;
+    }
+
+    /**
+     * Réglages : {@code -Danalyser.batch.min} (20), {@code .max} (500), {@code .lingerMs} (50),
+     * {@code .targetMicros} (200).
+     */
+    static FlowControl fromSystemProperties(int ringCapacity) {
+        return new FlowControl(
+                Integer.getInteger("analyser.batch.min", 20),
+                Integer.getInteger("analyser.batch.max", 500),
+                Long.getLong("analyser.batch.lingerMs", 50),
+                Long.getLong("analyser.batch.targetMicros", 200),
+                ringCapacity);
+    }
+
+    int maxBatch() {
+        return maxBatch;
+    }
+
+    /** Coût mesuré d'un batch de {@code records} logs (thread worker). */
+    void recordCost(long nanos, int records) {
+        if (records > 0) {
+            long cost = costNanos;
+            costNanos = cost + (nanos / records - cost) / 8;
+        }
+    }
+
+    /** Taille du prochain batch, selon le coût par log et le nombre de batches en vol (thread collecteur). */
+    int nextBatchSize(int inFlight) {
+        long size = targetBatchNanos / Math.max(1, costNanos);
+        //Workers en retard : des batches plus gros amortissent le passage de main, la latence est déjà celle de la file
+        if (inFlight > lowWater) {
+            size *= inFlight > (lowWater + highWater) / 2 ? 4 : 2;
+        }
+        target = (int) Math.max(minBatch, Math.min(maxBatch, size));
+        return target;
+    }
+
+    /** Vrai si le batch réservé à {@code claimedNanos} a assez attendu pour être publié incomplet. */
+    boolean lingerExpired(long claimedNanos, long now) {
+        return now - claimedNanos >= lingerNanos;
+    }
+
+    /** Délai du prochain poll : court en pause ou quand un batch incomplet doit partir bientôt. */
+    long pollTimeoutMillis(boolean pending, long claimedNanos, long now) {
+        if (paused) {
+            return 10;
+        }
+        if (pending) {
+            return Math.max(1, Math.min(100, (claimedNanos + lingerNanos - now) / 1_000_000L));
+        }
+        return 100;
+    }
+
+    /**
+     * Met en pause ou reprend toutes les partitions affectées selon les batches en vol (thread du consumer).
+     * En pause, chaque appel repasse la nouvelle affectation en pause, au cas où un rebalance en aurait ajouté.
+     */
+    boolean regulate(Consumer<?, ?> consumer, int inFlight) {
+        if (!paused && inFlight >= highWater) {
+            paused = true;
+            pauses++;
+        } else if (paused && inFlight <= lowWater) {
+            paused = false;
+            consumer.resume(consumer.paused());
+            return false;
+        }
+        if (paused) {
+            consumer.pause(consumer.assignment());
+        }
+        return paused;
+    }
+
+    int currentTarget() {
+        return target;
+    }
+
+    boolean paused() {
+        return paused;
+    }
+
+    long pauses() {
+        return pauses;
+    }
+}
@@ -0,0 +1,115 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clés les plus fréquentes d'une dimension (URL, URL en erreur, IP client...) en mémoire fixe,
+ * quel que soit le nombre de clés distinctes : Space-Saving choisit les candidats, Count-Min
+ * resserre leur estimation. Le compte publié est {@code min(Space-Saving, Count-Min)}, jamais
+ * inférieur à la vraie valeur ; {@code minCount} en est une borne basse garantie.
+ *
+ * Non thread-safe : une instance par fenêtre de worker, fusionnées par l'epoch closer.
+ */
+public final class HeavyHitters {
+    // ε = e / 2048 ≈ 0,13 % du total, δ = e^−4 ≈ 1,8 % ; voir HeavyHittersAccuracyTest dans benchmarks/
+    static final int SKETCH_WIDTH = 2048;
+    static final int SKETCH_DEPTH = 4;
+    static final int CAPACITY = 128;
+
+    private final CountMinSketch sketch;
+    private final SpaceSaving top;
+
+    public HeavyHitters() {
+        this(SKETCH_WIDTH, SKETCH_DEPTH, CAPACITY);
+    }
+
+    public HeavyHitters(int sketchWidth, int sketchDepth, int capacity) {
+        this.sketch = new CountMinSketch(sketchWidth, sketchDepth);
+        this.top = new SpaceSaving(capacity);
+    }
+
+    /** Compte une occurrence du champ texte {@code field} ; son nom n'est décodé que si la clé entre dans le top. */
+    public void add(LogFields fields, LogField field) {
+        long hash = fields.hash64(field);
+        sketch.add(hash, 1);
+        // Clé rare (estimation sous le plus petit compteur) : ni éviction, ni String créée
+        if (!top.increment(hash, 1) && top.admits(sketch.estimate(hash))) {
+            top.insert(hash, fields.text(field), 1);
+        }
+    }
+
+    /** Compte {@code count} occurrences de {@code key}. */
+    public void add(String key, long hash, long count) {
+        sketch.add(hash, count);
+        if (!top.increment(hash, count) && top.admits(sketch.estimate(hash))) {
+            top.insert(hash, key, count);
+        }
+    }
+
+    public void merge(HeavyHitters other) {
+        sketch.merge(other.sketch);
+        top.merge(other.top);
+    }
+
+    public void reset() {
+        sketch.reset();
+        top.reset();
+    }
+
+    /** Estimation Count-Min du nombre d'occurrences d'une clé quelconque. */
+    public long estimate(long hash) {
+        return sketch.estimate(hash);
+    }
+
+    /** Les {@code n} clés les plus fréquentes, de la plus à la moins fréquente. */
+    public List<Map<String, Object>> top(int n) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        int[] ranking = top.ranking();
+        for (int r = 0; r < Math.min(n, ranking.length); r++) {
+            int i = ranking[r];
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", top.key(i));
+            item.put("count", Math.min(top.count(i), sketch.estimate(top.hash(i))));
+            item.put("minCount", top.count(i) - top.error(i));
+            items.add(item);
+        }
+        return items;
+    }
+
+    /** Top {@code n} et bornes d'erreur, prêts à sérialiser pour l'API REST. */
+    public Map<String, Object> summary(int n) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("items", top(n));
+        summary.put("total", sketch.totalCount());
+        summary.put("errorBound", sketch.errorBound());
+        summary.put("epsilon", sketch.epsilon());
+        summary.put("delta", sketch.delta());
+        // Toute clé plus fréquente que ce seuil figure dans le top
+        summary.put("guaranteedAbove", top.minCount());
+        summary.put("capacity", top.capacity());
+        summary.put("memoryBytes", memoryBytes());
+        return summary;
+    }
+
+    int checkpointBytes() {
+        return sketch.checkpointBytes() + top.checkpointBytes();
+    }
+
+    void writeTo(ByteBuffer out) {
+        sketch.writeTo(out);
+        top.writeTo(out);
+    }
+
+    void readFrom(ByteBuffer in) {
+        sketch.readFrom(in);
+        top.readFrom(in);
+    }
+
+    public long memoryBytes() {
+        return sketch.memoryBytes() + top.memoryBytes();
+    }
+}
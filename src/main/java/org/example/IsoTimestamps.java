@@ -0,0 +1,120 @@
+package org.example;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Conversion sans allocation d'une date ISO-8601 ({@code yyyy-MM-ddTHH:mm:ss[.fraction][Z|±HH:mm]})
+ * en millisecondes epoch. Sans décalage explicite (cas de {@link Producer}, qui écrit un LocalDateTime),
+ * la date est interprétée dans le fuseau du serveur.
+ */
+public final class IsoTimestamps {
+    public static final long INVALID = Long.MIN_VALUE;
+    // Avance tolérée d'une heure de log sur l'horloge du serveur (-Danalyser.eventTime.maxFutureSkewMs) ;
+    // au-delà, l'horloge du producteur est fausse et l'heure n'est pas retenue
+    public static final long MAX_FUTURE_SKEW_MS = Long.getLong("analyser.eventTime.maxFutureSkewMs", 60_000);
+
+    // Décalage du fuseau local pour la dernière heure rencontrée (recalculé seulement au changement d'heure)
+    private static volatile ZoneCache zoneCache = new ZoneCache(Long.MIN_VALUE, 0);
+
+    private IsoTimestamps() {
+    }
+
+    /** {@code true} si {@code epochMillis} dépasse {@code nowMillis} de plus de {@link #MAX_FUTURE_SKEW_MS}. */
+    public static boolean isFuture(long epochMillis, long nowMillis) {
+        return epochMillis - nowMillis > MAX_FUTURE_SKEW_MS;
+    }
+
+    public static long parse(byte[] data, int start, int end) {
+        if (end - start < 19) {
+            return INVALID;
+        }
+        int year = digits(data, start, 4);
+        int month = digits(data, start + 5, 2);
+        int day = digits(data, start + 8, 2);
+        int hour = digits(data, start + 11, 2);
+        int minute = digits(data, start + 14, 2);
+        int second = digits(data, start + 17, 2);
+        byte sep = data[start + 10];
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 59
+                || data[start + 4] != '-' || data[start + 7] != '-' || (sep != 'T' && sep != ' ')
+                || data[start + 13] != ':' || data[start + 16] != ':') {
+            return INVALID;
+        }
+
+        int pos = start + 19;
+        int millis = 0;
+        if (pos < end && data[pos] == '.') {
+            pos++;
+            int scale = 100;
+            while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+                millis += (data[pos] - '0') * scale;
+                scale /= 10;
+                pos++;
+            }
+        }
+
+        long localSeconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        long offsetSeconds;
+        if (pos == end) {
+            offsetSeconds = localOffsetSeconds(localSeconds);
+        } else if (data[pos] == 'Z' && pos + 1 == end) {
+            offsetSeconds = 0;
+        } else if ((data[pos] == '+' || data[pos] == '-') && end - pos == 6 && data[pos + 3] == ':') {
+            int h = digits(data, pos + 1, 2);
+            int m = digits(data, pos + 4, 2);
+            if (h < 0 || m < 0) {
+                return INVALID;
+            }
+            offsetSeconds = (h * 3600L + m * 60L) * (data[pos] == '-' ? -1 : 1);
+        } else {
+            return INVALID;
+        }
+        return (localSeconds - offsetSeconds) * 1000L + millis;
+    }
+
+    /** Date locale (fuseau du serveur) d'un instant, pour l'affichage des fenêtres. */
+    public static LocalDateTime toLocal(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long localOffsetSeconds(long localSeconds) {
+        long hour = Math.floorDiv(localSeconds, 3600);
+        ZoneCache cache = zoneCache;
+        if (cache.hour != hour) {
+            LocalDateTime local = LocalDateTime.ofEpochSecond(hour * 3600, 0, ZoneOffset.UTC);
+            int offset = ZoneId.systemDefault().getRules().getOffset(local).getTotalSeconds();
+            cache = new ZoneCache(hour, offset);
+            zoneCache = cache;
+        }
+        return cache.offsetSeconds;
+    }
+
+    private static int digits(byte[] data, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int d = data[i] - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    // Algorithme "days from civil" (calendrier grégorien proleptique)
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    private record ZoneCache(long hour, long offsetSeconds) {
+    }
+}
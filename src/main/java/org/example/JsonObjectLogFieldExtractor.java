@@ -0,0 +1,47 @@
+package org.example;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Extracteur historique basé sur org.json : construit un JSONObject complet par log.
+ * Plus lent, mais tolérant à tout JSON valide ; sert de repli quand l'extracteur streaming échoue.
+ */
+public final class JsonObjectLogFieldExtractor implements LogFieldExtractor {
+    private final LogField[] fields;
+
+    public JsonObjectLogFieldExtractor(Set<LogField> fields) {
+        this.fields = EnumSet.copyOf(fields).toArray(new LogField[0]);
+    }
+
+    @Override
+    public boolean extract(byte[] data, int offset, int length, LogFields out) {
+        out.reset(data);
+        try {
+            JSONObject json = new JSONObject(new String(data, offset, length, StandardCharsets.UTF_8));
+            for (LogField field : fields) {
+                if (!json.has(field.key()) || json.isNull(field.key())) {
+                    continue;
+                }
+                if (field.isNumeric()) {
+                    out.setNumber(field, json.getLong(field.key()));
+                } else if (field.isTimestamp()) {
+                    byte[] text = json.getString(field.key()).getBytes(StandardCharsets.UTF_8);
+                    long millis = IsoTimestamps.parse(text, 0, text.length);
+                    if (millis != IsoTimestamps.INVALID) {
+                        out.setNumber(field, millis);
+                    }
+                } else {
+                    out.setText(field, json.getString(field.key()));
+                }
+            }
+            return true;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Snapshot immuable publié une fois par epoch : les données, leur JSON déjà sérialisé et un ETag
+ * calculé sur ce JSON. Une requête REST ne fait plus que renvoyer ces octets, ou un 304 si le client
+ * a déjà la même version ({@code If-None-Match}).
+ */
+public final class JsonSnapshot {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final JsonSnapshot EMPTY = of(new LinkedHashMap<>());
+
+    private final Map<String, Object> data;
+    private final byte[] json;
+    private final String etag;
+
+    private JsonSnapshot(Map<String, Object> data, byte[] json) {
+        this.data = data;
+        this.json = json;
+        this.etag = "\"" + Long.toHexString(ByteStringCache.hash64(json, 0, json.length)) + "\"";
+    }
+
+    /** Sérialise {@code data}, qui ne doit plus être modifié par l'appelant. */
+    public static JsonSnapshot of(Map<String, Object> data) {
+        try {
+            return new JsonSnapshot(Collections.unmodifiableMap(data), MAPPER.writeValueAsBytes(data));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Snapshot non sérialisable", e);
+        }
+    }
+
+    public Map<String, Object> data() {
+        return data;
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    public String etag() {
+        return etag;
+    }
+
+    /** Réponse HTTP : 304 si {@code ifNoneMatch} désigne cette version, sinon le JSON pré-sérialisé. */
+    public ResponseEntity<byte[]> toResponse(String ifNoneMatch) {
+        // no-cache : le navigateur garde la réponse mais revalide à chaque appel, avec If-None-Match
+        if (matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(json);
+    }
+
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,105 +1,258 @@
 package org.example;
 
+import io.micrometer.core.instrument.Metrics;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.json.JSONObject;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 @Service
 public class KafkaLogAnalyserService {
-    // ✅ Compteurs CUMULÉS (depuis le démarrage du service)
-    public static final ConcurrentHashMap<String, AtomicLong> urlCountMapCumulative = new ConcurrentHashMap<>();
-    public static final AtomicLong totalLogsCumulative = new AtomicLong(0);
-    public static final AtomicLong error5xxCumulative = new AtomicLong(0);
-    public static final AtomicLong error4xxCumulative = new AtomicLong(0);
-    public static final AtomicLong success2xxCumulative = new AtomicLong(0);
-
-    // Variables statiques pour les stats (partagées avec StatsController)
-    public static final ConcurrentHashMap<String, AtomicLong> urlCountMap = new ConcurrentHashMap<>();
-    public static final AtomicLong error5xxCount = new AtomicLong(0);
-    public static final AtomicLong totalProcessedLogs = new AtomicLong(0);
-    public static final AtomicLong error4xxCount = new AtomicLong(0);
-    public static final AtomicLong success2xxCount = new AtomicLong(0);
-
-    // pour les urls qui genèrent les erreurs de type 5xx et 4xx
-    public final ConcurrentHashMap<String, AtomicLong> error4xxUrls = new ConcurrentHashMap<>();
-    public final ConcurrentHashMap<String, AtomicLong> error5xxUrls = new ConcurrentHashMap<>();
-
-    // pour les urls qui genèrent les erreurs de type 5xx et 4xx
-    public static final ConcurrentHashMap<String, AtomicLong> error4xxUrlsCumulative = new ConcurrentHashMap<>();
-    public static final ConcurrentHashMap<String, AtomicLong> error5xxUrlsCumulative = new ConcurrentHashMap<>();
+    // Identifiants denses des URLs et des services : chaque compteur est une cellule de tableau indexée par ces identifiants.
+    // Bornés : au-delà, les clés sont regroupées sous "(autres)" et seules les plus fréquentes sont suivies (HeavyHitters)
+    public static final KeyDictionary urlIds = new KeyDictionary(1024, KeyDictionary.OTHER);
+    public static final KeyDictionary serviceIds = new KeyDictionary(256, KeyDictionary.OTHER);
+    // Méthodes HTTP et niveaux de log : quelques valeurs, dimensions du cube de requêtes ad hoc
+    public static final KeyDictionary methodIds = new KeyDictionary(64, KeyDictionary.OTHER);
+    public static final KeyDictionary levelIds = new KeyDictionary(64, KeyDictionary.OTHER);
 
-    private LocalDateTime lastCumulativeDisplay = LocalDateTime.MIN;
-    private static final Duration CUMULATIVE_DISPLAY_INTERVAL = Duration.ofMinutes(2); // ou 5 min
+    // ✅ Compteurs CUMULÉS (depuis le démarrage du service) : copie figée publiée à chaque epoch pour StatsController
+    public static volatile StatusCounts cumulativeCounts = new StatusCounts();
 
-    // Contient les dernières stats prêtes à être exposées par le contrôleur
-    public static volatile Map<String, Object> latestStatsSnapshot = new LinkedHashMap<>();
-    static final Deque<Map<String, Object>> statsHistory = new LinkedList<>();
-    private static final int MAX_HISTORY_SIZE = 20;
+    // Réponse de /statsCumulative (compteurs, latences, top-K), construite et sérialisée une fois par epoch
+    public static volatile JsonSnapshot cumulativeStats = JsonSnapshot.EMPTY;
 
+    private LocalDateTime lastCumulativeDisplay = LocalDateTime.MIN;
+    private static final Duration CUMULATIVE_DISPLAY_INTERVAL = Duration.ofMinutes(2); // ou 5 min
 
-    private static final int NUM_THREADS = 4;
-    private static final int BATCH_SIZE = 20;
+    // Contient les dernières stats prêtes à être exposées par le contrôleur, déjà sérialisées
+    public static volatile JsonSnapshot latestStats = JsonSnapshot.EMPTY;
+    // Diffusion SSE de chaque snapshot aux dashboards abonnés (/stats/stream)
+    public static final SnapshotStream snapshotStream = new SnapshotStream();
+    // Historique en colonnes : 2 h à la seconde, 48 h à la minute, 32 URLs suivies individuellement
+    public static final TimeSeriesStore timeSeries = new TimeSeriesStore(urlIds, 2 * 3600, 48 * 60, 32);
+
+    // Fenêtres sur l'heure des logs : fixes d'1 min et glissantes de 5 min (pas d'1 min),
+    // 5 s de désordre toléré avant d'avancer le watermark, retard accepté jusqu'à 2 min après la fin d'une fenêtre
+    public static final EventTimeWindows eventTimeWindows = new EventTimeWindows(urlIds, List.of(
+            EventTimeWindows.Spec.tumbling("tumbling", Duration.ofMinutes(1).toMillis()),
+            EventTimeWindows.Spec.sliding("sliding", Duration.ofMinutes(5).toMillis(), Duration.ofMinutes(1).toMillis())),
+            Duration.ofSeconds(5).toMillis(), Duration.ofMinutes(2).toMillis());
+
+    // Cube service × url × méthode × niveau × statut par bucket de 10 s sur 1 h, interrogé par /rollup
+    public static final RollupCube rollups = RollupCube.fromSystemProperties(urlIds, serviceIds, methodIds, levelIds);
+
+    // Réponse de /alerts (alertes en cours et dernières transitions), reconstruite quand une alerte change
+    public static volatile JsonSnapshot alerts = JsonSnapshot.EMPTY;
+
+    // Métriques du pipeline (registre Micrometer global, exposé sur /actuator/prometheus) et battements de cœur lus par /health
+    static final PipelineMetrics metrics = new PipelineMetrics(Metrics.globalRegistry);
+    // Messages par batch ou par log : niveaux DEBUG/TRACE, au plus 20 par seconde
+    private static final ThrottledLog log = new ThrottledLog(KafkaLogAnalyserService.class, 20);
+
+
+    private static final String TOPIC = "web_logs";
+    // Workers du mode collecteur (-Danalyser.threads)
+    private static final int NUM_THREADS = Integer.getInteger("analyser.threads", 4);
+    // > 0 : mode partition-parallèle avec autant de consumers (ex. -Danalyser.consumers=4), sinon collecteur + workers
+    private static final int NUM_CONSUMERS = Integer.getInteger("analyser.consumers", 0);
+    // Nombre de batches pré-alloués entre le collecteur et les workers (-Danalyser.ring.capacity)
+    private static final int RING_CAPACITY = Integer.getInteger("analyser.ring.capacity", 64);
+    // Durée d'une epoch : l'epoch closer fusionne les compteurs des workers à ce rythme
+    private static final long EPOCH_INTERVAL_MS = 5000;
+
+    // Champs lus dans chaque log : seuls ceux-ci sont décodés par l'extracteur
+    private static final Set<LogField> EXTRACTED_FIELDS = EnumSet.of(
+            LogField.URL, LogField.STATUS, LogField.LATENCY_MS, LogField.SERVICE, LogField.TIMESTAMP, LogField.CLIENT_IP,
+            LogField.METHOD, LogField.LEVEL);
+    // Nombre de clés renvoyées par top-K dans /statsCumulative
+    private static final int TOP_K = 20;
+    // Intervalle entre deux points de reprise de l'état cumulé (et donc entre deux commits d'offsets)
+    private static final long CHECKPOINT_INTERVAL_MS = Long.getLong("analyser.checkpoint.intervalMs", 30_000);
+    // Transitions d'alerte gardées pour /alerts
+    private static final int RECENT_ALERTS = 100;
+    // Threads du rejeu de l'archive (-Danalyser.replay.threads)
+    private static final int REPLAY_THREADS = Integer.getInteger("analyser.replay.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    private final int numThreads;
+    private final long epochIntervalMs;
+
+    // Extracteur streaming sur les octets du log, avec repli sur org.json si le log n'est pas lisible
+    private final LogFieldExtractor extractor = new StreamingLogFieldExtractor(EXTRACTED_FIELDS);
+    private final LogFieldExtractor fallbackExtractor = new JsonObjectLogFieldExtractor(EXTRACTED_FIELDS);
 
-    private CyclicBarrier barrier;
     private final Object displayLock = new Object();
-    private final BlockingQueue<List<String>> batchQueue = new LinkedBlockingQueue<>();
+    // Taille des batches, publication des batches incomplets et pause des partitions quand l'anneau se remplit
+    private final FlowControl flow = FlowControl.fromSystemProperties(RING_CAPACITY);
+    private final BatchRingBuffer batchRing = new BatchRingBuffer(RING_CAPACITY, flow.maxBatch());
     private volatile boolean running = false;
 
+    // Numéro d'epoch, incrémenté par l'epoch closer
+    private long epoch = 0;
+    // Double tampon de fenêtres de chaque thread de traitement, basculé par l'epoch closer
+    private final List<WindowSlot> slots = new CopyOnWriteArrayList<>();
+
+    // Compteurs et histogrammes cumulés : écrits et lus uniquement par l'epoch closer
+    private final StatusCounts cumulative = new StatusCounts();
+    private LatencyHistogram[] urlLatencyCumulative = WindowAccumulator.NO_HISTOGRAMS;
+    private LatencyHistogram[] serviceLatencyCumulative = WindowAccumulator.NO_HISTOGRAMS;
+    private final HeavyHitters topUrlsCumulative = new HeavyHitters();
+    private final HeavyHitters top4xxUrlsCumulative = new HeavyHitters();
+    private final HeavyHitters top5xxUrlsCumulative = new HeavyHitters();
+    private final HeavyHitters topClientIpsCumulative = new HeavyHitters();
+    // Dernière fenêtre fermée, affichée et ajoutée au snapshot par displayStatistics()
+    private WindowAccumulator lastWindow = new WindowAccumulator();
+    private Map<String, Object> windowLatency = Map.of();
+
+    // Persistance asynchrone des logs et des agrégats d'epoch dans MongoDB ; null si désactivée
+    private final MongoSink sink;
+    // Archive locale compressée des logs traités, relue par replay() ; null si désactivée
+    private final LogArchive archive;
+    private final ForkJoinPool replayPool;
+
+    // Détection d'anomalies sur chaque fenêtre fermée, et publication des alertes dans Kafka (null si désactivée)
+    private final AnomalyDetector detector = AnomalyDetector.fromSystemProperties(urlIds, serviceIds);
+    private final AlertPublisher alertPublisher;
+    // Dernières transitions d'alerte, la plus récente en tête, et alertes en cours ajoutées au snapshot
+    private final Deque<Map<String, Object>> recentAlerts = new ArrayDeque<>();
+    private List<Map<String, Object>> activeAlerts = List.of();
+    private long lastPublisherProgress;
+
+    // Point de reprise de l'état cumulé et des offsets Kafka qu'il couvre ; null si désactivé (offsets auto-commités)
+    private final Path checkpointFile;
+    // Offsets couverts par les cumuls, tenus par l'epoch closer ; seuls ceux du dernier point de reprise durable sont commités
+    private final Map<TopicPartition, Long> coveredOffsets = new HashMap<>();
+    private volatile Map<TopicPartition, Long> durableOffsets = Map.of();
+    // Offsets du point de reprise relu au démarrage, et positions déjà comptées par les consumers de ce processus
+    private volatile Map<TopicPartition, Long> restoredOffsets = Map.of();
+    private final Map<TopicPartition, Long> processedOffsets = new ConcurrentHashMap<>();
+    private volatile long lastCheckpointMillis = System.currentTimeMillis();
+    private volatile boolean partitionMode;
+    // Mode collecteur : position de chaque partition, tous les logs d'avant étant publiés aux workers (thread collecteur)
+    private final Map<TopicPartition, Long> collectorPositions = new HashMap<>();
+    private Map<TopicPartition, Long> collectorCommitted = Map.of();
+
     private ExecutorService executor;
-    private KafkaConsumer<String, String> consumer;
+    private ScheduledExecutorService epochCloser;
+    private volatile PipelineMetrics.Heartbeat epochHeartbeat;
+    private Consumer<byte[], byte[]> consumer;
     private Thread collectorThread;
 
+    public KafkaLogAnalyserService() {
+        this(NUM_THREADS, EPOCH_INTERVAL_MS, MongoSink.fromSystemProperties(), checkpointFileFromSystemProperties(),
+                AlertPublisher.fromSystemProperties(), LogArchive.fromSystemProperties());
+    }
+
+    KafkaLogAnalyserService(int numThreads, long epochIntervalMs) {
+        this(numThreads, epochIntervalMs, null, null);
+    }
+
+    KafkaLogAnalyserService(int numThreads, long epochIntervalMs, MongoSink sink, Path checkpointFile) {
+        this(numThreads, epochIntervalMs, sink, checkpointFile, null);
+    }
+
+    KafkaLogAnalyserService(int numThreads, long epochIntervalMs, MongoSink sink, Path checkpointFile,
+                            AlertPublisher alertPublisher) {
+        this(numThreads, epochIntervalMs, sink, checkpointFile, alertPublisher, null);
+    }
+
+    KafkaLogAnalyserService(int numThreads, long epochIntervalMs, MongoSink sink, Path checkpointFile,
+                            AlertPublisher alertPublisher, LogArchive archive) {
+        this.numThreads = numThreads;
+        this.epochIntervalMs = epochIntervalMs;
+        this.sink = sink;
+        this.checkpointFile = checkpointFile;
+        this.alertPublisher = alertPublisher;
+        this.archive = archive;
+        this.replayPool = archive != null ? new ForkJoinPool(REPLAY_THREADS) : null;
+    }
+
+    /** Fichier de point de reprise ({@code -Danalyser.checkpoint.path}, vide = désactivé). */
+    private static Path checkpointFileFromSystemProperties() {
+        String path = System.getProperty("analyser.checkpoint.path", "checkpoints/analyser.ckpt");
+        return path.isBlank() ? null : Path.of(path);
+    }
+
     @EventListener(ApplicationReadyEvent.class)
     public void startKafkaAnalyser() {
         System.out.println("🚀 Démarrage du service d'analyse Kafka...");
-        //CyclicBarrier : synchronise 4 threads. Quand les 4 ont terminé, on affiche les statistiques.
-        barrier = new CyclicBarrier(NUM_THREADS, () -> {
-            synchronized (displayLock) {
-                System.out.println("🔄 Phase terminée - Tous les threads synchronisés");
-                displayStatistics(); //  Affiche les stats à chaque fin de phase parallèle
-            }
-        });
-
+        //Reprise de l'état cumulé avant le premier poll : les consumers repartent des offsets qu'il couvre
+        restoreCheckpoint();
+
+        if (NUM_CONSUMERS > 0) {
+            //Un consumer par thread dans le même groupe : Kafka répartit les partitions entre eux
+            startPartitionConsumers(NUM_CONSUMERS, () -> new KafkaConsumer<>(consumerProperties()));
+            System.out.println("✅ Service d'analyse Kafka démarré avec " + NUM_CONSUMERS + " consumers");
+            return;
+        }
 
-        Properties props = new Properties();
-        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "log-analyzer-group");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.StringDeserializer");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-        props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        startCollector(new KafkaConsumer<>(consumerProperties()));
+        System.out.println("✅ Service d'analyse Kafka démarré avec succès");
+    }
 
-        consumer = new KafkaConsumer<>(props);
+    /**
+     * Mode collecteur : un seul consumer (Kafka, ou source en mémoire pour les benchmarks) lu par le thread
+     * collecteur, qui publie les logs par batches aux workers. Arrêt par {@link #stopKafkaAnalyser()}.
+     */
+    void startCollector(Consumer<byte[], byte[]> kafkaConsumer) {
+        consumer = kafkaConsumer;
+        metrics.watchFlow(flow);
         //Ce consumer Kafka est configuré pour lire les messages du topic "web_logs"
-        consumer.subscribe(Collections.singletonList("web_logs"));
-        //Création du pool de threads
-        executor = Executors.newFixedThreadPool(NUM_THREADS);
-        running = true;
+        consumer.subscribe(Collections.singletonList(TOPIC), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            }
 
-        //Démarrage des threads workers pour le traitement parallèle
-        for (int i = 0; i < NUM_THREADS; i++) {
-            final int threadId = i;
-            executor.submit(() -> workerThread(threadId));
-        }
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                seekToCounted(consumer, partitions);
+            }
+        });
+        startWorkers();
 
         //Démarrage du thread collecteur : lit Kafka et crée des batches
-        collectorThread = new Thread(this::collectLogs);
+        collectorThread = new Thread(this::collectLogs, "collector");
         collectorThread.start();
+    }
 
-        System.out.println("✅ Service d'analyse Kafka démarré avec succès");
+    private Properties consumerProperties() {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, "log-analyzer-group");
+        //Les logs restent en octets UTF-8 : l'extracteur lit directement le tableau renvoyé par Kafka
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+        //Un poll tient au plus dans quelques batches : ce qui dépasse reste dans Kafka pendant une pause
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, flow.maxBatch());
+        if (checkpointFile == null) {
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
+            props.put(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG, "1000");
+        } else {
+            //Commit manuel, uniquement des offsets couverts par un point de reprise durable (commitDurable)
+            props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        }
+        return props;
     }
 
     @EventListener(ContextClosedEvent.class)
@@ -109,13 +262,19 @@ public class KafkaLogAnalyserService {
 
         if (collectorThread != null) {
             collectorThread.interrupt();
+            try {
+                collectorThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
 
-        if (executor != null) {
-            executor.shutdown();
-        }
+        //Les workers vident l'anneau, puis le dernier point de reprise couvre tout ce que le collecteur a lu
+        stopWorkers();
 
         if (consumer != null) {
+            collectorCommitted = commitDurable(consumer, collectorCommitted);
+            metrics.forgetLag(consumer);
             consumer.close();
         }
 
@@ -123,104 +282,973 @@ public class KafkaLogAnalyserService {
     }
 
     private void collectLogs() {
-        List<String> currentBatch = new ArrayList<>();
+        //Batch pré-alloué réservé dans l'anneau, rempli en place jusqu'à batchSize logs ou pendant au plus lingerMs
+        LogBatch currentBatch = null;
+        long claimedAt = 0;
+        int batchSize = flow.nextBatchSize(0);
+        PipelineMetrics.Heartbeat heartbeat = metrics.heartbeat("collector", 100);
 
         while (running && !Thread.currentThread().isInterrupted()) {
             try {
-                //Lecture des messages Kafka avec un délai d'attente de 100 ms
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(100));
-
-                for (ConsumerRecord<String, String> record : records) {
-                    //On ajoute la ligne de log au batch
-                    currentBatch.add(record.value());
-
-                    if (currentBatch.size() >= BATCH_SIZE) {
-                        //Quand on a 20 logs, on envoie le batch aux threads workers
-                        batchQueue.put(new ArrayList<>(currentBatch));
-                        System.out.println("📦 Batch de " + BATCH_SIZE + " logs envoyé aux workers");
-                        currentBatch.clear();
+                //Contre-pression : anneau presque plein, les partitions sont en pause et les logs restent dans Kafka
+                flow.regulate(consumer, batchRing.inFlight());
+                //Lecture des messages Kafka, au plus 100 ms ; moins si un batch incomplet doit partir
+                long pollStart = System.nanoTime();
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(
+                        Duration.ofMillis(flow.pollTimeoutMillis(currentBatch != null, claimedAt, pollStart)));
+                long polled = System.nanoTime();
+                //Bloqué ensuite seulement si l'anneau est plein : le battement s'arrête avec les workers
+                heartbeat.beat();
+                metrics.pollDuration.record(polled - pollStart, TimeUnit.NANOSECONDS);
+                metrics.pollRecords.record(records.count());
+                metrics.recordLag(consumer);
+
+                for (TopicPartition partition : records.partitions()) {
+                    for (ConsumerRecord<byte[], byte[]> record : records.records(partition)) {
+                        if (record.value() != null) {
+                            if (currentBatch == null) {
+                                //Bloque si les workers n'ont rendu aucun batch (fin d'un poll reçu juste avant la pause)
+                                claimedAt = System.nanoTime();
+                                currentBatch = batchRing.claim();
+                                metrics.handoff.record(System.nanoTime() - claimedAt, TimeUnit.NANOSECONDS);
+                                batchSize = flow.nextBatchSize(batchRing.inFlight());
+                            }
+                            //On ajoute la ligne de log au batch, sans copie
+                            currentBatch.add(record.value(), partition, record.offset(), record.timestamp());
+
+                            if (currentBatch.size() >= batchSize) {
+                                //Batch complet : publié aux threads workers
+                                publishBatch(currentBatch);
+                                currentBatch = null;
+                            }
+                        }
+                        collectorPositions.put(partition, record.offset() + 1);
                     }
+                    processedOffsets.put(partition, collectorPositions.get(partition));
+                }
+
+                //Trafic faible : le batch incomplet part après lingerMs, pour compter dans l'epoch suivante
+                if (currentBatch != null && flow.lingerExpired(claimedAt, System.nanoTime())) {
+                    publishBatch(currentBatch);
+                    currentBatch = null;
                 }
+
+                if (checkpointDue()) {
+                    //Point de reprise exact : tout ce qui a été lu est publié, traité et fusionné avant la fermeture de l'epoch
+                    if (currentBatch != null) {
+                        batchRing.publish(currentBatch);
+                        currentBatch = null;
+                    }
+                    batchRing.awaitIdle();
+                    closeEpoch(collectorPositions, true);
+                }
+                collectorCommitted = commitDurable(consumer, collectorCommitted);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             } catch (Exception e) {
-                System.err.println("❌ Erreur dans collectLogs: " + e.getMessage());
+                log.error("❌ Erreur dans collectLogs: {}", e.getMessage());
+            }
+        }
+
+        //À l'arrêt, le batch incomplet est publié : les workers le traitent avant le dernier point de reprise
+        if (currentBatch != null) {
+            batchRing.publish(currentBatch);
+        }
+        metrics.remove(heartbeat);
+    }
+
+    private void publishBatch(LogBatch batch) {
+        batchRing.publish(batch);
+        if (log.isDebugEnabled()) {
+            log.debug("📦 Batch de {} logs envoyé aux workers", batch.size());
+        }
+    }
+
+    /** Reprend chaque partition après le dernier log déjà compté : par ce processus, sinon par le point de reprise. */
+    private void seekToCounted(Consumer<?, ?> partitionConsumer, Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            Long offset = processedOffsets.getOrDefault(partition, restoredOffsets.get(partition));
+            if (offset != null) {
+                partitionConsumer.seek(partition, offset);
+            }
+        }
+    }
+
+    private boolean checkpointDue() {
+        return checkpointFile != null && System.currentTimeMillis() - lastCheckpointMillis >= CHECKPOINT_INTERVAL_MS;
+    }
+
+    /**
+     * Commit manuel, depuis le thread propriétaire du consumer, des offsets couverts par le dernier point de reprise
+     * durable. Renvoie la version commitée, à repasser à l'appel suivant.
+     */
+    private Map<TopicPartition, Long> commitDurable(Consumer<?, ?> partitionConsumer, Map<TopicPartition, Long> committed) {
+        Map<TopicPartition, Long> durable = durableOffsets;
+        if (checkpointFile == null || durable == committed) {
+            return committed;
+        }
+        Map<TopicPartition, OffsetAndMetadata> commits = new HashMap<>();
+        for (TopicPartition partition : partitionConsumer.assignment()) {
+            Long offset = durable.get(partition);
+            if (offset != null) {
+                commits.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        try {
+            if (!commits.isEmpty()) {
+                partitionConsumer.commitSync(commits);
             }
+            return durable;
+        } catch (KafkaException e) {
+            //Sans gravité : le point de reprise fait foi au redémarrage, le commit sera retenté
+            System.err.println("❌ Commit des offsets refusé : " + e.getMessage());
+            return committed;
         }
     }
 
+    /**
+     * Démarre les workers et l'epoch closer. Les workers ne se synchronisent jamais entre eux :
+     * chacun accumule dans la fenêtre active de son {@link WindowSlot}, et l'epoch closer bascule
+     * périodiquement les slots puis fusionne les fenêtres retirées pour produire le snapshot de displayStatistics().
+     */
+    void startWorkers() {
+        //Création du pool de threads
+        executor = Executors.newFixedThreadPool(numThreads);
+        running = true;
+        metrics.running(true);
+        metrics.watchQueue(batchRing::size);
+
+        //Démarrage des threads workers pour le traitement parallèle
+        for (int i = 0; i < numThreads; i++) {
+            final int threadId = i;
+            executor.submit(() -> workerThread(threadId));
+        }
+
+        startSink();
+        startEpochCloser();
+    }
+
+    /**
+     * Mode partition-parallèle : {@code consumers} threads, chacun avec son propre consumer Kafka
+     * (même groupe) qui traite directement ses partitions, sans collecteur ni anneau partagé.
+     * Chaque thread garde son état d'agrégation confiné et le remet à l'epoch closer par son slot, comme un worker.
+     */
+    void startPartitionConsumers(int consumers, Supplier<Consumer<byte[], byte[]>> consumerFactory) {
+        executor = Executors.newFixedThreadPool(consumers);
+        running = true;
+        partitionMode = true;
+        metrics.running(true);
+        metrics.watchQueue(() -> 0);
+
+        for (int i = 0; i < consumers; i++) {
+            executor.submit(new PartitionConsumer(i, consumerFactory.get()));
+        }
+
+        startSink();
+        startEpochCloser();
+    }
+
+    private void startSink() {
+        if (sink != null) {
+            sink.start();
+        }
+        if (archive != null) {
+            try {
+                archive.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Archive inaccessible", e);
+            }
+        }
+    }
+
+    private void startEpochCloser() {
+        //Epoch closer : ferme une fenêtre à intervalle fixe, indépendamment du rythme des batches
+        epochCloser = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "epoch-closer"));
+        epochHeartbeat = metrics.heartbeat("epoch-closer", epochIntervalMs);
+        metrics.watchCube(rollups);
+        epochCloser.scheduleAtFixedRate(this::closeEpoch, epochIntervalMs, epochIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void stopWorkers() {
+        running = false;
+        metrics.running(false);
+
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (epochCloser != null) {
+            epochCloser.shutdown();
+            metrics.remove(epochHeartbeat);
+        }
+        //Dernière fusion pour ne pas perdre les logs de l'epoch en cours, puis dernier point de reprise
+        closeEpoch(partitionMode ? null : collectorPositions, checkpointFile != null);
+
+        //Puis écriture de ce qui reste en file, dernier agrégat compris
+        if (sink != null) {
+            sink.stop();
+        }
+        //Les workers arrêtés ont déposé leurs derniers blocs
+        if (archive != null) {
+            archive.stop();
+            replayPool.shutdown();
+        }
+        if (alertPublisher != null) {
+            alertPublisher.stop();
+        }
+    }
+
+    /**
+     * Publie des logs aux workers par batches de la taille choisie par {@link FlowControl} (utilisé par les tests de charge).
+     * Comme le collecteur, doit être appelé depuis un seul thread producteur ; attend quand l'anneau est plein.
+     */
+    void submitRecords(List<byte[]> records) throws InterruptedException {
+        LogBatch batch = null;
+        int batchSize = 0;
+        for (byte[] record : records) {
+            if (batch == null) {
+                batch = batchRing.claim();
+                batchSize = flow.nextBatchSize(batchRing.inFlight());
+            }
+            batch.add(record);
+            if (batch.size() >= batchSize) {
+                batchRing.publish(batch);
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            batchRing.publish(batch);
+        }
+    }
+
+    /** Attend que les workers aient traité tous les logs publiés par {@link #submitRecords} (même thread producteur). */
+    void awaitSubmitted() throws InterruptedException {
+        batchRing.awaitIdle();
+    }
+
     private void workerThread(int threadId) {
         System.out.println("🧵 Worker Thread " + threadId + " démarré");
+        WorkerState state = new WorkerState();
+        PipelineMetrics.Heartbeat heartbeat = metrics.heartbeat("worker-" + threadId, 100);
+        long idleSince = System.nanoTime();
 
-        while (running && !Thread.currentThread().isInterrupted()) {
+        while (!Thread.currentThread().isInterrupted()) {
             try {
-                //Récupération d’un batch depuis la file
-                List<String> batch = batchQueue.poll(1, TimeUnit.SECONDS);
-
-                if (batch != null) {
-                    System.out.println("⚡ Thread " + threadId + " traite un batch de " + batch.size() + " logs");
-                    //Traitement ligne par ligne
-                    for (String logJson : batch) {
-                        processLog(logJson, threadId); // Analyse JSON + update compteurs
+                //Récupération d’un batch depuis l'anneau
+                LogBatch batch = batchRing.poll(100, TimeUnit.MILLISECONDS);
+
+                if (batch == null) {
+                    long now = System.nanoTime();
+                    metrics.workerIdle(now - idleSince);
+                    idleSince = now;
+                    heartbeat.beat();
+                    state.flushArchive(now, false);
+                    //À l'arrêt, on ne sort qu'une fois l'anneau vidé : les batches déjà publiés sont comptés
+                    if (!running) {
+                        break;
+                    }
+                } else {
+                    long start = System.nanoTime();
+                    metrics.workerIdle(start - idleSince);
+                    heartbeat.busy(start);
+                    if (log.isDebugEnabled()) {
+                        log.debug("⚡ Thread {} traite un batch de {} logs", threadId, batch.size());
+                    }
+                    processBatch(batch, threadId, state);
+                    long analysed = System.nanoTime();
+                    metrics.analyse.record(analysed - start, TimeUnit.NANOSECONDS);
+                    metrics.processedLogs.increment(batch.size());
+                    flow.recordCost(analysed - start, batch.size());
+                    try {
+                        //Hors de begin()/end() : un sink plein (mode BLOCK) ne retient pas l'epoch closer
+                        if (sink != null) {
+                            for (int i = 0; i < batch.size(); i++) {
+                                persist(batch.get(i), batch.partition(i), batch.offset(i), batch.timestamp(i));
+                            }
+                            metrics.persist.record(System.nanoTime() - analysed, TimeUnit.NANOSECONDS);
+                        }
+                    } finally {
+                        //Le batch retourne au collecteur pour être réutilisé
+                        batchRing.release(batch);
+                        idleSince = System.nanoTime();
+                        state.flushArchive(idleSince, false);
+                        metrics.workerBusy(idleSince - start);
+                        heartbeat.idle(idleSince);
                     }
-                    System.out.println("✅ Thread " + threadId + " a terminé son batch, attente des autres...");
-                    //Synchronisation avec les autres threads
-                    barrier.await(); //Une fois que tous ont terminé, on passe à la phase suivante
-                    System.out.println("🚀 Thread " + threadId + " continue vers la phase suivante");
                 }
-
-            } catch (InterruptedException | BrokenBarrierException e) {
+            } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
             }
         }
 
+        state.flushArchive(System.nanoTime(), true);
+        metrics.remove(heartbeat);
         System.out.println("🛑 Worker Thread " + threadId + " arrêté");
     }
 
-    private void processLog(String jsonLog, int threadId) {
+    /** Analyse un batch dans la fenêtre active du slot de {@code state} (aussi appelé par les benchmarks). */
+    void processBatch(LogBatch batch, int threadId, WorkerState state) {
+        //Tout le batch compte dans la même epoch : l'epoch closer ne lira la fenêtre qu'après end()
+        state.window = state.slot.begin();
         try {
-            JSONObject json = new JSONObject(jsonLog);
-            String url = json.getString("url");
-            int status = json.getInt("status");
-
-            //Mise à jour des stats par URL
-            urlCountMap.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-            urlCountMapCumulative.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-            //Classement selon le statut HTTP
-            if (status >= 500 && status < 600) {
-                error5xxCount.incrementAndGet();
-                error5xxCumulative.incrementAndGet();
-                error5xxUrls.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-                error5xxUrlsCumulative.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-            }else if (status >= 400 && status < 500) {
-                error4xxCount.incrementAndGet();
-                error4xxCumulative.incrementAndGet();
-                error4xxUrls.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-                error4xxUrlsCumulative.computeIfAbsent(url, k -> new AtomicLong(0)).incrementAndGet();
-            } else if (status >= 200 && status < 300) {
-                success2xxCount.incrementAndGet();
-                success2xxCumulative.incrementAndGet();
-            }
-
-            long currentCount = totalProcessedLogs.incrementAndGet();
-            totalLogsCumulative.incrementAndGet();
-
-            //Affichage toutes les 10 lignes
-            if (currentCount % 10 == 0) {
-                System.out.printf("🔍 Thread %d - Log %d traité: %s %d\n",
-                        threadId, currentCount, url, status);
+            //Traitement ligne par ligne
+            for (int i = 0; i < batch.size(); i++) {
+                processLog(batch.get(i), threadId, state); // Analyse JSON + update compteurs locaux
+            }
+        } finally {
+            state.slot.end();
+        }
+    }
+
+    /**
+     * État d'un thread de traitement : champs extraits, caches d'identifiants, slot de fenêtres et bloc d'archive.
+     * Jamais partagé ; seules les fenêtres retirées du slot et les blocs déposés dans l'archive sont lus par d'autres threads.
+     */
+    final class WorkerState {
+        final LogFields fields = new LogFields();
+        final IdCaches ids = new IdCaches();
+        final WindowSlot slot = new WindowSlot();
+        // Fenêtre active du batch en cours, obtenue par slot.begin()
+        WindowAccumulator window;
+        // Logs traités en attente d'archivage ; null si l'archive est désactivée
+        ArchiveBlock archived = archive != null ? archive.newBlock() : null;
+
+        WorkerState() {
+            slots.add(slot);
+        }
+
+        /** Dépose le bloc d'archive s'il attend depuis plus de flushMs, ou dans tous les cas si {@code force} (arrêt). */
+        void flushArchive(long now, boolean force) {
+            if (archived != null && (force || archive.lingerExpired(archived, now))) {
+                archived = archive.submit(archived);
+            }
+        }
+    }
+
+    /** Caches d'identifiants denses d'un thread (worker, consumer ou tâche de rejeu) devant les dictionnaires partagés. */
+    static final class IdCaches {
+        final KeyIdCache urls = new KeyIdCache(urlIds, 1024);
+        final KeyIdCache services = new KeyIdCache(serviceIds, 256);
+        final KeyIdCache methods = new KeyIdCache(methodIds, 16);
+        final KeyIdCache levels = new KeyIdCache(levelIds, 16);
+    }
+
+    /**
+     * Boucle d'un consumer du mode partition-parallèle. Le consumer et l'état de traitement
+     * ne sont utilisés que par ce thread : Kafka appelle aussi le rebalance listener depuis poll().
+     */
+    private final class PartitionConsumer implements Runnable, ConsumerRebalanceListener {
+        private final int consumerId;
+        private final Consumer<byte[], byte[]> partitionConsumer;
+        private final WorkerState state = new WorkerState();
+        private Map<TopicPartition, Long> committed = Map.of();
+
+        PartitionConsumer(int consumerId, Consumer<byte[], byte[]> partitionConsumer) {
+            this.consumerId = consumerId;
+            this.partitionConsumer = partitionConsumer;
+        }
+
+        @Override
+        public void run() {
+            System.out.println("🧵 Consumer " + consumerId + " démarré");
+            PipelineMetrics.Heartbeat heartbeat = metrics.heartbeat("consumer-" + consumerId, 100);
+            partitionConsumer.subscribe(Collections.singletonList(TOPIC), this);
+            try {
+                while (running && !Thread.currentThread().isInterrupted()) {
+                    long pollStart = System.nanoTime();
+                    ConsumerRecords<byte[], byte[]> records = partitionConsumer.poll(Duration.ofMillis(100));
+                    long start = System.nanoTime();
+                    metrics.pollDuration.record(start - pollStart, TimeUnit.NANOSECONDS);
+                    metrics.pollRecords.record(records.count());
+                    metrics.recordLag(partitionConsumer);
+                    if (records.isEmpty()) {
+                        heartbeat.beat();
+                        metrics.workerIdle(start - pollStart);
+                        state.flushArchive(start, false);
+                        continue;
+                    }
+                    heartbeat.busy(start);
+                    state.window = state.slot.begin();
+                    try {
+                        for (TopicPartition partition : records.partitions()) {
+                            List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.records(partition);
+                            for (ConsumerRecord<byte[], byte[]> record : partitionRecords) {
+                                if (record.value() != null) {
+                                    processLog(record.value(), consumerId, state);
+                                }
+                            }
+                            //Consumer séquentiel : les offsets couverts voyagent avec la fenêtre qui contient ces logs
+                            long next = partitionRecords.get(partitionRecords.size() - 1).offset() + 1;
+                            state.window.coverOffset(partition, next);
+                            processedOffsets.put(partition, next);
+                        }
+                    } finally {
+                        state.slot.end();
+                    }
+                    long analysed = System.nanoTime();
+                    metrics.analyse.record(analysed - start, TimeUnit.NANOSECONDS);
+                    metrics.processedLogs.increment(records.count());
+                    if (sink != null) {
+                        for (TopicPartition partition : records.partitions()) {
+                            for (ConsumerRecord<byte[], byte[]> record : records.records(partition)) {
+                                if (record.value() != null) {
+                                    persist(record.value(), partition, record.offset(), record.timestamp());
+                                }
+                            }
+                        }
+                        metrics.persist.record(System.nanoTime() - analysed, TimeUnit.NANOSECONDS);
+                    }
+                    committed = commitDurable(partitionConsumer, committed);
+                    long done = System.nanoTime();
+                    state.flushArchive(done, false);
+                    metrics.workerBusy(done - start);
+                    heartbeat.idle(done);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("❌ Erreur Consumer {} : {}", consumerId, e.getMessage());
+            } finally {
+                state.flushArchive(System.nanoTime(), true);
+                metrics.remove(heartbeat);
+                metrics.forgetLag(partitionConsumer);
+                partitionConsumer.close();
+            }
+            System.out.println("🛑 Consumer " + consumerId + " arrêté");
+        }
+
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            //Rien à remettre : les logs déjà lus sont dans le slot de ce consumer et seront fusionnés à la prochaine epoch
+            System.out.println("🔀 Consumer " + consumerId + " cède " + partitions.size() + " partition(s)");
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            System.out.println("🔀 Consumer " + consumerId + " reçoit " + partitions.size() + " partition(s)");
+            //Si un autre consumer de ce processus avait déjà compté une partie de ces partitions, on repart de là
+            seekToCounted(partitionConsumer, partitions);
+        }
+    }
+
+    /**
+     * Ferme l'epoch courante : bascule chaque slot sur sa fenêtre de réserve, fusionne les fenêtres retirées
+     * dans les compteurs temporels et cumulés, puis affiche les statistiques. Chaque log compte dans
+     * exactement une epoch : une fenêtre n'est lue qu'une fois son worker sorti du batch qui l'écrivait,
+     * et n'est remise à zéro qu'après la fusion. Les lecteurs REST ne voient que des copies publiées.
+     * En mode partition-parallèle, les fenêtres portent aussi les offsets qu'elles couvrent : un point de reprise
+     * peut être pris à n'importe quelle epoch. En mode collecteur, seul le collecteur sait quand tout ce qu'il a lu
+     * a été fusionné (voir collectLogs).
+     */
+    void closeEpoch() {
+        closeEpoch(null, partitionMode && checkpointDue());
+    }
+
+    /** {@code positions} : offsets atteints par le collecteur, tous ses logs étant fusionnés dans cette epoch. */
+    private void closeEpoch(Map<TopicPartition, Long> positions, boolean checkpoint) {
+        synchronized (displayLock) {
+            long start = System.nanoTime();
+            if (epochHeartbeat != null) {
+                epochHeartbeat.beat();
+            }
+            epoch++;
+            WindowAccumulator merged = new WindowAccumulator();
+            for (WindowSlot slot : slots) {
+                WindowAccumulator retired = slot.swap();
+                merged.merge(retired);
+                slot.recycle(retired);
+            }
+            merged.offsets.forEach(this::coverOffset);
+            if (positions != null) {
+                positions.forEach(this::coverOffset);
+            }
+            long mergedAt = System.nanoTime();
+            metrics.merge.record(mergedAt - start, TimeUnit.NANOSECONDS);
+            publishWindow(merged);
+            long windowPublished = System.nanoTime();
+            //Avant le snapshot : les alertes de cette fenêtre partent avec lui dans le flux SSE
+            detectAnomalies(merged);
+            long detected = System.nanoTime();
+            metrics.detect.record(detected - windowPublished, TimeUnit.NANOSECONDS);
+            System.out.println("🔄 Epoch " + epoch + " fermée");
+            displayStatistics();
+            long published = System.nanoTime();
+            metrics.snapshot.record((published - mergedAt) - (detected - windowPublished), TimeUnit.NANOSECONDS);
+            if (checkpoint) {
+                writeCheckpoint();
+                metrics.checkpoint.record(System.nanoTime() - published, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Évalue la fenêtre fermée (sous displayLock) et diffuse les transitions d'alerte : journal (WARN à l'ouverture,
+     * INFO à la fin, à débit limité en cas de rafale), /alerts, SSE, Kafka.
+     */
+    private void detectAnomalies(WindowAccumulator window) {
+        List<AnomalyDetector.Alert> emitted = detector.evaluate(window, epoch, System.currentTimeMillis());
+        for (AnomalyDetector.Alert alert : emitted) {
+            if (alert.state() == AnomalyDetector.State.FIRING) {
+                metrics.alertsFired.increment();
+                log.warn("🚨 ALERTE {} {} : {} = {} (base {}, z = {})", alert.scope().key, alert.key(), alert.signal().key,
+                        String.format("%.2f", alert.value()), String.format("%.2f", alert.baseline()),
+                        String.format("%.1f", alert.zScore()));
+            } else {
+                log.info("✅ Fin d'alerte {} {} : {} = {}", alert.scope().key, alert.key(), alert.signal().key,
+                        String.format("%.2f", alert.value()));
+            }
+            recentAlerts.addFirst(alert.toMap());
+            if (recentAlerts.size() > RECENT_ALERTS) {
+                recentAlerts.removeLast();
+            }
+            if (alertPublisher != null) {
+                alertPublisher.offer(alert);
+            }
+        }
+        //La réponse de /alerts n'est resérialisée que si une alerte a changé ou si la publication Kafka a progressé
+        long publisherProgress = alertPublisher != null ? alertPublisher.progress() : 0;
+        if (emitted.isEmpty() && alerts != JsonSnapshot.EMPTY && publisherProgress == lastPublisherProgress) {
+            return;
+        }
+        lastPublisherProgress = publisherProgress;
+        activeAlerts = detector.active();
+
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("updatedAtEpoch", epoch);
+        view.put("fired", detector.fired());
+        view.put("active", activeAlerts);
+        view.put("recent", new ArrayList<>(recentAlerts));
+        if (alertPublisher != null) {
+            view.put("kafka", alertPublisher.summary());
+        }
+        alerts = JsonSnapshot.of(view);
+    }
+
+    private void coverOffset(TopicPartition partition, long nextOffset) {
+        coveredOffsets.merge(partition, nextOffset, Math::max);
+    }
+
+    /** Écrit le point de reprise (sous displayLock) ; ses offsets ne deviennent commitables qu'une fois le fichier durable. */
+    private void writeCheckpoint() {
+        long start = System.nanoTime();
+        try {
+            long bytes = Checkpoint.write(checkpointFile, new CumulativeState());
+            durableOffsets = Map.copyOf(coveredOffsets);
+            log.info("💾 Point de reprise epoch {} : {} Ko en {} ms", epoch, bytes / 1024,
+                    String.format("%.1f", (System.nanoTime() - start) / 1e6));
+        } catch (IOException | RuntimeException e) {
+            log.error("❌ Échec du point de reprise : {}", e.getMessage());
+        } finally {
+            lastCheckpointMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Relit le point de reprise avant le démarrage des consumers ; renvoie {@code true} si l'état cumulé a été restauré.
+     * Un fichier corrompu est ignoré (reprise à zéro) ; un fichier incompatible avec la configuration arrête le démarrage.
+     */
+    boolean restoreCheckpoint() {
+        if (checkpointFile == null) {
+            return false;
+        }
+        synchronized (displayLock) {
+            long start = System.nanoTime();
+            long bytes;
+            try {
+                bytes = Checkpoint.read(checkpointFile, new CumulativeState());
+            } catch (IOException e) {
+                log.error("❌ Point de reprise ignoré, reprise à zéro : {}", e.getMessage());
+                return false;
+            }
+            if (bytes < 0) {
+                return false;
+            }
+            cumulativeCounts = cumulative.copy();
+            cumulativeStats = JsonSnapshot.of(cumulativeSnapshot());
+            restoredOffsets = Map.copyOf(coveredOffsets);
+            durableOffsets = restoredOffsets;
+            log.info("♻️ Reprise à l'epoch {} : {} logs cumulés, {} Ko relus en {} ms", epoch, cumulative.getTotalLogs(),
+                    bytes / 1024, String.format("%.1f", (System.nanoTime() - start) / 1e6));
+            return true;
+        }
+    }
+
+    /**
+     * Contenu du point de reprise : epoch, dictionnaires d'identifiants, compteurs, histogrammes et top-K cumulés,
+     * et offsets Kafka qu'ils couvrent. Écrit et relu sous displayLock. Les séries temporelles et les fenêtres
+     * event time n'en font pas partie : elles se reconstituent d'elles-mêmes après le redémarrage.
+     */
+    private final class CumulativeState implements Checkpoint.Part {
+        // Figés une fois : les workers peuvent attribuer de nouveaux identifiants pendant l'écriture
+        private final String[] urlNames = urlIds.names();
+        private final String[] serviceNames = serviceIds.names();
+
+        private List<HeavyHitters> heavyHitters() {
+            return List.of(topUrlsCumulative, top4xxUrlsCumulative, top5xxUrlsCumulative, topClientIpsCumulative);
+        }
+
+        @Override
+        public int checkpointBytes() {
+            int bytes = Long.BYTES + namesBytes(urlNames) + namesBytes(serviceNames) + cumulative.checkpointBytes()
+                    + histogramsBytes(urlLatencyCumulative) + histogramsBytes(serviceLatencyCumulative);
+            for (HeavyHitters top : heavyHitters()) {
+                bytes += top.checkpointBytes();
+            }
+            bytes += Integer.BYTES;
+            for (TopicPartition partition : coveredOffsets.keySet()) {
+                bytes += Checkpoint.stringBytes(partition.topic()) + Integer.BYTES + Long.BYTES;
+            }
+            return bytes;
+        }
+
+        @Override
+        public void writeTo(ByteBuffer out) {
+            out.putLong(epoch);
+            writeNames(out, urlNames);
+            writeNames(out, serviceNames);
+            cumulative.writeTo(out);
+            writeHistograms(out, urlLatencyCumulative);
+            writeHistograms(out, serviceLatencyCumulative);
+            for (HeavyHitters top : heavyHitters()) {
+                top.writeTo(out);
+            }
+            out.putInt(coveredOffsets.size());
+            coveredOffsets.forEach((partition, offset) -> {
+                Checkpoint.putString(out, partition.topic());
+                out.putInt(partition.partition()).putLong(offset);
+            });
+        }
+
+        @Override
+        public void readFrom(ByteBuffer in) {
+            epoch = in.getLong();
+            //Mêmes identifiants qu'avant l'arrêt : les cellules et histogrammes relus restent indexés correctement
+            urlIds.restore(readNames(in));
+            serviceIds.restore(readNames(in));
+            cumulative.readFrom(in);
+            urlLatencyCumulative = readHistograms(in);
+            serviceLatencyCumulative = readHistograms(in);
+            for (HeavyHitters top : heavyHitters()) {
+                top.readFrom(in);
+            }
+            coveredOffsets.clear();
+            for (int n = in.getInt(); n > 0; n--) {
+                coveredOffsets.put(new TopicPartition(Checkpoint.getString(in), in.getInt()), in.getLong());
+            }
+        }
+
+        private static int namesBytes(String[] names) {
+            int bytes = Integer.BYTES;
+            for (String name : names) {
+                bytes += Checkpoint.stringBytes(name);
+            }
+            return bytes;
+        }
+
+        private static void writeNames(ByteBuffer out, String[] names) {
+            out.putInt(names.length);
+            for (String name : names) {
+                Checkpoint.putString(out, name);
+            }
+        }
+
+        private static String[] readNames(ByteBuffer in) {
+            String[] names = new String[in.getInt()];
+            for (int id = 0; id < names.length; id++) {
+                names[id] = Checkpoint.getString(in);
+            }
+            return names;
+        }
+
+        private static int histogramsBytes(LatencyHistogram[] histograms) {
+            int bytes = Integer.BYTES + histograms.length;
+            for (LatencyHistogram histogram : histograms) {
+                if (histogram != null) {
+                    bytes += histogram.checkpointBytes();
+                }
+            }
+            return bytes;
+        }
+
+        private static void writeHistograms(ByteBuffer out, LatencyHistogram[] histograms) {
+            out.putInt(histograms.length);
+            for (LatencyHistogram histogram : histograms) {
+                out.put((byte) (histogram != null ? 1 : 0));
+                if (histogram != null) {
+                    histogram.writeTo(out);
+                }
+            }
+        }
+
+        private static LatencyHistogram[] readHistograms(ByteBuffer in) {
+            LatencyHistogram[] histograms = new LatencyHistogram[in.getInt()];
+            for (int id = 0; id < histograms.length; id++) {
+                if (in.get() != 0) {
+                    histograms[id] = LatencyHistogram.readFrom(in);
+                }
+            }
+            return histograms;
+        }
+    }
+
+    private void publishWindow(WindowAccumulator window) {
+        //La fenêtre fusionnée devient la vue temporelle ; les cumuls sont les mêmes cellules additionnées
+        lastWindow = window;
+        cumulative.mergeCounts(window);
+        cumulativeCounts = cumulative.copy();
+
+        //Historique et fenêtres event time : chaque log compte dans la seconde de son propre timestamp
+        window.eventSeconds.forEach(timeSeries::record);
+        eventTimeWindows.add(window.eventSeconds);
+        eventTimeWindows.advance();
+        window.rollups.forEach(rollups::record);
+
+        topUrlsCumulative.merge(window.topUrls);
+        top4xxUrlsCumulative.merge(window.top4xxUrls);
+        top5xxUrlsCumulative.merge(window.top5xxUrls);
+        topClientIpsCumulative.merge(window.topClientIps);
+
+        urlLatencyCumulative = WindowAccumulator.mergeHistograms(urlLatencyCumulative, window.urlLatency);
+        serviceLatencyCumulative = WindowAccumulator.mergeHistograms(serviceLatencyCumulative, window.serviceLatency);
+        windowLatency = latencySummary(window.urlLatency, window.serviceLatency);
+        cumulativeStats = JsonSnapshot.of(cumulativeSnapshot());
+    }
+
+    /** Contenu de /statsCumulative, calculé par l'epoch closer plutôt qu'à chaque requête. */
+    private Map<String, Object> cumulativeSnapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long total = cumulative.getTotalLogs();
+        long count5xx = cumulative.getError5xx();
+        stats.put("totalProcessedLogs", total);
+        stats.put("success2xx", cumulative.getSuccess2xx());
+        stats.put("errors4xx", cumulative.getError4xx());
+        stats.put("errors5xx", count5xx);
+        double errorRate = total > 0 ? (count5xx * 100.0) / total : 0;
+        stats.put("errorRatePercent", String.format("%.2f", errorRate));
+        stats.put("urls4xx", cumulative.byUrl(StatusCounts.ERRORS_4XX, urlIds));
+        stats.put("urls5xx", cumulative.byUrl(StatusCounts.ERRORS_5XX, urlIds));
+        stats.put("urlStats", urlStats(cumulative.byUrl(StatusCounts.REQUESTS, urlIds), total));
+        stats.put("latency", latencySummary(urlLatencyCumulative, serviceLatencyCumulative));
+
+        // Top URLs, top URLs en 4xx/5xx et top IPs clients, avec leurs bornes d'erreur
+        Map<String, Object> heavyHitters = new LinkedHashMap<>();
+        heavyHitters.put("urls", topUrlsCumulative.summary(TOP_K));
+        heavyHitters.put("urls4xx", top4xxUrlsCumulative.summary(TOP_K));
+        heavyHitters.put("urls5xx", top5xxUrlsCumulative.summary(TOP_K));
+        heavyHitters.put("clientIps", topClientIpsCumulative.summary(TOP_K));
+        stats.put("heavyHitters", heavyHitters);
+        if (sink != null) {
+            stats.put("storage", sink.summary());
+        }
+        if (archive != null) {
+            stats.put("archive", archive.summary());
+        }
+        return stats;
+    }
+
+    private static Map<String, Object> latencySummary(LatencyHistogram[] byUrl, LatencyHistogram[] byService) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("urls", summaries(byUrl, urlIds));
+        latency.put("services", summaries(byService, serviceIds));
+        return latency;
+    }
+
+    private static Map<String, Object> summaries(LatencyHistogram[] histograms, KeyDictionary keys) {
+        Map<String, Object> summaries = new LinkedHashMap<>();
+        for (int id = 0; id < histograms.length; id++) {
+            if (histograms[id] != null) {
+                summaries.put(keys.name(id), histograms[id].summary());
+            }
+        }
+        return summaries;
+    }
+
+    /** Nombre d'epochs fermées depuis le démarrage. */
+    long epochs() {
+        synchronized (displayLock) {
+            return epoch;
+        }
+    }
+
+    /**
+     * Dépose le log dans la file du sink MongoDB ; l'écriture se fait sur le thread d'I/O du sink.
+     * Sa partition, son offset et son horodatage Kafka lui donnent un identifiant stable : un log relu après une reprise
+     * n'est pas dupliqué.
+     */
+    private void persist(byte[] data, TopicPartition partition, long offset, long timestamp) throws InterruptedException {
+        if (sink != null) {
+            sink.offerLog(data, partition, offset, timestamp);
+        }
+    }
+
+    private void processLog(byte[] data, int threadId, WorkerState state) {
+        LogFields fields = state.fields;
+        try {
+            if (!extractor.extract(data, fields) && !fallbackExtractor.extract(data, fields)) {
+                metrics.unreadableLogs.increment();
+                log.warn("❌ Erreur Thread {} : log JSON illisible", threadId);
+                return;
+            }
+            if (!fields.has(LogField.URL) || !fields.has(LogField.STATUS)) {
+                metrics.incompleteLogs.increment();
+                log.warn("❌ Erreur Thread {} : champ url ou status manquant", threadId);
+                return;
+            }
+            long eventTime = aggregate(fields, state.ids, state.window, true);
+            //Archivé avec l'heure retenue pour ses fenêtres : le rejeu le range au même endroit
+            if (state.archived != null) {
+                state.archived.append(fields, eventTime);
+                if (state.archived.isFull()) {
+                    state.archived = archive.submit(state.archived);
+                }
+            }
+
+            //Détail par log en TRACE seulement, à débit limité
+            if (log.isTraceEnabled()) {
+                log.trace("🔍 Thread {} - Log {} traité: {} {}", threadId, state.window.getTotalLogs(), fields.url(),
+                        fields.status());
             }
 
         } catch (Exception e) {
-            System.err.println("❌ Erreur Thread " + threadId + " : " + e.getMessage());
+            metrics.unreadableLogs.increment();
+            log.warn("❌ Erreur Thread {} : {}", threadId, e.getMessage());
+        }
+    }
+
+    /**
+     * Compte un log extrait et valide (url et status présents) dans {@code window} et renvoie l'heure retenue pour lui.
+     * Chemin d'agrégation commun aux workers et au rejeu de l'archive ; {@code timeline} : ventilation aussi par seconde
+     * et par bucket du cube (inutile pour un rejeu qui ne réalimente pas l'historique).
+     */
+    static long aggregate(LogFields fields, IdCaches ids, WindowAccumulator window, boolean timeline) {
+        //Identifiant dense de l'URL : lu sur les octets via le cache du thread, sans String ni hachage partagé
+        int urlId = fields.id(LogField.URL, ids.urls);
+        int status = fields.status();
+
+        //Mise à jour des compteurs locaux au thread (aucune contention entre threads)
+        window.record(urlId, status);
+        window.recordHeavyHitters(fields, status);
+        //Heure du log lui-même ; à défaut, ou si elle est dans le futur (horloge du producteur fausse), l'heure de
+        //traitement : une heure future ferait avancer le watermark et expirer tous les logs suivants
+        long eventTime = fields.eventTimeMillis();
+        long now = System.currentTimeMillis();
+        if (eventTime == IsoTimestamps.INVALID) {
+            eventTime = now;
+        } else if (IsoTimestamps.isFuture(eventTime, now)) {
+            metrics.futureTimestamps.increment();
+            eventTime = now;
+        }
+        int serviceId = fields.id(LogField.SERVICE, ids.services);
+        long latencyMs = fields.latencyMs();
+        if (latencyMs >= 0) {
+            window.recordLatency(urlId, serviceId, latencyMs);
+        }
+        if (timeline) {
+            window.recordEvent(eventTime, urlId, status);
+            //Cellule du cube : toutes les dimensions du log, dans le bucket de son heure
+            long cellKey = RollupCube.key(serviceId, urlId, fields.id(LogField.METHOD, ids.methods),
+                    fields.id(LogField.LEVEL, ids.levels), status);
+            window.recordRollup(RollupCube.bucketStart(eventTime), cellKey, latencyMs);
+        }
+        return eventTime;
+    }
+
+    /**
+     * Rejoue depuis l'archive les logs de {@code [fromMillis, toMillis)} (d'une seule URL si {@code url} n'est pas nulle),
+     * sans broker : les segments mappés sont lus en parallèle sur le pool de rejeu et chaque log repasse par
+     * {@link #aggregate}, comme à la réception. Renvoie les compteurs, latences et top-K de la plage, avec les
+     * compteurs de lecture. {@code backfill} : les secondes et buckets relus sont aussi versés dans l'historique
+     * (/statsHistory) et dans le cube (/rollup), seulement là où ils sont absents (périodes que le service n'a pas vues
+     * passer) : rejouer deux fois la même plage, ou une plage déjà vue, ne compte rien deux fois. Un rejeu filtré sur
+     * une URL ne couvre qu'une partie du trafic et ne peut pas être versé.
+     *
+     * @throws IllegalArgumentException si {@code backfill} est demandé avec une {@code url}
+     */
+    public Map<String, Object> replay(long fromMillis, long toMillis, String url, boolean backfill) throws IOException {
+        if (archive == null) {
+            throw new IllegalStateException("Archive désactivée (analyser.archive.path)");
+        }
+        if (backfill && url != null) {
+            throw new IllegalArgumentException("Un rejeu filtré sur une URL ne peut pas compléter l'historique");
+        }
+        LogArchive.Replay<ReplayWindow> replay = archive.replay(fromMillis, toMillis, url, replayPool,
+                () -> new ReplayWindow(backfill));
+        WindowAccumulator window = replay.result().window;
+        int backfilledSeconds = 0;
+        int backfilledBuckets = 0;
+        if (backfill) {
+            //Mêmes structures que publishWindow : écrites uniquement sous displayLock
+            synchronized (displayLock) {
+                backfilledSeconds = timeSeries.recordIfAbsent(window.eventSeconds);
+                for (Map.Entry<Long, CubeCells> bucket : window.rollups.entrySet()) {
+                    if (rollups.recordIfAbsent(bucket.getKey(), bucket.getValue())) {
+                        backfilledBuckets++;
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        long total = window.getTotalLogs();
+        result.put("from", fromMillis / 1000);
+        result.put("to", toMillis / 1000);
+        if (url != null) {
+            result.put("url", url);
+        }
+        result.put("totalProcessedLogs", total);
+        result.put("success2xx", window.getSuccess2xx());
+        result.put("errors4xx", window.getError4xx());
+        result.put("errors5xx", window.getError5xx());
+        result.put("errorRatePercent", String.format("%.2f", total > 0 ? (window.getError5xx() * 100.0) / total : 0));
+        result.put("urlStats", urlStats(window.byUrl(StatusCounts.REQUESTS, urlIds), total));
+        result.put("urls4xx", window.byUrl(StatusCounts.ERRORS_4XX, urlIds));
+        result.put("urls5xx", window.byUrl(StatusCounts.ERRORS_5XX, urlIds));
+        result.put("latency", latencySummary(window.urlLatency, window.serviceLatency));
+        Map<String, Object> heavyHitters = new LinkedHashMap<>();
+        heavyHitters.put("urls", window.topUrls.summary(TOP_K));
+        heavyHitters.put("clientIps", window.topClientIps.summary(TOP_K));
+        result.put("heavyHitters", heavyHitters);
+        if (backfill) {
+            result.put("backfilledSeconds", backfilledSeconds);
+            result.put("backfilledBuckets", backfilledBuckets);
+        }
+        result.put("scan", replay.summary());
+        return result;
+    }
+
+    /** Agrégat partiel d'une tâche de rejeu : sa propre fenêtre et ses propres caches, fusionnés ensuite. */
+    private static final class ReplayWindow implements LogArchive.Partial<ReplayWindow> {
+        final WindowAccumulator window = new WindowAccumulator();
+        final IdCaches ids = new IdCaches();
+        final boolean timeline;
+
+        ReplayWindow(boolean timeline) {
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void accept(LogFields fields) {
+            aggregate(fields, ids, window, timeline);
+        }
+
+        @Override
+        public void merge(ReplayWindow other) {
+            window.merge(other.window);
         }
     }
 
     private void displayStatistics() {
+        StatusCounts window = lastWindow;
+
         System.out.println("\n" + "=".repeat(70));
-        System.out.println("📊 STATISTIQUES APRÈS SYNCHRONISATION");
+        System.out.println("📊 STATISTIQUES DE L'EPOCH");
         System.out.println("=".repeat(70));
 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
@@ -230,121 +1258,113 @@ public class KafkaLogAnalyserService {
 
         if (Duration.between(lastCumulativeDisplay, LocalDateTime.now()).compareTo(CUMULATIVE_DISPLAY_INTERVAL) >= 0) {
             lastCumulativeDisplay = LocalDateTime.now();
+            long totalCum = cumulative.getTotalLogs();
 
             System.out.println("\n📈 STATISTIQUES CUMULÉES (depuis le début)");
             System.out.println("-".repeat(50));
-            System.out.printf("   Total logs : %d\n", totalLogsCumulative.get());
+            System.out.printf("   Total logs : %d\n", totalCum);
 
             System.out.println("\n   URLs les plus fréquentées (cumulées) :");
             System.out.println("-".repeat(50));
 
-            urlCountMapCumulative.entrySet().stream()
-                    .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get()))
-                    .limit(5)
-                    .forEach(e -> {
-                                String urlCum = e.getKey();
-                                long countCum = e.getValue().get();
-                                double percentageCum = totalLogsCumulative.get() > 0 ?
-                                        (countCum * 100.0) / totalLogsCumulative.get() : 0;
-                                 System.out.printf("   %-15s → %6d requêtes (%.1f%%)\n",
-                                urlCum, countCum, percentageCum);
-
-            } );
+            //Top-K en mémoire fixe : pas de tri de toutes les URLs vues depuis le démarrage
+            topUrlsCumulative.top(5).forEach(item -> {
+                long countCum = (long) item.get("count");
+                double percentageCum = totalCum > 0 ? (countCum * 100.0) / totalCum : 0;
+                System.out.printf("   %-15s → %6d requêtes (%.1f%%)\n", item.get("key"), countCum, percentageCum);
+            });
 
             System.out.println("\n❌ ERREURS HTTP :");
             System.out.println("-".repeat(50));
-            long errorsCum = error5xxCumulative.get();
-            double errorRateCum = totalLogsCumulative.get() > 0 ?
-                    (errorsCum * 100.0) / totalLogsCumulative.get() : 0;
+            long errorsCum = cumulative.getError5xx();
+            double errorRateCum = totalCum > 0 ? (errorsCum * 100.0) / totalCum : 0;
             System.out.printf("   Erreurs 5xx : %d (%.2f%% du total)\n", errorsCum, errorRateCum);
         }
 
 
+        long total = window.getTotalLogs();
+        Map<String, Long> urlCounts = window.byUrl(StatusCounts.REQUESTS, urlIds);
+
         System.out.println("\n📈 STATISTIQUES TOMPORELLES");
         System.out.println("-".repeat(50));
-        System.out.printf("📋 Total logs traités : %d\n", totalProcessedLogs.get());
+        System.out.printf("📋 Total logs traités : %d\n", total);
         System.out.println("\n🔗 FRÉQUENCE D'ACCÈS PAR URL :");
         System.out.println("-".repeat(50));
 
 
-        if (urlCountMap.isEmpty()) {
+        if (urlCounts.isEmpty()) {
             System.out.println("   Aucune donnée disponible");
         } else {
-            urlCountMap.entrySet().stream()
-                    .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get()))
-                    .forEach(entry -> {
-                        String url = entry.getKey();
-                        long count = entry.getValue().get();
-                        double percentage = totalProcessedLogs.get() > 0 ?
-                                (count * 100.0) / totalProcessedLogs.get() : 0;
-                        System.out.printf("   %-15s → %6d requêtes (%.1f%%)\n",
-                                url, count, percentage);
-                    });
+            urlCounts.forEach((url, count) -> {
+                double percentage = total > 0 ? (count * 100.0) / total : 0;
+                System.out.printf("   %-15s → %6d requêtes (%.1f%%)\n", url, count, percentage);
+            });
         }
 
         System.out.println("\n❌ ERREURS HTTP :");
         System.out.println("-".repeat(50));
-        long errors = error5xxCount.get();
-        double errorRate = totalProcessedLogs.get() > 0 ?
-                (errors * 100.0) / totalProcessedLogs.get() : 0;
+        long errors = window.getError5xx();
+        double errorRate = total > 0 ? (errors * 100.0) / total : 0;
         System.out.printf("   Erreurs 5xx : %d (%.2f%% du total)\n", errors, errorRate);
 
+        System.out.println("\n⏱️ LATENCES PAR SERVICE (p50 / p95 / p99) :");
+        System.out.println("-".repeat(50));
+        LatencyHistogram[] serviceLatency = lastWindow.serviceLatency;
+        boolean anyLatency = false;
+        for (int id = 0; id < serviceLatency.length; id++) {
+            LatencyHistogram h = serviceLatency[id];
+            if (h != null) {
+                anyLatency = true;
+                System.out.printf("   %-15s → %5d / %5d / %5d ms\n", serviceIds.name(id),
+                        h.valueAtPercentile(50), h.valueAtPercentile(95), h.valueAtPercentile(99));
+            }
+        }
+        if (!anyLatency) {
+            System.out.println("   Aucune donnée disponible");
+        }
+
         // 🧠 Préparer un snapshot pour l'API REST
         Map<String, Object> snapshot = new LinkedHashMap<>();
         snapshot.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-        snapshot.put("totalProcessedLogs", totalProcessedLogs.get());
-        snapshot.put("errors5xx", error5xxCount.get());
-        snapshot.put("success2xx", success2xxCount.get());
-        snapshot.put("errors4xx", error4xxCount.get());
+        snapshot.put("epoch", epoch);
+        snapshot.put("totalProcessedLogs", total);
+        snapshot.put("errors5xx", window.getError5xx());
+        snapshot.put("success2xx", window.getSuccess2xx());
+        snapshot.put("errors4xx", window.getError4xx());
 
 
 
-        snapshot.put("errorRatePercent", totalProcessedLogs.get() > 0
-                ? String.format("%.2f", (error5xxCount.get() * 100.0) / totalProcessedLogs.get())
+        snapshot.put("errorRatePercent", total > 0
+                ? String.format("%.2f", (window.getError5xx() * 100.0) / total)
                 : "0.00");
 
-        Map<String, Object> urlStats = new LinkedHashMap<>();
-        urlCountMap.entrySet().stream()
-                .sorted((e1, e2) -> Long.compare(e2.getValue().get(), e1.getValue().get()))
-                .forEach(entry -> {
-                    String url = entry.getKey();
-                    long count = entry.getValue().get();
-                    double percent = totalProcessedLogs.get() > 0
-                            ? (count * 100.0) / totalProcessedLogs.get() : 0;
-                    Map<String, Object> details = new LinkedHashMap<>();
-                    details.put("count", count);
-                    details.put("percentage", String.format("%.1f", percent));
-                    urlStats.put(url, details);
-                });
-
-        snapshot.put("urlStats", urlStats);
-
-        synchronized (statsHistory) {
-            statsHistory.addLast(snapshot);
-            if (statsHistory.size() > MAX_HISTORY_SIZE) {
-                statsHistory.removeFirst();
-
-            }
+        snapshot.put("urlStats", urlStats(urlCounts, total));
+        snapshot.put("latency", windowLatency);
+        snapshot.put("eventTime", eventTimeWindows.summary());
+        snapshot.put("urls4xx", window.byUrl(StatusCounts.ERRORS_4XX, urlIds));
+        snapshot.put("urls5xx", window.byUrl(StatusCounts.ERRORS_5XX, urlIds));
+        snapshot.put("alerts", activeAlerts);
+
+        //Le snapshot est complet et sérialisé avant d'être publié ; il n'est plus modifié ensuite
+        latestStats = JsonSnapshot.of(snapshot);
+        snapshotStream.publish(latestStats);
+        //Le même JSON sert d'agrégat d'epoch dans MongoDB (collection epochStats)
+        if (sink != null) {
+            sink.offerEpoch(latestStats.json());
         }
-        latestStatsSnapshot = snapshot;
-
-
-        Map<String, Object> urls4xx = new LinkedHashMap<>();
-        error4xxUrls.forEach((url, count) -> urls4xx.put(url, count.get()));
-        snapshot.put("urls4xx", urls4xx);
-
-        Map<String, Object> urls5xx = new LinkedHashMap<>();
-        error5xxUrls.forEach((url, count) -> urls5xx.put(url, count.get()));
-        snapshot.put("urls5xx", urls5xx);
-
-        error4xxUrls.clear();
-        error5xxUrls.clear();
+    }
 
-        urlCountMap.clear();
-        totalProcessedLogs.set(0);
-        error5xxCount.set(0);
-        error4xxCount.set(0);
-        success2xxCount.set(0);
+    /** Détail {count, percentage} par URL, dans l'ordre de {@code urlCounts}. */
+    static Map<String, Object> urlStats(Map<String, Long> urlCounts, long total) {
+        Map<String, Object> urlStats = new LinkedHashMap<>();
+        urlCounts.forEach((url, count) -> {
+            double percent = total > 0 ? (count * 100.0) / total : 0;
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("count", count);
+            details.put("percentage", String.format("%.1f", percent));
+            urlStats.put(url, details);
+        });
+        return urlStats;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Associe chaque clé (URL, service...) à un identifiant entier dense, attribué une seule fois à la
+ * première apparition puis jamais réutilisé. Les compteurs peuvent ainsi être rangés dans des
+ * tableaux indexés par identifiant plutôt que dans des maps.
+ *
+ * Le nombre d'identifiants est borné : au-delà de {@code maxKeys − 1} clés, toutes les nouvelles clés
+ * partagent le dernier identifiant, nommé {@code overflowKey}. Le détail des clés au-delà de la borne
+ * est suivi par {@link HeavyHitters}.
+ *
+ * Lectures sans verrou ; seule l'attribution d'un nouvel identifiant est synchronisée.
+ */
+public final class KeyDictionary {
+    // Nom des clés regroupées faute de place, commun à tous les dictionnaires, à l'historique et au cube
+    public static final String OTHER = "(autres)";
+
+    private final int maxKeys;
+    private final String overflowKey;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[64];
+    private volatile int size;
+
+    public KeyDictionary(int maxKeys, String overflowKey) {
+        this.maxKeys = Math.max(2, maxKeys);
+        this.overflowKey = overflowKey;
+    }
+
+    /** Identifiant de {@code key}, attribué s'il n'existe pas encore. */
+    public int idOf(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (size == maxKeys) {
+            // Dictionnaire plein : pas de verrou ni d'entrée supplémentaire pour les clés rares
+            return maxKeys - 1;
+        }
+        synchronized (this) {
+            id = ids.get(key);
+            if (id != null) {
+                return id;
+            }
+            int newId = size;
+            if (newId == maxKeys) {
+                return maxKeys - 1;
+            }
+            if (newId == names.length) {
+                names = Arrays.copyOf(names, Math.min(newId * 2, maxKeys));
+            }
+            if (newId == maxKeys - 1) {
+                //Dernier identifiant : réservé aux clés au-delà de la borne
+                names[newId] = overflowKey;
+                size = maxKeys;
+                return newId;
+            }
+            names[newId] = key;
+            // Publié après le nom : un lecteur qui voit size voit aussi names[newId]
+            size = newId + 1;
+            ids.put(key, newId);
+            return newId;
+        }
+    }
+
+    /** Identifiant de {@code key} s'il a déjà été attribué, sinon -1 (sans rien attribuer). */
+    public int find(String key) {
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        return size == maxKeys && key.equals(overflowKey) ? maxKeys - 1 : -1;
+    }
+
+    /** Identifiant partagé par les clés au-delà de la borne, ou -1 tant que le dictionnaire n'est pas plein. */
+    public int overflowId() {
+        return size == maxKeys ? maxKeys - 1 : -1;
+    }
+
+    /** Clé de l'identifiant {@code id}, qui doit avoir été renvoyé par {@link #idOf}. */
+    public String name(int id) {
+        return names[id];
+    }
+
+    /** Clés des identifiants 0 à {@code size() - 1}, dans l'ordre d'attribution. */
+    public String[] names() {
+        int n = size;
+        return Arrays.copyOf(names, n);
+    }
+
+    /**
+     * Réattribue les identifiants d'un point de reprise : {@code restored[id]} doit obtenir {@code id}.
+     * Le dictionnaire doit être vide ou déjà contenir ces clés dans le même ordre.
+     */
+    public void restore(String[] restored) {
+        for (int id = 0; id < restored.length; id++) {
+            int actual = idOf(restored[id]);
+            if (actual != id) {
+                throw new IllegalStateException("Clé " + restored[id] + " : identifiant " + actual + " au lieu de " + id);
+            }
+        }
+    }
+
+    /** Nombre d'identifiants attribués : ils vont de 0 à {@code size() - 1}. */
+    public int size() {
+        return size;
+    }
+}
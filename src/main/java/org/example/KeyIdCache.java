@@ -0,0 +1,42 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cache à adressage direct devant un {@link KeyDictionary} : associe les octets UTF-8 d'une clé
+ * à son identifiant dense. Un accès réussi ne crée aucun objet et ne touche pas au dictionnaire partagé.
+ * Non thread-safe : une instance par worker.
+ */
+public final class KeyIdCache {
+    private final KeyDictionary dictionary;
+    private final byte[][] keys;
+    private final int[] ids;
+    private final int mask;
+
+    public KeyIdCache(KeyDictionary dictionary, int capacity) {
+        this.dictionary = dictionary;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        keys = new byte[size][];
+        ids = new int[size];
+        mask = size - 1;
+    }
+
+    public int get(byte[] data, int offset, int length) {
+        int slot = ByteStringCache.hash(data, offset, length) & mask;
+        byte[] key = keys[slot];
+        if (key != null && Arrays.equals(key, 0, key.length, data, offset, offset + length)) {
+            return ids[slot];
+        }
+        // Absent ou collision : on interroge le dictionnaire et on remplace l'entrée
+        int id = dictionary.idOf(new String(data, offset, length, StandardCharsets.UTF_8));
+        keys[slot] = Arrays.copyOfRange(data, offset, offset + length);
+        ids[slot] = id;
+        return id;
+    }
+
+    /** Identifiant d'une clé déjà décodée (extracteur de repli). */
+    public int get(String key) {
+        return dictionary.idOf(key);
+    }
+}
@@ -0,0 +1,141 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Histogramme de latences à mémoire fixe, à buckets log-linéaires (même principe que HdrHistogram).
+ * Les valeurs de 0 à 63 ms sont exactes ; au-delà, chaque puissance de deux est découpée en 32 buckets,
+ * soit une erreur relative d'au plus ~3 %. Les valeurs au-delà de MAX_VALUE (~4,6 h) sont plafonnées.
+ *
+ * Non thread-safe : écrit par un seul worker, puis fusionné par l'epoch closer via {@link #merge}.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS >> 1;
+    static final long MAX_VALUE = (1L << 24) - 1;
+    private static final int BUCKETS = indexOf(MAX_VALUE) + 1;
+
+    private final long[] counts = new long[BUCKETS];
+    private long totalCount;
+    private long sum;
+    private long max;
+
+    public void record(long value) {
+        long v = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts[indexOf(v)]++;
+        totalCount++;
+        sum += v;
+        if (v > max) {
+            max = v;
+        }
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /** Plus petite valeur v telle qu'au moins {@code percentile} % des mesures sont ≤ v (à la précision du bucket). */
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(totalCount * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /** Résumé prêt à sérialiser pour l'API REST. */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", totalCount);
+        summary.put("p50", valueAtPercentile(50));
+        summary.put("p95", valueAtPercentile(95));
+        summary.put("p99", valueAtPercentile(99));
+        summary.put("p999", valueAtPercentile(99.9));
+        summary.put("max", max);
+        summary.put("mean", String.format("%.1f", mean()));
+        return summary;
+    }
+
+    /** Taille de l'encodage creux : seuls les buckets non vides sont écrits. */
+    int checkpointBytes() {
+        int used = 0;
+        for (long count : counts) {
+            if (count != 0) {
+                used++;
+            }
+        }
+        return 3 * Long.BYTES + Integer.BYTES + used * (Integer.BYTES + Long.BYTES);
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putLong(totalCount).putLong(sum).putLong(max);
+        int usedPosition = out.position();
+        out.putInt(0);
+        int used = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                out.putInt(i).putLong(counts[i]);
+                used++;
+            }
+        }
+        out.putInt(usedPosition, used);
+    }
+
+    static LatencyHistogram readFrom(ByteBuffer in) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.totalCount = in.getLong();
+        histogram.sum = in.getLong();
+        histogram.max = in.getLong();
+        int used = in.getInt();
+        for (int n = 0; n < used; n++) {
+            histogram.counts[in.getInt()] = in.getLong();
+        }
+        return histogram;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int sub = (int) (value >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF + (sub - HALF);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int k = index - SUB_BUCKETS;
+        int shift = k / HALF + 1;
+        long sub = k % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
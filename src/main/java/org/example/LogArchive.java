@@ -0,0 +1,498 @@
+package org.example;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Archive locale des logs traités, relue sans broker pour reconstruire des fenêtres passées.
+ *
+ * <ul>
+ *   <li>Écriture : chaque worker remplit son {@link ArchiveBlock} puis le dépose dans une file bornée ({@link #submit}) ;
+ *       le thread {@code log-archive} l'encode (colonnes LZ4) et l'ajoute au segment courant. File pleine : le bloc
+ *       est compté comme perdu, le worker n'attend jamais.</li>
+ *   <li>Segments : fichiers {@code <numéro>.arc} d'au plus {@code segmentBytes}, fermés (et forcés sur disque)
+ *       avant d'ouvrir le suivant ; les plus anciens sont supprimés au-delà de {@code maxBytes}.</li>
+ *   <li>Lecture : segments mappés en mémoire ({@link FileChannel.MapMode#READ_ONLY}) ; l'index (position, plage d'heures
+ *       et filtre des URLs de chaque bloc) est lu dans les en-têtes, et seuls les blocs utiles sont décompressés.
+ *       {@link #replay} répartit ces blocs entre les threads d'un {@link ForkJoinPool}.</li>
+ * </ul>
+ */
+public final class LogArchive {
+    // Erreurs par bloc et par segment : throttlées, un disque défaillant ne doit pas noyer les logs
+    private static final ThrottledLog log = new ThrottledLog(LogArchive.class, 20);
+    private static final byte[] SEGMENT_MAGIC = "LOGARC01".getBytes(StandardCharsets.US_ASCII);
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_BYTES = SEGMENT_MAGIC.length + Integer.BYTES;
+    private static final String SUFFIX = ".arc";
+    // Indice de l'URL dans ArchiveBlock.TEXT_FIELDS
+    private static final int URL_FIELD = 0;
+    // Blocs par tâche feuille du rejeu : assez pour amortir la tâche, assez peu pour équilibrer les threads
+    private static final int BLOCKS_PER_TASK = 8;
+
+    private final Path directory;
+    private final int blockRecords;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final long lingerNanos;
+
+    private final BlockingQueue<ArchiveBlock> queue;
+    // Blocs écrits, rendus aux workers par submit() pour éviter de réallouer leurs colonnes
+    private final ConcurrentLinkedQueue<ArchiveBlock> spare = new ConcurrentLinkedQueue<>();
+    private final Thread io = new Thread(this::writeLoop, "log-archive");
+    private volatile boolean running;
+
+    private final AtomicLong droppedRecords = new AtomicLong();
+    // Écrits uniquement par le thread d'écriture
+    private volatile long archivedRecords;
+    private volatile long archivedBlocks;
+    private volatile long writtenBytes;
+    private volatile long rawBytes;
+    private volatile long deletedSegments;
+    private volatile long failedBlocks;
+    private FileChannel segment;
+    private long segmentNumber;
+
+    public LogArchive(Path directory, int blockRecords, long segmentBytes, long maxBytes, long lingerMs, int capacity) {
+        if (blockRecords < 1) {
+            throw new IllegalArgumentException("blockRecords doit être positif : " + blockRecords);
+        }
+        if (segmentBytes < SEGMENT_HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            //Un segment est mappé d'un seul tenant : au plus 2 Go
+            throw new IllegalArgumentException("segmentBytes doit être entre " + SEGMENT_HEADER_BYTES + " et 2 Go : " + segmentBytes);
+        }
+        this.directory = directory;
+        this.blockRecords = blockRecords;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        io.setDaemon(true);
+    }
+
+    /**
+     * Archive configurée par propriétés système, ou {@code null} si {@code analyser.archive.path} est vide :
+     * analyser.archive.path, .segmentMb, .maxMb, .blockRecords, .flushMs (attente maximale d'un bloc incomplet), .capacity.
+     */
+    static LogArchive fromSystemProperties() {
+        String path = System.getProperty("analyser.archive.path", "archive");
+        if (path.isBlank()) {
+            return null;
+        }
+        return new LogArchive(Path.of(path),
+                Integer.getInteger("analyser.archive.blockRecords", 8192),
+                Long.getLong("analyser.archive.segmentMb", 64) * 1024 * 1024,
+                Long.getLong("analyser.archive.maxMb", 10_240) * 1024 * 1024,
+                Long.getLong("analyser.archive.flushMs", 1000),
+                Integer.getInteger("analyser.archive.capacity", 64));
+    }
+
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        //Toujours un nouveau segment : celui d'avant un arrêt brutal peut finir par un bloc tronqué, ignoré à la lecture
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentNumber = files.mapToLong(LogArchive::segmentNumber).max().orElse(0);
+        }
+        openSegment();
+        running = true;
+        io.start();
+    }
+
+    /** Arrête le thread d'écriture après avoir écrit les blocs déjà en file, puis force le segment courant sur disque. */
+    public void stop() {
+        running = false;
+        try {
+            io.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (io.isAlive()) {
+            log.error("❌ Archive : blocs en attente abandonnés à l'arrêt");
+            io.interrupt();
+        }
+        closeSegment();
+    }
+
+    /** Bloc vide à remplir par un worker. */
+    ArchiveBlock newBlock() {
+        ArchiveBlock block = spare.poll();
+        return block != null ? block : new ArchiveBlock(blockRecords);
+    }
+
+    /**
+     * Dépose un bloc rempli (plus modifié ensuite par le worker) et renvoie le bloc vide à remplir ensuite.
+     * Si la file est pleine, les logs du bloc sont comptés comme perdus et le même bloc est rendu, vidé.
+     */
+    ArchiveBlock submit(ArchiveBlock block) {
+        if (block.size() == 0) {
+            return block;
+        }
+        if (queue.offer(block)) {
+            return newBlock();
+        }
+        droppedRecords.addAndGet(block.size());
+        block.clear();
+        return block;
+    }
+
+    /** Bloc incomplet à déposer quand même : commencé depuis plus de {@code flushMs}. */
+    boolean lingerExpired(ArchiveBlock block, long nowNanos) {
+        return block.lingerExpired(nowNanos, lingerNanos);
+    }
+
+    /** Compteurs d'écriture, pour les statistiques cumulées. */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("records", archivedRecords);
+        summary.put("blocks", archivedBlocks);
+        summary.put("bytes", writtenBytes);
+        summary.put("compressionRatio", writtenBytes > 0 ? Math.round(rawBytes * 100.0 / writtenBytes) / 100.0 : 0);
+        summary.put("dropped", droppedRecords.get());
+        summary.put("failedBlocks", failedBlocks);
+        summary.put("pendingBlocks", queue.size());
+        summary.put("deletedSegments", deletedSegments);
+        return summary;
+    }
+
+    public long archivedRecords() {
+        return archivedRecords;
+    }
+
+    public long pendingBlocks() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        ArchiveBlock.Encoder encoder = new ArchiveBlock.Encoder(LZ4Factory.fastestInstance().fastCompressor());
+        while (running || !queue.isEmpty()) {
+            ArchiveBlock block;
+            try {
+                block = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (block == null) {
+                continue;
+            }
+            try {
+                block.encode(encoder);
+                write(encoder.output());
+                archivedRecords += block.size();
+                archivedBlocks++;
+                writtenBytes += encoder.output().limit();
+                rawBytes += encoder.rawBytes();
+            } catch (IOException | RuntimeException e) {
+                //Disque plein ou segment inaccessible : le bloc est perdu, on repart sur un nouveau segment
+                failedBlocks++;
+                droppedRecords.addAndGet(block.size());
+                log.error("❌ Archive : échec d'écriture d'un bloc de {} logs : {}", block.size(), e.getMessage());
+                rollSegment();
+            } finally {
+                block.clear();
+                spare.offer(block);
+            }
+        }
+    }
+
+    private void write(ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            segment.write(block);
+        }
+        if (segment.position() >= segmentBytes) {
+            rollSegment();
+        }
+    }
+
+    private void rollSegment() {
+        closeSegment();
+        try {
+            openSegment();
+            enforceRetention();
+        } catch (IOException e) {
+            log.error("❌ Archive : impossible d'ouvrir un nouveau segment : {}", e.getMessage());
+        }
+    }
+
+    private void openSegment() throws IOException {
+        //Numéros croissants, proches de l'heure d'ouverture : l'ordre des noms est celui des segments
+        segmentNumber = Math.max(segmentNumber + 1, System.currentTimeMillis());
+        segment = FileChannel.open(directory.resolve(String.format("%020d%s", segmentNumber, SUFFIX)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_BYTES).put(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            segment.force(true);
+            segment.close();
+        } catch (IOException e) {
+            log.error("❌ Archive : fermeture du segment : {}", e.getMessage());
+        }
+        segment = null;
+    }
+
+    /** Supprime les segments les plus anciens tant que l'archive dépasse {@code maxBytes} (jamais le segment courant). */
+    private void enforceRetention() throws IOException {
+        List<Path> segments = segmentFiles();
+        long total = 0;
+        for (Path file : segments) {
+            total += Files.size(file);
+        }
+        for (int i = 0; i < segments.size() - 1 && total > maxBytes; i++) {
+            total -= Files.size(segments.get(i));
+            Files.deleteIfExists(segments.get(i));
+            deletedSegments++;
+        }
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> segmentNumber(file) > 0).sorted().toList();
+        }
+    }
+
+    private static long segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Agrégat partiel d'une tâche du rejeu : reçoit les logs de ses blocs, puis absorbe le résultat d'une tâche voisine. */
+    public interface Partial<P extends Partial<P>> {
+        void accept(LogFields fields);
+
+        void merge(P other);
+    }
+
+    /** Résultat d'un rejeu : agrégat fusionné et compteurs de lecture. */
+    public record Replay<P>(P result, int segments, long blocks, long skippedBlocks, long scannedRecords,
+                            long matchedRecords, long compressedBytes, long rawBytes, long nanos) {
+        public Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            double seconds = Math.max(nanos, 1) / 1e9;
+            summary.put("segments", segments);
+            summary.put("blocks", blocks);
+            summary.put("skippedBlocks", skippedBlocks);
+            summary.put("scannedRecords", scannedRecords);
+            summary.put("matchedRecords", matchedRecords);
+            summary.put("compressedBytes", compressedBytes);
+            summary.put("rawBytes", rawBytes);
+            summary.put("millis", Math.round(nanos / 1e4) / 100.0);
+            summary.put("recordsPerSecond", Math.round(scannedRecords / seconds));
+            summary.put("compressedMBPerSecond", Math.round(compressedBytes / seconds / 1e4) / 100.0);
+            return summary;
+        }
+    }
+
+    /**
+     * Relit les logs dont l'heure est dans {@code [fromMillis, toMillis)} (et l'URL égale à {@code url} si non nulle)
+     * en parallèle sur {@code pool} : chaque tâche feuille agrège ses blocs dans un partiel neuf de {@code partials},
+     * puis les partiels sont fusionnés deux à deux. Les blocs hors de la plage ou dont le filtre exclut l'URL
+     * ne sont pas décompressés. Peut tourner pendant l'écriture : seuls les blocs complets sont lus.
+     */
+    public <P extends Partial<P>> Replay<P> replay(long fromMillis, long toMillis, String url, ForkJoinPool pool,
+                                                   Supplier<P> partials) throws IOException {
+        long start = System.nanoTime();
+        List<Path> files = segmentFiles();
+        int[] urlBits = url == null ? new int[0] : urlBits(url);
+        List<BlockRef> blocks = new ArrayList<>();
+        long[] skipped = new long[1];
+        for (Path file : files) {
+            try {
+                index(map(file), fromMillis, toMillis, urlBits, blocks, skipped);
+            } catch (IOException e) {
+                //Segment supprimé par la rétention entre la liste et l'ouverture
+                log.warn("❌ Archive : segment ignoré au rejeu {} : {}", file.getFileName(), e.getMessage());
+            }
+        }
+        BlockRef[] refs = blocks.toArray(new BlockRef[0]);
+        ScanTask<P> task = new ScanTask<>(refs, 0, refs.length, fromMillis, toMillis, url, partials);
+        Scanned<P> scanned = refs.length == 0 ? task.leaf() : pool.invoke(task);
+        return new Replay<>(scanned.partial, files.size(), refs.length, skipped[0], scanned.records, scanned.matched,
+                scanned.compressedBytes, scanned.rawBytes, System.nanoTime() - start);
+    }
+
+    /** Bits de l'URL dans le filtre de Bloom des en-têtes de blocs. */
+    private static int[] urlBits(String url) {
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        long hash = ByteStringCache.hash64(bytes, 0, bytes.length);
+        return new int[]{ArchiveBlock.filterBit(hash, 0), ArchiveBlock.filterBit(hash, 1)};
+    }
+
+    private static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //Le mapping survit à la fermeture du canal ; la taille lue ici borne les blocs visibles
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /** Parcourt les en-têtes de blocs d'un segment ; s'arrête au premier en-tête invalide ou bloc tronqué. */
+    private static void index(ByteBuffer segment, long fromMillis, long toMillis, int[] urlBits,
+                              List<BlockRef> blocks, long[] skipped) {
+        int limit = segment.limit();
+        if (limit < SEGMENT_HEADER_BYTES
+                || !segment.slice(0, SEGMENT_MAGIC.length).equals(ByteBuffer.wrap(SEGMENT_MAGIC))
+                || segment.getInt(SEGMENT_MAGIC.length) != SEGMENT_VERSION) {
+            return;
+        }
+        int offset = SEGMENT_HEADER_BYTES;
+        while (offset + ArchiveBlock.HEADER_BYTES <= limit && segment.getInt(offset) == ArchiveBlock.MAGIC) {
+            int length = ArchiveBlock.HEADER_BYTES + segment.getInt(offset + 24);
+            if (length < ArchiveBlock.HEADER_BYTES || offset + (long) length > limit) {
+                break;
+            }
+            long minTime = segment.getLong(offset + 8);
+            long maxTime = segment.getLong(offset + 16);
+            if (maxTime < fromMillis || minTime >= toMillis || !mayContain(segment, offset, urlBits)) {
+                skipped[0]++;
+            } else {
+                blocks.add(new BlockRef(segment, offset, minTime >= fromMillis && maxTime < toMillis));
+            }
+            offset += length;
+        }
+    }
+
+    private static boolean mayContain(ByteBuffer segment, int offset, int[] bits) {
+        for (int bit : bits) {
+            long word = segment.getLong(offset + ArchiveBlock.FILTER + (bit >>> 6) * 8);
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Bloc à relire ; {@code inside} : toutes ses heures sont dans la plage, inutile de les tester une à une. */
+    private record BlockRef(ByteBuffer segment, int offset, boolean inside) {
+    }
+
+    private static final class Scanned<P> {
+        final P partial;
+        long records;
+        long matched;
+        long compressedBytes;
+        long rawBytes;
+
+        Scanned(P partial) {
+            this.partial = partial;
+        }
+    }
+
+    /** Tâche du rejeu sur les blocs {@code [from, to)} : découpée tant qu'il reste plus de BLOCKS_PER_TASK blocs. */
+    private static final class ScanTask<P extends Partial<P>> extends RecursiveTask<Scanned<P>> {
+        private static final long serialVersionUID = 1L;
+        // Sans état : une instance partagée par toutes les tâches
+        private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+        private final BlockRef[] blocks;
+        private final int from;
+        private final int to;
+        private final long fromMillis;
+        private final long toMillis;
+        private final String url;
+        private final Supplier<P> partials;
+
+        ScanTask(BlockRef[] blocks, int from, int to, long fromMillis, long toMillis, String url, Supplier<P> partials) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.url = url;
+            this.partials = partials;
+        }
+
+        @Override
+        protected Scanned<P> compute() {
+            if (to - from <= BLOCKS_PER_TASK) {
+                return leaf();
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<P> left = new ScanTask<>(blocks, from, middle, fromMillis, toMillis, url, partials);
+            left.fork();
+            Scanned<P> right = new ScanTask<>(blocks, middle, to, fromMillis, toMillis, url, partials).compute();
+            Scanned<P> merged = left.join();
+            merged.partial.merge(right.partial);
+            merged.records += right.records;
+            merged.matched += right.matched;
+            merged.compressedBytes += right.compressedBytes;
+            merged.rawBytes += right.rawBytes;
+            return merged;
+        }
+
+        Scanned<P> leaf() {
+            Scanned<P> scanned = new Scanned<>(partials.get());
+            ArchiveCursor cursor = new ArchiveCursor(DECOMPRESSOR);
+            LogFields fields = new LogFields();
+            for (int b = from; b < to; b++) {
+                BlockRef block = blocks[b];
+                try {
+                    cursor.load(block.segment(), block.offset());
+                } catch (RuntimeException e) {
+                    log.warn("❌ Archive : bloc ignoré au rejeu : {}", e.getMessage());
+                    continue;
+                }
+                //Filtre de Bloom passé : l'URL peut encore être absente du dictionnaire du bloc
+                int urlCode = url == null ? 0 : cursor.code(URL_FIELD, url);
+                if (urlCode < 0) {
+                    continue;
+                }
+                while (cursor.hasNext()) {
+                    int code = cursor.next(fields, URL_FIELD);
+                    scanned.records++;
+                    if (code != urlCode && url != null) {
+                        continue;
+                    }
+                    if (!block.inside()) {
+                        long time = cursor.time();
+                        if (time < fromMillis || time >= toMillis) {
+                            continue;
+                        }
+                    }
+                    scanned.matched++;
+                    scanned.partial.accept(fields);
+                }
+            }
+            scanned.compressedBytes = cursor.compressedBytes();
+            scanned.rawBytes = cursor.rawBytes();
+            return scanned;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import org.apache.kafka.common.TopicPartition;
+
+/**
+ * Batch de logs réutilisable, pré-alloué dans un {@link BatchRingBuffer}.
+ * Il ne contient que des références vers les tableaux d'octets renvoyés par Kafka : aucune copie ni décodage.
+ * La partition, l'offset et l'horodatage Kafka de chaque log le désignent de façon unique (identifiant du document
+ * MongoDB, même après la recréation du topic ou une remise à zéro des offsets).
+ */
+public final class LogBatch {
+    private final byte[][] records;
+    private final TopicPartition[] partitions;
+    private final long[] offsets;
+    private final long[] timestamps;
+    private int size;
+    // Position dans l'anneau, utilisée pour libérer le slot après traitement
+    long position;
+
+    LogBatch(int capacity) {
+        this.records = new byte[capacity][];
+        this.partitions = new TopicPartition[capacity];
+        this.offsets = new long[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    /** Ajoute un log sans origine Kafka (tests de charge). */
+    public void add(byte[] record) {
+        add(record, null, -1, -1);
+    }
+
+    public void add(byte[] record, TopicPartition partition, long offset, long timestamp) {
+        partitions[size] = partition;
+        offsets[size] = offset;
+        timestamps[size] = timestamp;
+        records[size++] = record;
+    }
+
+    public byte[] get(int index) {
+        return records[index];
+    }
+
+    /** Partition d'origine du log, ou {@code null} s'il ne vient pas de Kafka. */
+    public TopicPartition partition(int index) {
+        return partitions[index];
+    }
+
+    public long offset(int index) {
+        return offsets[index];
+    }
+
+    /** Horodatage Kafka du log (création ou ajout au topic, en millisecondes epoch). */
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == records.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        // On lâche les références pour ne pas retenir les messages Kafka déjà traités
+        java.util.Arrays.fill(records, 0, size, null);
+        java.util.Arrays.fill(partitions, 0, size, null);
+        size = 0;
+    }
+}
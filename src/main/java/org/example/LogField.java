@@ -0,0 +1,46 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Champs d'un log que les extracteurs savent lire. Les noms correspondent aux clés JSON écrites par {@link Producer}.
+ */
+public enum LogField {
+    URL("url", Kind.TEXT),
+    STATUS("status", Kind.NUMBER),
+    LATENCY_MS("latencyMs", Kind.NUMBER),
+    SERVICE("service", Kind.TEXT),
+    LEVEL("level", Kind.TEXT),
+    METHOD("method", Kind.TEXT),
+    CLIENT_IP("clientIp", Kind.TEXT),
+    // Date ISO-8601 du log, convertie en millisecondes epoch (voir IsoTimestamps)
+    TIMESTAMP("timestamp", Kind.TIMESTAMP);
+
+    enum Kind { TEXT, NUMBER, TIMESTAMP }
+
+    private final String key;
+    private final byte[] keyBytes;
+    private final Kind kind;
+
+    LogField(String key, Kind kind) {
+        this.key = key;
+        this.keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        this.kind = kind;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    byte[] keyBytes() {
+        return keyBytes;
+    }
+
+    public boolean isNumeric() {
+        return kind == Kind.NUMBER;
+    }
+
+    public boolean isTimestamp() {
+        return kind == Kind.TIMESTAMP;
+    }
+}
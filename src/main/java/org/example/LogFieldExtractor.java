@@ -0,0 +1,20 @@
+package org.example;
+
+/**
+ * Extrait un ensemble de champs d'un log JSON encodé en UTF-8.
+ * Les implémentations sont sans état et peuvent être partagées entre threads ;
+ * le {@link LogFields} de sortie, lui, appartient à un seul thread.
+ */
+public interface LogFieldExtractor {
+
+    /**
+     * Remplit {@code out} avec les champs configurés trouvés dans {@code data[offset, offset + length)}.
+     *
+     * @return {@code false} si le log n'a pas pu être lu (JSON invalide ou non supporté)
+     */
+    boolean extract(byte[] data, int offset, int length, LogFields out);
+
+    default boolean extract(byte[] data, LogFields out) {
+        return extract(data, 0, data.length, out);
+    }
+}
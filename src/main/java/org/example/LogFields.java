@@ -0,0 +1,143 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Valeurs extraites d'un log, réutilisées d'un enregistrement à l'autre par un même worker.
+ * Les champs texte sont conservés sous forme de plage d'octets dans le log source et ne deviennent
+ * des String qu'à la lecture, via un cache qui renvoie toujours la même instance pour les mêmes octets.
+ */
+public final class LogFields {
+    private static final LogField[] FIELDS = LogField.values();
+
+    private byte[] source;
+    private final int[] offsets = new int[FIELDS.length];
+    private final int[] lengths = new int[FIELDS.length];
+    private final String[] texts = new String[FIELDS.length];
+    private final long[] numbers = new long[FIELDS.length];
+    private int present;
+    // Champs texte lus comme plage d'octets (sinon posés en String par setText)
+    private int ranges;
+
+    private final ByteStringCache cache;
+
+    public LogFields() {
+        this(new ByteStringCache(1024));
+    }
+
+    public LogFields(ByteStringCache cache) {
+        this.cache = cache;
+    }
+
+    /** Prépare la lecture d'un nouveau log. */
+    void reset(byte[] source) {
+        this.source = source;
+        present = 0;
+        ranges = 0;
+    }
+
+    void setRange(LogField field, int offset, int length) {
+        int i = field.ordinal();
+        offsets[i] = offset;
+        lengths[i] = length;
+        texts[i] = null;
+        present |= 1 << i;
+        ranges |= 1 << i;
+    }
+
+    void setText(LogField field, String value) {
+        texts[field.ordinal()] = value;
+        present |= 1 << field.ordinal();
+        ranges &= ~(1 << field.ordinal());
+    }
+
+    void setNumber(LogField field, long value) {
+        numbers[field.ordinal()] = value;
+        present |= 1 << field.ordinal();
+    }
+
+    public boolean has(LogField field) {
+        return (present & (1 << field.ordinal())) != 0;
+    }
+
+    /** Valeur texte du champ, ou {@code null} s'il est absent. */
+    public String text(LogField field) {
+        if (!has(field)) {
+            return null;
+        }
+        int i = field.ordinal();
+        String text = texts[i];
+        if (text == null) {
+            text = cache.get(source, offsets[i], lengths[i]);
+            texts[i] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Identifiant dense du champ texte via {@code ids}, ou -1 s'il est absent.
+     * Lu directement sur les octets du log : aucune String n'est créée si la clé est déjà en cache.
+     */
+    public int id(LogField field, KeyIdCache ids) {
+        if (!has(field)) {
+            return -1;
+        }
+        int i = field.ordinal();
+        return texts[i] != null ? ids.get(texts[i]) : ids.get(source, offsets[i], lengths[i]);
+    }
+
+    /** Empreinte 64 bits des octets UTF-8 du champ texte (même valeur quel que soit l'extracteur), ou 0 s'il est absent. */
+    public long hash64(LogField field) {
+        if (!has(field)) {
+            return 0;
+        }
+        int i = field.ordinal();
+        if ((ranges & (1 << i)) == 0) {
+            byte[] bytes = texts[i].getBytes(StandardCharsets.UTF_8);
+            return ByteStringCache.hash64(bytes, 0, bytes.length);
+        }
+        return ByteStringCache.hash64(source, offsets[i], lengths[i]);
+    }
+
+    /** Longueur en octets UTF-8 du champ texte, ou -1 s'il est absent. */
+    int utf8Length(LogField field) {
+        if (!has(field)) {
+            return -1;
+        }
+        int i = field.ordinal();
+        return (ranges & (1 << i)) != 0 ? lengths[i] : texts[i].getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /** Copie les octets UTF-8 du champ texte (présent) dans {@code dest} à partir de {@code position}. */
+    void copyUtf8(LogField field, byte[] dest, int position) {
+        int i = field.ordinal();
+        if ((ranges & (1 << i)) != 0) {
+            System.arraycopy(source, offsets[i], dest, position, lengths[i]);
+        } else {
+            byte[] bytes = texts[i].getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(bytes, 0, dest, position, bytes.length);
+        }
+    }
+
+    /** Valeur numérique du champ, ou {@code defaultValue} s'il est absent. */
+    public long number(LogField field, long defaultValue) {
+        return has(field) ? numbers[field.ordinal()] : defaultValue;
+    }
+
+    public String url() {
+        return text(LogField.URL);
+    }
+
+    public int status() {
+        return (int) number(LogField.STATUS, 0);
+    }
+
+    public long latencyMs() {
+        return number(LogField.LATENCY_MS, -1);
+    }
+
+    /** Heure du log en millisecondes epoch, ou {@link IsoTimestamps#INVALID} si absente ou illisible. */
+    public long eventTimeMillis() {
+        return number(LogField.TIMESTAMP, IsoTimestamps.INVALID);
+    }
+}
@@ -0,0 +1,167 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Générateur de logs au format de {@link Producer}, sans {@code String.format} par log : le JSON est
+ * assemblé à partir de fragments déjà encodés en UTF-8 (texte fixe, URLs, services, IPs, horodatage de
+ * la milliseconde courante). Les URLs, services et IPs clients sont tirés selon une loi de Zipf
+ * d'exposant {@code zipf} (0 = uniforme) sur des vocabulaires de taille configurable.
+ *
+ * Non thread-safe : un générateur par thread d'envoi.
+ */
+public final class LogGenerator {
+    private static final String[] LEVELS = {"INFO", "WARN", "ERROR"};
+    private static final int[] STATUSES = {200, 404, 500};
+    private static final String[] HTTP_METHODS = {"GET", "POST"};
+    // Vocabulaires historiques du Producer : les premières clés de chaque vocabulaire généré
+    static final String[] DEFAULT_URLS = {"/login", "/pay", "/home", "/dashboard"};
+    static final String[] DEFAULT_SERVICES = {"auth", "payment", "frontend", "backend"};
+
+    // Millisecondes et secondes toujours écrites (LocalDateTime.toString() les omet quand elles valent zéro)
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS");
+
+    private static final byte[] TIMESTAMP = utf8("{\n  \"timestamp\": \"");
+    private static final byte[][] LEVEL = encodeEach(LEVELS, "\",\n  \"level\": \"", "");
+    private static final byte[][] METHOD = encodeEach(HTTP_METHODS, "\",\n  \"method\": \"", "");
+    private static final byte[] URL = utf8("\",\n  \"url\": \"");
+    private static final byte[][] STATUS = encodeEach(
+            Arrays.stream(STATUSES).mapToObj(Integer::toString).toArray(String[]::new), "\",\n  \"status\": ", "");
+    private static final byte[] LATENCY = utf8(",\n  \"latencyMs\": ");
+    // Latences de 50 à 499 ms, comme avant
+    private static final byte[][] LATENCY_VALUES = encodeEach(
+            IntStream.range(50, 500).mapToObj(Integer::toString).toArray(String[]::new), "", "");
+    private static final byte[] CLIENT_IP = utf8(",\n  \"clientIp\": \"");
+    private static final byte[][] MESSAGE = encodeEach(HTTP_METHODS, "\",\n  \"message\": \"Requête ", " effectuée sur le service ");
+    private static final byte[] SERVICE = utf8("\",\n  \"service\": \"");
+    private static final byte[] END = utf8("\"\n}\n");
+
+    private final byte[][] urls;
+    private final byte[][] services;
+    private final byte[][] clientIps;
+    private final Zipf urlKeys;
+    private final Zipf serviceKeys;
+    private final Zipf clientKeys;
+    private final SplittableRandom random;
+
+    private byte[] buffer = new byte[512];
+    private long timestampMillis = Long.MIN_VALUE;
+    private byte[] timestamp;
+
+    public LogGenerator(int urlCount, int serviceCount, int clientIpCount, double zipf, long seed) {
+        this(vocabulary(DEFAULT_URLS, "/api/resource/", urlCount), vocabulary(DEFAULT_SERVICES, "service-", serviceCount),
+                clientIps(clientIpCount), zipf, seed);
+    }
+
+    public LogGenerator(String[] urls, String[] services, String[] clientIps, double zipf, long seed) {
+        this.urls = encodeEach(urls, "", "");
+        this.services = encodeEach(services, "", "");
+        this.clientIps = encodeEach(clientIps, "", "");
+        this.urlKeys = new Zipf(urls.length, zipf);
+        this.serviceKeys = new Zipf(services.length, zipf);
+        this.clientKeys = new Zipf(clientIps.length, zipf);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /** Log suivant, encodé en UTF-8 ; le tableau renvoyé n'est plus utilisé par le générateur. */
+    public byte[] next() {
+        int level = random.nextInt(LEVELS.length);
+        int method = random.nextInt(HTTP_METHODS.length);
+        byte[] url = urls[urlKeys.sample(random)];
+        int length = 0;
+        length = put(length, TIMESTAMP);
+        length = put(length, timestamp());
+        length = put(length, LEVEL[level]);
+        length = put(length, METHOD[method]);
+        length = put(length, URL);
+        length = put(length, url);
+        length = put(length, STATUS[level]);
+        length = put(length, LATENCY);
+        length = put(length, LATENCY_VALUES[random.nextInt(LATENCY_VALUES.length)]);
+        length = put(length, CLIENT_IP);
+        length = put(length, clientIps[clientKeys.sample(random)]);
+        length = put(length, MESSAGE[method]);
+        length = put(length, url);
+        length = put(length, SERVICE);
+        length = put(length, services[serviceKeys.sample(random)]);
+        length = put(length, END);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /** Horodatage ISO local à la milliseconde, ré-encodé seulement quand la milliseconde change. */
+    private byte[] timestamp() {
+        long now = System.currentTimeMillis();
+        if (now != timestampMillis) {
+            timestampMillis = now;
+            timestamp = utf8(TIMESTAMP_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault())));
+        }
+        return timestamp;
+    }
+
+    private int put(int length, byte[] bytes) {
+        if (length + bytes.length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes.length));
+        }
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        return length + bytes.length;
+    }
+
+    /** {@code count} clés : celles de {@code defaults} d'abord, puis {@code prefix + i}. */
+    static String[] vocabulary(String[] defaults, String prefix, int count) {
+        String[] keys = new String[Math.max(1, count)];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < defaults.length ? defaults[i] : prefix + i;
+        }
+        return keys;
+    }
+
+    /** {@code count} IPs distinctes : 192.168.1.1 à .254 comme avant, puis 10.x.y.z. */
+    static String[] clientIps(int count) {
+        String[] ips = new String[Math.max(1, count)];
+        for (int i = 0; i < ips.length; i++) {
+            ips[i] = i < 254 ? "192.168.1." + (i + 1) : "10." + ((i >> 16) & 255) + "." + ((i >> 8) & 255) + "." + (i & 255);
+        }
+        return ips;
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] encodeEach(String[] values, String prefix, String suffix) {
+        byte[][] encoded = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            encoded[i] = utf8(prefix + values[i] + suffix);
+        }
+        return encoded;
+    }
+
+    /** Tirage de Zipf sur {@code n} rangs par inversion de la fonction de répartition (recherche dichotomique). */
+    static final class Zipf {
+        private final double[] cdf;
+
+        Zipf(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum += exponent == 0 ? 1 : 1 / Math.pow(k + 1, exponent);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cdf[k] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int k = Arrays.binarySearch(cdf, random.nextDouble());
+            return Math.min(k < 0 ? -k - 1 : k, cdf.length - 1);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.example;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.apache.kafka.common.TopicPartition;
+import org.bson.RawBsonDocument;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Écriture asynchrone dans MongoDB des logs traités et des agrégats de chaque epoch.
+ *
+ * <ul>
+ *   <li>Les workers ne font que déposer les octets du log dans une file bornée ; le parsing BSON
+ *       et les écritures se font sur un thread d'I/O dédié.</li>
+ *   <li>Le thread d'I/O envoie des {@code insertMany} non ordonnés : dès {@code batchSize} logs ou
+ *       {@code batchBytes} octets, ou au plus tard {@code flushIntervalMs} après le premier log en attente.
+ *       Ces deux bornes restent sous les limites d'un message MongoDB (100 000 documents, 48 Mo) :
+ *       un flush = un seul aller-retour, et la mémoire d'un batch est connue d'avance.</li>
+ *   <li>File pleine ({@link Overflow}) : soit le worker attend (aucune perte, la contre-pression remonte
+ *       jusqu'au consumer Kafka), soit le log est compté comme perdu et l'analyse continue.</li>
+ *   <li>Un log venu de Kafka a pour {@code _id} sa position et son horodatage {@code topic-partition@offset:timestamp} :
+ *       relu après une reprise ou un rééquilibrage, il est refusé par MongoDB (clé dupliquée) au lieu d'être écrit
+ *       en double. Les refus sont comptés à part ({@code duplicates}) : un nombre qui grossit sans reprise signale des
+ *       identifiants réutilisés. L'horodatage distingue déjà les logs d'un topic recréé ou d'offsets remis à zéro.</li>
+ * </ul>
+ */
+public final class MongoSink {
+    // Un échec par batch tant que MongoDB est indisponible : à débit limité
+    private static final ThrottledLog log = new ThrottledLog(MongoSink.class, 1);
+    // Code d'erreur MongoDB d'une clé dupliquée
+    static final int DUPLICATE_KEY = 11000;
+    // Limites d'un message MongoDB (maxWriteBatchSize, maxMessageSizeBytes)
+    static final int MAX_BATCH_DOCUMENTS = 100_000;
+    static final int MAX_BATCH_BYTES = 48 * 1024 * 1024;
+
+    public enum Overflow {
+        /** Le worker attend une place : aucun log perdu, le traitement ralentit au rythme de MongoDB. */
+        BLOCK,
+        /** Le log n'est pas persisté et compté dans {@code dropped} ; le traitement n'attend jamais. */
+        DROP
+    }
+
+    /** Documents refusés par un {@code insertMany} : en échec, et pour clé dupliquée (déjà présents). */
+    public record Rejected(int failed, int duplicates) {
+        public static final Rejected NONE = new Rejected(0, 0);
+    }
+
+    /** Destination des écritures groupées : MongoDB en production, doublure en mémoire dans les benchmarks. */
+    public interface Target extends AutoCloseable {
+        /** Insère {@code documents} sans ordre imposé ; renvoie les documents refusés. */
+        Rejected insertMany(String collection, List<RawBsonDocument> documents);
+
+        @Override
+        default void close() {
+        }
+    }
+
+    private final Target target;
+    private final String logCollection;
+    private final String epochCollection;
+    private final int batchSize;
+    private final int batchBytes;
+    private final long flushIntervalMs;
+    private final Overflow overflow;
+
+    private final BlockingQueue<PendingLog> logs;
+    // Un agrégat par epoch : petite file, jamais bloquante
+    private final BlockingQueue<byte[]> epochs = new ArrayBlockingQueue<>(256);
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> new Thread(r, "mongo-sink"));
+    private volatile boolean running;
+
+    private final AtomicLong dropped = new AtomicLong();
+    // Écrits uniquement par le thread d'I/O
+    private volatile long written;
+    private volatile long failed;
+    private volatile long duplicates;
+    private volatile long flushes;
+
+    public MongoSink(Target target, String logCollection, String epochCollection,
+                     int capacity, int batchSize, int batchBytes, long flushIntervalMs, Overflow overflow) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_DOCUMENTS) {
+            throw new IllegalArgumentException("batchSize doit être entre 1 et " + MAX_BATCH_DOCUMENTS + " : " + batchSize);
+        }
+        if (batchBytes < 1 || batchBytes > MAX_BATCH_BYTES) {
+            throw new IllegalArgumentException("batchBytes doit être entre 1 et " + MAX_BATCH_BYTES + " : " + batchBytes);
+        }
+        this.target = target;
+        this.logCollection = logCollection;
+        this.epochCollection = epochCollection;
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+        this.flushIntervalMs = flushIntervalMs;
+        this.overflow = overflow;
+        this.logs = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Sink configuré par propriétés système, ou {@code null} si {@code analyser.mongo.uri} est vide :
+     * analyser.mongo.uri, .database, .capacity, .batchSize, .batchBytes, .flushMs, .overflow (block|drop).
+     */
+    static MongoSink fromSystemProperties() {
+        String uri = System.getProperty("analyser.mongo.uri", "mongodb://localhost:27017");
+        if (uri.isBlank()) {
+            return null;
+        }
+        String database = System.getProperty("analyser.mongo.database", "logsdb");
+        return new MongoSink(mongoTarget(uri, database), "webLogs", "epochStats",
+                Integer.getInteger("analyser.mongo.capacity", 50_000),
+                Integer.getInteger("analyser.mongo.batchSize", 1000),
+                Integer.getInteger("analyser.mongo.batchBytes", 4 * 1024 * 1024),
+                Long.getLong("analyser.mongo.flushMs", 500),
+                Overflow.valueOf(System.getProperty("analyser.mongo.overflow", "drop").toUpperCase()));
+    }
+
+    /** Cible MongoDB : {@code insertMany} non ordonné, les documents valides sont écrits même si d'autres échouent. */
+    public static Target mongoTarget(String uri, String database) {
+        MongoClient client = MongoClients.create(uri);
+        MongoDatabase db = client.getDatabase(database);
+        InsertManyOptions unordered = new InsertManyOptions().ordered(false);
+        return new Target() {
+            @Override
+            public Rejected insertMany(String collection, List<RawBsonDocument> documents) {
+                try {
+                    db.getCollection(collection, RawBsonDocument.class).insertMany(documents, unordered);
+                    return Rejected.NONE;
+                } catch (MongoBulkWriteException e) {
+                    int duplicates = (int) e.getWriteErrors().stream().filter(error -> error.getCode() == DUPLICATE_KEY).count();
+                    return new Rejected(e.getWriteErrors().size() - duplicates, duplicates);
+                }
+            }
+
+            @Override
+            public void close() {
+                client.close();
+            }
+        };
+    }
+
+    public void start() {
+        running = true;
+        io.execute(this::drainLoop);
+    }
+
+    /** Arrête le thread d'I/O après avoir écrit tout ce qui est déjà en file. */
+    public void stop() {
+        running = false;
+        io.shutdown();
+        try {
+            if (!io.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.error("❌ MongoSink : écritures en attente abandonnées à l'arrêt");
+                io.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /**
+     * Dépose un log JSON (octets UTF-8, non modifiés ensuite) à persister, sans identifiant imposé.
+     * Renvoie {@code false} si la file est pleine en mode {@link Overflow#DROP}.
+     */
+    public boolean offerLog(byte[] json) throws InterruptedException {
+        return offerLog(json, null, -1, -1);
+    }
+
+    /**
+     * Comme {@link #offerLog(byte[])}, avec pour {@code _id} la position et l'horodatage Kafka du log
+     * si {@code partition} n'est pas nul.
+     */
+    public boolean offerLog(byte[] json, TopicPartition partition, long offset, long timestamp) throws InterruptedException {
+        PendingLog pending = new PendingLog(json, partition, offset, timestamp);
+        if (overflow == Overflow.BLOCK) {
+            logs.put(pending);
+            return true;
+        }
+        if (logs.offer(pending)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /** Dépose l'agrégat JSON d'une epoch (appelé par l'epoch closer). */
+    public void offerEpoch(byte[] json) {
+        if (!epochs.offer(json)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /** Compteurs d'écriture, pour les statistiques cumulées. */
+    public Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("written", written);
+        summary.put("failed", failed);
+        summary.put("duplicates", duplicates);
+        summary.put("dropped", dropped.get());
+        summary.put("pending", logs.size());
+        summary.put("flushes", flushes);
+        summary.put("overflow", overflow.name().toLowerCase());
+        return summary;
+    }
+
+    public long written() {
+        return written;
+    }
+
+    public long pending() {
+        return logs.size() + epochs.size();
+    }
+
+    /** Log en attente d'écriture et sa position Kafka ({@code partition} nul : identifiant laissé à MongoDB). */
+    private record PendingLog(byte[] json, TopicPartition partition, long offset, long timestamp) {
+        String id() {
+            return partition.topic() + "-" + partition.partition() + "@" + offset + ":" + timestamp;
+        }
+    }
+
+    private void drainLoop() {
+        List<PendingLog> batch = new ArrayList<>(batchSize);
+        List<RawBsonDocument> documents = new ArrayList<>(batchSize);
+        long deadline = 0;
+        int bytes = 0;
+        while (running || !logs.isEmpty() || !epochs.isEmpty()) {
+            try {
+                long wait = batch.isEmpty() ? flushIntervalMs : deadline - System.currentTimeMillis();
+                PendingLog pending = wait > 0 ? logs.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (pending != null) {
+                    if (batch.isEmpty()) {
+                        deadline = System.currentTimeMillis() + flushIntervalMs;
+                    }
+                    batch.add(pending);
+                    bytes += pending.json().length;
+                    //Vide ce qui est déjà en file sans attendre, dans la limite du batch
+                    while (batch.size() < batchSize && bytes < batchBytes && (pending = logs.poll()) != null) {
+                        batch.add(pending);
+                        bytes += pending.json().length;
+                    }
+                }
+                boolean full = batch.size() >= batchSize || bytes >= batchBytes;
+                boolean due = !batch.isEmpty() && (System.currentTimeMillis() >= deadline || !running);
+                if (full || due) {
+                    write(logCollection, batch, documents);
+                    bytes = 0;
+                }
+                if (!epochs.isEmpty()) {
+                    List<PendingLog> epochBatch = new ArrayList<>();
+                    for (byte[] json; (json = epochs.poll()) != null; ) {
+                        epochBatch.add(new PendingLog(json, null, -1, -1));
+                    }
+                    write(epochCollection, epochBatch, documents);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        //Interrompu à l'arrêt : les logs déjà retirés de la file mais pas encore écrits partent quand même
+        if (!batch.isEmpty()) {
+            boolean interrupted = Thread.interrupted();
+            write(logCollection, batch, documents);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write(String collection, List<PendingLog> batch, List<RawBsonDocument> documents) {
+        for (PendingLog pending : batch) {
+            try {
+                String json = new String(pending.json(), StandardCharsets.UTF_8);
+                documents.add(RawBsonDocument.parse(pending.partition() == null ? json : withId(json, pending.id())));
+            } catch (RuntimeException e) {
+                failed++;
+            }
+        }
+        try {
+            if (!documents.isEmpty()) {
+                Rejected rejected = target.insertMany(collection, documents);
+                written += documents.size() - rejected.failed() - rejected.duplicates();
+                failed += rejected.failed();
+                duplicates += rejected.duplicates();
+                flushes++;
+            }
+        } catch (RuntimeException e) {
+            //MongoDB indisponible : le batch est perdu, le thread d'I/O continue avec les suivants
+            failed += documents.size();
+            log.error("❌ MongoSink : échec d'écriture de {} documents dans {} : {}", documents.size(), collection,
+                    e.getMessage());
+        } finally {
+            batch.clear();
+            documents.clear();
+        }
+    }
+
+    /** Objet JSON {@code json} avec {@code "_id": id} en premier champ (sans le re-sérialiser). */
+    static String withId(String json, String id) {
+        int open = json.indexOf('{');
+        if (open < 0) {
+            throw new IllegalArgumentException("Log JSON sans objet");
+        }
+        int next = open + 1;
+        while (next < json.length() && Character.isWhitespace(json.charAt(next))) {
+            next++;
+        }
+        boolean empty = next < json.length() && json.charAt(next) == '}';
+        //Identifiant topic-partition@offset:timestamp : aucun caractère à échapper
+        return "{\"_id\":\"" + id + "\"" + (empty ? "" : ",") + json.substring(open + 1);
+    }
+}
@@ -0,0 +1,282 @@
+package org.example;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Instrumentation du pipeline d'analyse dans un registre Micrometer (le registre global, que Spring Boot
+ * expose sur /actuator/prometheus) : durée et taille des polls, lag Kafka par partition, profondeur de l'anneau
+ * de batches, temps actif/inactif des workers, durée de chaque étape, logs illisibles.
+ * On mesure par poll, par batch ou par epoch, jamais par log.
+ *
+ * Tient aussi le battement de cœur de chaque thread du pipeline, lu par /health : un thread qui ne bat plus,
+ * ou qui reste sur le même travail au-delà de sa tolérance, est signalé bloqué.
+ */
+final class PipelineMetrics {
+    // Tolérance minimale avant de déclarer un thread bloqué (-Danalyser.health.stallMs)
+    private static final long STALL_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("analyser.health.stallMs", 10_000));
+
+    private final MeterRegistry registry;
+
+    final Timer pollDuration;
+    final DistributionSummary pollRecords;
+    // Étapes : attente d'un batch libre (handoff), analyse d'un batch, dépôt dans le sink,
+    // fusion des fenêtres, détection d'anomalies, construction des snapshots, point de reprise
+    final Timer handoff;
+    final Timer analyse;
+    final Timer persist;
+    final Timer merge;
+    final Timer detect;
+    final Timer snapshot;
+    final Timer checkpoint;
+    final Counter processedLogs;
+    final Counter unreadableLogs;
+    final Counter incompleteLogs;
+    final Counter futureTimestamps;
+    final Counter alertsFired;
+
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder idleNanos = new LongAdder();
+    private volatile IntSupplier queueDepth = () -> 0;
+    private volatile FlowControl flow;
+    private volatile RollupCube cube;
+    private final Map<TopicPartition, PartitionLag> lags = new ConcurrentHashMap<>();
+    private final List<Heartbeat> heartbeats = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+
+    PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        pollDuration = Timer.builder("analyser.poll.duration")
+                .description("Durée d'un poll Kafka")
+                .publishPercentileHistogram()
+                .register(registry);
+        pollRecords = DistributionSummary.builder("analyser.poll.records")
+                .description("Logs renvoyés par un poll Kafka")
+                .baseUnit("records")
+                .register(registry);
+        handoff = stage("handoff");
+        analyse = stage("analyse");
+        persist = stage("persist");
+        merge = stage("merge");
+        detect = stage("detect");
+        snapshot = stage("snapshot");
+        checkpoint = stage("checkpoint");
+        processedLogs = Counter.builder("analyser.logs.processed").baseUnit("records").register(registry);
+        unreadableLogs = Counter.builder("analyser.logs.rejected").tag("reason", "unreadable").register(registry);
+        incompleteLogs = Counter.builder("analyser.logs.rejected").tag("reason", "missing-field").register(registry);
+        futureTimestamps = Counter.builder("analyser.logs.future.timestamp")
+                .description("Logs datés trop loin dans le futur, rangés à l'heure de traitement")
+                .baseUnit("records")
+                .register(registry);
+        alertsFired = Counter.builder("analyser.alerts.fired")
+                .description("Alertes levées par la détection d'anomalies")
+                .register(registry);
+        FunctionCounter.builder("analyser.worker.busy", busyNanos, nanos -> nanos.sum() / 1e9)
+                .description("Temps passé par les workers à traiter des batches")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("analyser.worker.idle", idleNanos, nanos -> nanos.sum() / 1e9)
+                .description("Temps passé par les workers à attendre un batch")
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("analyser.batch.queue.depth", this, metrics -> metrics.queueDepth.getAsInt())
+                .description("Batches publiés par le collecteur, pas encore rendus par les workers")
+                .register(registry);
+        Gauge.builder("analyser.batch.size.target", this, metrics -> metrics.flow == null ? 0 : metrics.flow.currentTarget())
+                .description("Taille de batch choisie par la régulation du collecteur")
+                .baseUnit("records")
+                .register(registry);
+        Gauge.builder("analyser.consumer.paused", this, metrics -> metrics.flow != null && metrics.flow.paused() ? 1 : 0)
+                .description("1 si le collecteur a mis ses partitions en pause (contre-pression)")
+                .register(registry);
+        FunctionCounter.builder("analyser.consumer.pauses", this, metrics -> metrics.flow == null ? 0 : metrics.flow.pauses())
+                .description("Mises en pause des partitions par contre-pression")
+                .register(registry);
+        Gauge.builder("analyser.cube.memory", this, metrics -> metrics.cube == null ? 0 : metrics.cube.memoryBytes())
+                .description("Mémoire des cellules du cube de requêtes ad hoc en rétention")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private Timer stage(String name) {
+        return Timer.builder("analyser.stage.duration")
+                .description("Durée d'une étape du pipeline (par batch ou par epoch)")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /** Anneau de batches dont la profondeur est exposée ; le dernier service démarré la fournit. */
+    void watchQueue(IntSupplier depth) {
+        queueDepth = depth;
+    }
+
+    /** Régulation du collecteur dont la taille de batch et les pauses sont exposées. */
+    void watchFlow(FlowControl flow) {
+        this.flow = flow;
+    }
+
+    /** Cube dont l'occupation mémoire est exposée. */
+    void watchCube(RollupCube cube) {
+        this.cube = cube;
+    }
+
+    void running(boolean running) {
+        this.running = running;
+    }
+
+    void workerBusy(long nanos) {
+        busyNanos.add(nanos);
+    }
+
+    void workerIdle(long nanos) {
+        idleNanos.add(nanos);
+    }
+
+    /**
+     * Lag de chaque partition affectée, d'après les métadonnées du dernier poll (depuis le thread du consumer).
+     * Les partitions que ce consumer suivait et qui ne lui sont plus affectées sont oubliées, avec leur jauge.
+     */
+    void recordLag(Consumer<?, ?> consumer) {
+        Set<TopicPartition> assignment = consumer.assignment();
+        for (TopicPartition partition : assignment) {
+            consumer.currentLag(partition).ifPresent(lag -> {
+                PartitionLag entry = lags.computeIfAbsent(partition, this::lagGauge);
+                entry.owner = consumer;
+                entry.value.set(lag);
+            });
+        }
+        forgetLag(consumer, assignment);
+    }
+
+    /** Oublie le lag des partitions suivies par {@code consumer} (à sa fermeture). */
+    void forgetLag(Consumer<?, ?> consumer) {
+        forgetLag(consumer, Set.of());
+    }
+
+    private void forgetLag(Consumer<?, ?> consumer, Set<TopicPartition> kept) {
+        lags.forEach((partition, entry) -> {
+            //Une partition reprise par un autre consumer du processus change de propriétaire et reste suivie
+            if (entry.owner == consumer && !kept.contains(partition) && lags.remove(partition, entry)) {
+                registry.remove(entry.gauge);
+            }
+        });
+    }
+
+    private PartitionLag lagGauge(TopicPartition partition) {
+        AtomicLong lag = new AtomicLong();
+        Gauge gauge = Gauge.builder("analyser.consumer.lag", lag, AtomicLong::get)
+                .description("Logs du topic pas encore lus par le consumer")
+                .tag("topic", partition.topic())
+                .tag("partition", Integer.toString(partition.partition()))
+                .register(registry);
+        return new PartitionLag(lag, gauge);
+    }
+
+    /** Lag d'une partition, sa jauge et le dernier consumer qui l'a relevé. */
+    private static final class PartitionLag {
+        final AtomicLong value;
+        final Gauge gauge;
+        volatile Consumer<?, ?> owner;
+
+        PartitionLag(AtomicLong value, Gauge gauge) {
+            this.value = value;
+            this.gauge = gauge;
+        }
+    }
+
+    /** Nouveau thread surveillé, qui bat au moins toutes les {@code periodMillis} ms quand il est sain. */
+    Heartbeat heartbeat(String name, long periodMillis) {
+        Heartbeat heartbeat = new Heartbeat(name, Math.max(STALL_NANOS, TimeUnit.MILLISECONDS.toNanos(3 * periodMillis)));
+        heartbeats.add(heartbeat);
+        return heartbeat;
+    }
+
+    void remove(Heartbeat heartbeat) {
+        heartbeats.remove(heartbeat);
+    }
+
+    /** État du pipeline pour /health : UP si le service tourne et qu'aucun de ses threads n'est bloqué. */
+    Map<String, Object> health(long totalLogs) {
+        long now = System.nanoTime();
+        boolean stalled = false;
+        List<Map<String, Object>> threads = new ArrayList<>();
+        for (Heartbeat heartbeat : heartbeats) {
+            Map<String, Object> thread = heartbeat.state(now);
+            stalled |= thread.get("state").equals("STALLED");
+            threads.add(thread);
+        }
+        Map<String, Object> lag = new LinkedHashMap<>();
+        lags.forEach((partition, entry) -> lag.put(partition.toString(), entry.value.get()));
+
+        Map<String, Object> health = new LinkedHashMap<>();
+        health.put("status", running && !stalled ? "UP" : "DOWN");
+        health.put("kafkaService", !running ? "STOPPED" : stalled ? "STALLED" : "RUNNING");
+        health.put("totalLogs", totalLogs);
+        health.put("batchQueueDepth", queueDepth.getAsInt());
+        health.put("consumerPaused", flow != null && flow.paused());
+        health.put("consumerLag", lag);
+        health.put("threads", threads);
+        return health;
+    }
+
+    /**
+     * Battement de cœur d'un thread : {@link #beat()} à chaque tour de boucle, {@link #busy(long)} / {@link #idle(long)}
+     * autour d'un travail. Écrit par son thread, lu par /health.
+     */
+    static final class Heartbeat {
+        private final String name;
+        private final long toleranceNanos;
+        private volatile long lastBeat = System.nanoTime();
+        // Début du travail en cours, 0 si le thread attend
+        private volatile long busySince;
+
+        private Heartbeat(String name, long toleranceNanos) {
+            this.name = name;
+            this.toleranceNanos = toleranceNanos;
+        }
+
+        void beat() {
+            lastBeat = System.nanoTime();
+        }
+
+        void busy(long now) {
+            busySince = now;
+            lastBeat = now;
+        }
+
+        void idle(long now) {
+            busySince = 0;
+            lastBeat = now;
+        }
+
+        private Map<String, Object> state(long now) {
+            long silent = now - lastBeat;
+            long busy = busySince == 0 ? 0 : now - busySince;
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("name", name);
+            state.put("state", silent > toleranceNanos || busy > toleranceNanos ? "STALLED" : busy > 0 ? "BUSY" : "IDLE");
+            state.put("lastBeatMs", TimeUnit.NANOSECONDS.toMillis(silent));
+            state.put("busyMs", TimeUnit.NANOSECONDS.toMillis(busy));
+            return state;
+        }
+    }
+}
@@ -1,85 +1,164 @@
 package org.example;
 
-import com.mongodb.client.MongoClients;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.bson.Document;
 
-import java.time.LocalDateTime;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
-import java.util.Random;
-
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Générateur de logs vers le topic Kafka. Par défaut, 10 logs/s affichés un par un (démo) ;
+ * avec {@code -Dproducer.rate=0}, envoi sans limite pour tester l'analyseur en charge.
+ *
+ * Réglages (propriétés système) :
+ * <ul>
+ *   <li>{@code producer.rate} (logs/s, 0 = sans limite), {@code producer.count}, {@code producer.durationSeconds}
+ *       (0 = sans fin), {@code producer.verbose}, {@code producer.topic}, {@code producer.bootstrap}</li>
+ *   <li>{@code producer.urls}, {@code producer.services} : une taille de vocabulaire ou une liste séparée par des virgules ;
+ *       {@code producer.clientIps} : nombre d'IPs ; {@code producer.zipf} : exposant de Zipf (0 = uniforme)</li>
+ *   <li>Kafka : {@code producer.lingerMs}, {@code producer.batchSize}, {@code producer.compression},
+ *       {@code producer.acks}, {@code producer.idempotence}</li>
+ * </ul>
+ * Affiche chaque seconde le débit atteint et les percentiles de latence d'envoi (jusqu'à l'acquittement du broker).
+ */
 public class Producer {
-    public static void main(String[] args) {
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws InterruptedException {
+        double rate = Double.parseDouble(System.getProperty("producer.rate", "10"));
+        long count = Long.getLong("producer.count", 0);
+        long durationSeconds = Long.getLong("producer.durationSeconds", 0);
+        boolean verbose = Boolean.parseBoolean(System.getProperty("producer.verbose", Boolean.toString(rate > 0 && rate <= 100)));
+        String topic = System.getProperty("producer.topic", "web_logs");
+
+        LogGenerator generator = new LogGenerator(
+                keys("producer.urls", LogGenerator.DEFAULT_URLS, "/api/resource/"),
+                keys("producer.services", LogGenerator.DEFAULT_SERVICES, "service-"),
+                LogGenerator.clientIps(Integer.getInteger("producer.clientIps", 254)),
+                Double.parseDouble(System.getProperty("producer.zipf", "0")),
+                System.nanoTime());
 
         Properties kafkaProps = new Properties();
-
-        kafkaProps.put("bootstrap.servers", "localhost:9092");
-        kafkaProps.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        kafkaProps.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        KafkaProducer<String, String> producer = new KafkaProducer<>(kafkaProps);
-
-        var mongoClient = MongoClients.create("mongodb://localhost:27017");
-        MongoDatabase db = mongoClient.getDatabase("logsdb");
-        MongoCollection<Document> col = db.getCollection("webLogs");
-
-        String[] levels = {"INFO", "WARN", "ERROR"};
-        String[] services = {"auth", "payment", "frontend", "backend"};
-        String[] httpMethods = {"GET", "POST"};
-        String[] urls = {"/login", "/pay", "/home", "/dashboard"};
-        Random random = new Random();
-
-        int count = 1;
-        while (true) {
-            String level = levels[random.nextInt(levels.length)];
-            String service = services[random.nextInt(services.length)];
-            String httpMethod = httpMethods[random.nextInt(httpMethods.length)];
-            String url = urls[random.nextInt(urls.length)];
-            String clientIp = "192.168.1." + (random.nextInt(254) + 1);
-            int httpStatus = (level.equals("ERROR")) ? 500 : (level.equals("WARN")) ? 404 : 200;
-            long latencyMs = 50 + random.nextInt(450);
-
-            String msg = String.format("Requête %s effectuée sur le service %s", httpMethod, url);
-
-            String logJson = String.format("""
-                    {
-                      "timestamp": "%s",
-                      "level": "%s",
-                      "method": "%s",
-                      "url": "%s",
-                      "status": %d,
-                      "latencyMs": %d,
-                      "clientIp": "%s",
-                      "message": "%s",
-                      "service": "%s"
-                    }
-                    """, LocalDateTime.now(), level, httpMethod, url, httpStatus, latencyMs, clientIp, msg, service);
-
-            producer.send(new ProducerRecord<>("web_logs", null, logJson));
-
-            Document doc = Document.parse(logJson);
-            col.insertOne(doc);
-
-            System.out.println("Log " + count + " envoyé : " + logJson);
-
-            count++;
-
+        kafkaProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, System.getProperty("producer.bootstrap", "localhost:9092"));
+        kafkaProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        kafkaProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, "org.apache.kafka.common.serialization.ByteArraySerializer");
+        //Regroupement et compression des envois : quelques ms d'attente pour des requêtes bien plus grosses
+        kafkaProps.put(ProducerConfig.LINGER_MS_CONFIG, System.getProperty("producer.lingerMs", "5"));
+        kafkaProps.put(ProducerConfig.BATCH_SIZE_CONFIG, System.getProperty("producer.batchSize", "65536"));
+        kafkaProps.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, System.getProperty("producer.compression", "lz4"));
+        kafkaProps.put(ProducerConfig.ACKS_CONFIG, System.getProperty("producer.acks", "all"));
+        kafkaProps.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, System.getProperty("producer.idempotence", "true"));
+        KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(kafkaProps);
+
+        //Ctrl-C : on arrête la boucle, puis on attend les derniers acquittements et le bilan
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            running = false;
             try {
-                Thread.sleep(100);
+                main.join(30_000);
             } catch (InterruptedException e) {
-                e.printStackTrace();
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        SendStats stats = new SendStats();
+        long start = System.nanoTime();
+        long deadline = durationSeconds > 0 ? start + durationSeconds * 1_000_000_000L : Long.MAX_VALUE;
+        long nextReport = start + 1_000_000_000L;
+        long sent = 0;
+        while (running && (count == 0 || sent < count)) {
+            long now = System.nanoTime();
+            if (now - deadline >= 0) {
                 break;
             }
+            if (rate > 0) {
+                //Cadence fixe depuis le départ : un retard ponctuel est rattrapé, sans dériver
+                long due = start + (long) (sent * 1e9 / rate);
+                if (due - now > 0) {
+                    LockSupport.parkNanos(due - now);
+                }
+            }
+
+            byte[] log = generator.next();
+            long sendStart = System.nanoTime();
+            producer.send(new ProducerRecord<>(topic, log), (metadata, e) -> stats.complete(sendStart, e));
+            sent++;
+
+            if (verbose) {
+                System.out.println("Log " + sent + " envoyé : " + new String(log, StandardCharsets.UTF_8));
+            }
+            if (sendStart - nextReport >= 0) {
+                stats.report(sent, sendStart - start);
+                //Repart de l'envoi courant : après une pause, pas de rafale de rapports pour rattraper le retard
+                nextReport = sendStart + 1_000_000_000L;
+            }
         }
 
+        //close() attend l'envoi et l'acquittement de tout ce qui est en file
         producer.close();
-        mongoClient.close();
+        stats.summary(sent, System.nanoTime() - start);
         System.out.println("Arrêt de la génération des logs.");
     }
-}
 
+    /** Vocabulaire d'une propriété : taille (clés générées), liste séparée par des virgules, ou {@code defaults}. */
+    private static String[] keys(String property, String[] defaults, String prefix) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            return defaults;
+        }
+        if (value.chars().allMatch(Character::isDigit)) {
+            return LogGenerator.vocabulary(defaults, prefix, Integer.parseInt(value));
+        }
+        return value.split(",");
+    }
 
+    /** Acquittements et latences d'envoi : écrits par le thread I/O du producer Kafka, lus pour les bilans. */
+    private static final class SendStats {
+        private LatencyHistogram interval = new LatencyHistogram();
+        private final LatencyHistogram total = new LatencyHistogram();
+        private long acked;
+        private long errors;
+        private long lastSent;
+        private long lastAcked;
+        private long lastReportNanos;
+
+        synchronized void complete(long sendStartNanos, Exception error) {
+            if (error != null) {
+                errors++;
+                if (errors == 1 || errors % 10_000 == 0) {
+                    System.err.println("❌ Échec d'envoi (" + errors + ") : " + error.getMessage());
+                }
+                return;
+            }
+            long micros = (System.nanoTime() - sendStartNanos) / 1000;
+            interval.record(micros);
+            total.record(micros);
+            acked++;
+        }
 
+        synchronized void report(long sent, long elapsedNanos) {
+            double seconds = (elapsedNanos - lastReportNanos) / 1e9;
+            System.out.printf("📤 %8.0f logs/s envoyés, %8.0f acquittés/s | latence d'envoi p50 %6.1f ms, p99 %6.1f ms, max %6.1f ms | %d erreurs%n",
+                    (sent - lastSent) / seconds, (acked - lastAcked) / seconds,
+                    interval.valueAtPercentile(50) / 1000.0, interval.valueAtPercentile(99) / 1000.0,
+                    interval.max() / 1000.0, errors);
+            interval = new LatencyHistogram();
+            lastSent = sent;
+            lastAcked = acked;
+            lastReportNanos = elapsedNanos;
+        }
 
+        synchronized void summary(long sent, long elapsedNanos) {
+            double seconds = elapsedNanos / 1e9;
+            System.out.println("\n" + "=".repeat(70));
+            System.out.printf("📊 %d logs envoyés, %d acquittés, %d erreurs en %.1f s : %.0f logs/s%n",
+                    sent, acked, errors, seconds, acked / seconds);
+            System.out.printf("⏱️ Latence d'envoi (ms) : p50 %.1f | p95 %.1f | p99 %.1f | p99.9 %.1f | max %.1f%n",
+                    total.valueAtPercentile(50) / 1000.0, total.valueAtPercentile(95) / 1000.0,
+                    total.valueAtPercentile(99) / 1000.0, total.valueAtPercentile(99.9) / 1000.0, total.max() / 1000.0);
+            System.out.println("=".repeat(70));
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Cube pré-agrégé service × url × méthode × niveau × statut, par bucket de {@code bucketSeconds} secondes
+ * de l'heure des logs (event time). Chaque cellule est une clé {@code long} où chaque dimension occupe
+ * un couloir de bits (identifiant du dictionnaire, ou code HTTP), avec des colonnes primitives
+ * (logs, somme et maximum des latences) : voir {@link CubeCells}.
+ *
+ * Une requête filtre et regroupe sur n'importe quel sous-ensemble de dimensions en parcourant les cellules
+ * des buckets de la période, jamais les logs. Chaque bucket a au plus {@code maxCells} cellules
+ * (mémoire bornée, voir {@link #memory()}) ; la rétention est un anneau de buckets.
+ *
+ * Un seul écrivain (l'epoch closer) ; un bucket publié n'est plus jamais modifié : l'écrivain fusionne
+ * dans une copie puis la publie. Les lectures REST ne prennent aucun verrou.
+ *
+ * Réglages : {@code -Danalyser.cube.bucketSeconds} (10), {@code .retentionMinutes} (60), {@code .maxCells} (2048).
+ */
+public final class RollupCube {
+    static final int BUCKET_SECONDS = Math.max(1, Integer.getInteger("analyser.cube.bucketSeconds", 10));
+    static final int MAX_CELLS = Integer.getInteger("analyser.cube.maxCells", 2048);
+    // Nombre maximum de groupes renvoyés par une requête
+    static final int MAX_TOP = 1000;
+
+    // Valeurs réservées de chaque couloir : champ absent du log, clés regroupées faute de place
+    static final int ABSENT = -1;
+    static final int OTHER = -2;
+
+    /** Dimensions du cube ; {@code statusClass} regroupe le couloir du statut par centaine (2xx, 4xx, 5xx). */
+    enum Dimension {
+        SERVICE("service", 12, 12),
+        URL("url", 0, 12),
+        METHOD("method", 24, 8),
+        LEVEL("level", 32, 8),
+        STATUS("status", 40, 12),
+        STATUS_CLASS("statusClass", 40, 12);
+
+        final String key;
+        final int shift;
+        final long mask;
+
+        Dimension(String key, int shift, int bits) {
+            this.key = key;
+            this.shift = shift;
+            this.mask = (1L << bits) - 1;
+        }
+
+        /** Valeur du couloir dans {@code cell} : identifiant, code HTTP, {@link #ABSENT} ou {@link #OTHER}. */
+        int value(long cell) {
+            long lane = (cell >>> shift) & mask;
+            if (lane == mask) {
+                return ABSENT;
+            }
+            if (lane == mask - 1) {
+                return OTHER;
+            }
+            return this == STATUS_CLASS ? (int) lane / 100 : (int) lane;
+        }
+
+        /** Couloir de cette dimension dans {@code cell} ; pour {@code statusClass}, le statut arrondi à la centaine. */
+        long laneOf(long cell) {
+            if (this == STATUS_CLASS) {
+                int value = value(cell);
+                return lane(value < 0 ? value : value * 100);
+            }
+            return cell & (mask << shift);
+        }
+
+        long lane(int value) {
+            long lane = value == ABSENT ? mask : value == OTHER ? mask - 1 : Math.min(value, mask - 2);
+            return lane << shift;
+        }
+
+        static Dimension of(String key) {
+            for (Dimension dimension : values()) {
+                if (dimension.key.equals(key)) {
+                    return dimension;
+                }
+            }
+            throw new IllegalArgumentException("Dimension inconnue : " + key);
+        }
+    }
+
+    // Cellule de débordement : toutes les dimensions regroupées
+    static final long OVERFLOW_KEY = Dimension.SERVICE.lane(OTHER) | Dimension.URL.lane(OTHER)
+            | Dimension.METHOD.lane(OTHER) | Dimension.LEVEL.lane(OTHER) | Dimension.STATUS.lane(OTHER);
+
+    private final KeyDictionary urls;
+    private final KeyDictionary services;
+    private final KeyDictionary methods;
+    private final KeyDictionary levels;
+    private final AtomicReferenceArray<Bucket> buckets;
+    // Logs arrivés après la rétention de leur bucket (écrits par l'epoch closer)
+    private volatile long lateDropped;
+    // Logs d'un bucket dans le futur, refusés pour ne pas occuper le slot d'un bucket réel (écrits par l'epoch closer)
+    private volatile long futureDropped;
+
+    public RollupCube(KeyDictionary urls, KeyDictionary services, KeyDictionary methods, KeyDictionary levels,
+                      int retentionBuckets) {
+        this.urls = urls;
+        this.services = services;
+        this.methods = methods;
+        this.levels = levels;
+        this.buckets = new AtomicReferenceArray<>(Math.max(1, retentionBuckets));
+    }
+
+    static RollupCube fromSystemProperties(KeyDictionary urls, KeyDictionary services, KeyDictionary methods,
+                                           KeyDictionary levels) {
+        long retentionSeconds = Long.getLong("analyser.cube.retentionMinutes", 60) * 60;
+        return new RollupCube(urls, services, methods, levels, (int) Math.max(1, retentionSeconds / BUCKET_SECONDS));
+    }
+
+    /** Clé de cellule ; un identifiant à -1 (champ absent) est conservé comme tel. */
+    static long key(int serviceId, int urlId, int methodId, int levelId, int status) {
+        return Dimension.SERVICE.lane(serviceId) | Dimension.URL.lane(urlId) | Dimension.METHOD.lane(methodId)
+                | Dimension.LEVEL.lane(levelId) | Dimension.STATUS.lane(status > 0 ? status : ABSENT);
+    }
+
+    /** Même cellule, URL regroupée sous {@code (autres)}. */
+    static long withoutUrl(long key) {
+        return (key & ~(Dimension.URL.mask << Dimension.URL.shift)) | Dimension.URL.lane(OTHER);
+    }
+
+    /** Début (secondes epoch) du bucket contenant {@code eventTimeMillis}. */
+    static long bucketStart(long eventTimeMillis) {
+        long second = Math.floorDiv(eventTimeMillis, 1000);
+        return second - Math.floorMod(second, BUCKET_SECONDS);
+    }
+
+    /** Ajoute les cellules d'une epoch au bucket {@code start} (epoch closer uniquement). */
+    void record(long start, CubeCells cells) {
+        if (IsoTimestamps.isFuture(start * 1000, System.currentTimeMillis())) {
+            futureDropped += count(cells);
+            return;
+        }
+        int slot = slot(start);
+        Bucket current = buckets.get(slot);
+        if (current != null && current.start > start) {
+            // Log en retard plus ancien que la rétention : le slot appartient déjà à un bucket plus récent
+            lateDropped += count(cells);
+            return;
+        }
+        CubeCells merged;
+        if (current == null || current.start != start) {
+            // Slot libre ou périmé : la fenêtre fusionnée n'est plus modifiée, ses cellules sont reprises telles quelles
+            merged = cells;
+        } else {
+            merged = current.cells.copy();
+            merged.merge(cells);
+        }
+        buckets.set(slot, new Bucket(start, merged));
+    }
+
+    /**
+     * Comme {@link #record}, seulement si le bucket {@code start} n'existe pas encore (rejeu de l'archive : un bucket déjà
+     * alimenté par le service n'est pas compté deux fois). Renvoie {@code true} si les cellules ont été versées.
+     */
+    boolean recordIfAbsent(long start, CubeCells cells) {
+        Bucket current = buckets.get(slot(start));
+        if (current != null && current.start >= start || IsoTimestamps.isFuture(start * 1000, System.currentTimeMillis())) {
+            return false;
+        }
+        record(start, cells);
+        return true;
+    }
+
+    private int slot(long start) {
+        return (int) Math.floorMod(start / BUCKET_SECONDS, (long) buckets.length());
+    }
+
+    private static long count(CubeCells cells) {
+        long[] total = new long[1];
+        cells.forEach((key, count, latencyCount, latencySum, latencyMax) -> total[0] += count);
+        return total[0];
+    }
+
+    /**
+     * Logs des buckets entre {@code from} et {@code to} (secondes epoch) qui passent {@code filters}
+     * (dimension → valeurs acceptées ; pour le statut, un code ou une classe comme {@code 5xx}),
+     * regroupés selon {@code groupBy} ; les {@code top} groupes les plus fréquents sont renvoyés.
+     *
+     * @throws IllegalArgumentException si une dimension ou une valeur de filtre est invalide
+     */
+    public Map<String, Object> query(long from, long to, Map<String, List<String>> filters, List<String> groupBy, int top) {
+        long started = System.nanoTime();
+        List<Dimension> groups = new ArrayList<>();
+        for (String key : groupBy) {
+            Dimension dimension = Dimension.of(key);
+            if (!groups.contains(dimension)) {
+                groups.add(dimension);
+            }
+        }
+        if (groups.contains(Dimension.STATUS) && groups.contains(Dimension.STATUS_CLASS)) {
+            throw new IllegalArgumentException("status et statusClass ne peuvent pas être regroupés ensemble");
+        }
+        Filter[] accepted = filters.entrySet().stream()
+                .map(filter -> filter(Dimension.of(filter.getKey()), filter.getValue()))
+                .toArray(Filter[]::new);
+        //Clé du groupe : les couloirs des dimensions regroupées, les autres à zéro
+        boolean byStatusClass = groups.contains(Dimension.STATUS_CLASS);
+        long groupMask = groups.stream()
+                .filter(dimension -> dimension != Dimension.STATUS_CLASS)
+                .mapToLong(dimension -> dimension.mask << dimension.shift)
+                .reduce(0, (a, b) -> a | b);
+        //Identifiant de débordement d'un dictionnaire plein : même groupe (autres) que le couloir OTHER
+        List<Dimension> folded = groups.stream()
+                .filter(dimension -> dimension != Dimension.STATUS && dimension != Dimension.STATUS_CLASS)
+                .filter(dimension -> dictionary(dimension).overflowId() != -1)
+                .toList();
+        long[] overflowLanes = folded.stream().mapToLong(dimension -> dimension.lane(dictionary(dimension).overflowId())).toArray();
+        LongPredicate accepts = key -> {
+            for (Filter filter : accepted) {
+                if (!filter.accepts(key)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+
+        long first = bucketStart(from * 1000);
+        Groups rows = new Groups();
+        int scannedBuckets = 0;
+        long scannedCells = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket == null || bucket.start < first || bucket.start > to) {
+                continue;
+            }
+            scannedBuckets++;
+            scannedCells += bucket.cells.size();
+            bucket.cells.forEach(accepts, (key, count, latencyCount, latencySum, latencyMax) -> {
+                long group = key & groupMask;
+                for (int d = 0; d < overflowLanes.length; d++) {
+                    Dimension dimension = folded.get(d);
+                    if ((group & (dimension.mask << dimension.shift)) == overflowLanes[d]) {
+                        group = (group & ~(dimension.mask << dimension.shift)) | dimension.lane(OTHER);
+                    }
+                }
+                if (byStatusClass) {
+                    group |= Dimension.STATUS_CLASS.laneOf(key);
+                }
+                rows.add(group, key, count, latencyCount, latencySum, latencyMax);
+            });
+        }
+
+        long[] total = rows.total();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int slot : rows.top(Math.max(0, Math.min(top, MAX_TOP)))) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            for (Dimension dimension : groups) {
+                item.put(dimension.key, name(dimension, dimension.value(rows.keys[slot])));
+            }
+            summarize(item, rows.rows, slot * Groups.COLUMNS, total[Column.COUNT.ordinal()]);
+            result.add(item);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", first);
+        response.put("to", to);
+        response.put("bucketSeconds", BUCKET_SECONDS);
+        response.put("filters", filters);
+        response.put("groupBy", groups.stream().map(dimension -> dimension.key).toList());
+        response.put("total", summarize(new LinkedHashMap<>(), total, 0, total[Column.COUNT.ordinal()]));
+        response.put("groupCount", rows.size());
+        response.put("groups", result);
+        response.put("scannedBuckets", scannedBuckets);
+        response.put("scannedCells", scannedCells);
+        response.put("tookMicros", (System.nanoTime() - started) / 1000);
+        return response;
+    }
+
+    private enum Column { COUNT, ERRORS_4XX, ERRORS_5XX, LATENCY_COUNT, LATENCY_SUM, LATENCY_MAX }
+
+    private static Map<String, Object> summarize(Map<String, Object> item, long[] rows, int row, long total) {
+        long count = rows[row + Column.COUNT.ordinal()];
+        long latencyCount = rows[row + Column.LATENCY_COUNT.ordinal()];
+        item.put("count", count);
+        item.put("percentage", String.format("%.1f", total > 0 ? count * 100.0 / total : 0));
+        item.put("errors4xx", rows[row + Column.ERRORS_4XX.ordinal()]);
+        item.put("errors5xx", rows[row + Column.ERRORS_5XX.ordinal()]);
+        item.put("errorRatePercent", String.format("%.2f", count > 0 ? rows[row + Column.ERRORS_5XX.ordinal()] * 100.0 / count : 0));
+        item.put("avgLatencyMs", latencyCount > 0 ? rows[row + Column.LATENCY_SUM.ordinal()] / latencyCount : 0);
+        item.put("maxLatencyMs", rows[row + Column.LATENCY_MAX.ordinal()]);
+        return item;
+    }
+
+    /**
+     * Agrégats d'une requête par groupe : table à adressage ouvert, une ligne de {@link #COLUMNS} compteurs
+     * par groupe dans un seul tableau, sans objet par groupe.
+     */
+    private static final class Groups {
+        static final int COLUMNS = Column.values().length;
+        private static final long EMPTY = -1;
+
+        long[] keys = new long[16];
+        long[] rows = new long[16 * COLUMNS];
+        private int size;
+
+        Groups() {
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void add(long group, long cell, long count, long latencyCount, long latencySum, long latencyMax) {
+            int row = slot(group) * COLUMNS;
+            rows[row + Column.COUNT.ordinal()] += count;
+            int statusClass = Dimension.STATUS_CLASS.value(cell);
+            if (statusClass == 4) {
+                rows[row + Column.ERRORS_4XX.ordinal()] += count;
+            } else if (statusClass == 5) {
+                rows[row + Column.ERRORS_5XX.ordinal()] += count;
+            }
+            rows[row + Column.LATENCY_COUNT.ordinal()] += latencyCount;
+            rows[row + Column.LATENCY_SUM.ordinal()] += latencySum;
+            rows[row + Column.LATENCY_MAX.ordinal()] = Math.max(rows[row + Column.LATENCY_MAX.ordinal()], latencyMax);
+        }
+
+        private int slot(long group) {
+            int mask = keys.length - 1;
+            int slot = (int) ((group * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+            while (keys[slot] != group) {
+                if (keys[slot] == EMPTY) {
+                    if ((size + 1) * 4 > keys.length * 3) {
+                        grow();
+                        return slot(group);
+                    }
+                    keys[slot] = group;
+                    size++;
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldRows = rows;
+            keys = new long[oldKeys.length * 2];
+            Arrays.fill(keys, EMPTY);
+            rows = new long[keys.length * COLUMNS];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    System.arraycopy(oldRows, i * COLUMNS, rows, slot(oldKeys[i]) * COLUMNS, COLUMNS);
+                }
+            }
+        }
+
+        /** Somme de tous les groupes. */
+        long[] total() {
+            long[] total = new long[COLUMNS];
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != EMPTY) {
+                    for (int c = 0; c < COLUMNS; c++) {
+                        total[c] = c == Column.LATENCY_MAX.ordinal()
+                                ? Math.max(total[c], rows[i * COLUMNS + c]) : total[c] + rows[i * COLUMNS + c];
+                    }
+                }
+            }
+            return total;
+        }
+
+        /** Emplacements des {@code top} groupes les plus fréquents, du plus fréquent au moins fréquent. */
+        int[] top(int top) {
+            return IntStream.range(0, keys.length)
+                    .filter(i -> keys[i] != EMPTY)
+                    .boxed()
+                    .sorted((a, b) -> Long.compare(rows[b * COLUMNS], rows[a * COLUMNS]))
+                    .limit(top)
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /** Valeurs acceptées pour une dimension ; une valeur inconnue du dictionnaire ne correspond à aucune cellule. */
+    private Filter filter(Dimension dimension, List<String> values) {
+        List<int[]> ranges = new ArrayList<>();
+        for (String value : values) {
+            if (dimension == Dimension.STATUS || dimension == Dimension.STATUS_CLASS) {
+                ranges.add(statusRange(dimension, value));
+            } else {
+                //(autres) : cellules repliées faute de place et clés au-delà de la borne du dictionnaire
+                if (value.equals(KeyDictionary.OTHER)) {
+                    ranges.add(new int[]{OTHER, OTHER});
+                }
+                int id = dictionary(dimension).find(value);
+                if (id != -1) {
+                    ranges.add(new int[]{id, id});
+                }
+            }
+        }
+        //Comparaison directe sur les bits du couloir, sans décoder la valeur de chaque cellule
+        Dimension lane = dimension == Dimension.STATUS_CLASS ? Dimension.STATUS : dimension;
+        long[] lows = new long[ranges.size()];
+        long[] highs = new long[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            lows[i] = lane.lane(ranges.get(i)[0]) >>> lane.shift;
+            highs[i] = lane.lane(ranges.get(i)[1]) >>> lane.shift;
+        }
+        return new Filter(lane.shift, lane.mask, lows, highs);
+    }
+
+    /** Plage de statuts d'une valeur de filtre : {@code 503}, ou une classe ({@code 5xx}, ou {@code 5} pour statusClass). */
+    private static int[] statusRange(Dimension dimension, String value) {
+        try {
+            boolean classOnly = dimension == Dimension.STATUS_CLASS && value.length() == 1;
+            if (classOnly || value.length() == 3 && value.endsWith("xx")) {
+                int statusClass = Integer.parseInt(value.substring(0, 1));
+                return new int[]{statusClass * 100, statusClass * 100 + 99};
+            }
+            int status = Integer.parseInt(value);
+            return new int[]{status, status};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Statut invalide : " + value);
+        }
+    }
+
+    private record Filter(int shift, long mask, long[] lows, long[] highs) {
+        boolean accepts(long key) {
+            long lane = (key >>> shift) & mask;
+            for (int i = 0; i < lows.length; i++) {
+                if (lane >= lows[i] && lane <= highs[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+
+    private KeyDictionary dictionary(Dimension dimension) {
+        return switch (dimension) {
+            case SERVICE -> services;
+            case URL -> urls;
+            case METHOD -> methods;
+            case LEVEL -> levels;
+            default -> throw new IllegalArgumentException("Pas de dictionnaire pour " + dimension.key);
+        };
+    }
+
+    private String name(Dimension dimension, int value) {
+        if (value == ABSENT) {
+            return "(absent)";
+        }
+        if (value == OTHER) {
+            return KeyDictionary.OTHER;
+        }
+        return switch (dimension) {
+            case STATUS -> Integer.toString(value);
+            case STATUS_CLASS -> value + "xx";
+            default -> dictionary(dimension).name(value);
+        };
+    }
+
+    /**
+     * Occupation mémoire : cellules et octets des buckets en rétention, borne par bucket et au total,
+     * logs repliés faute de cellules et logs arrivés après la rétention.
+     */
+    public Map<String, Object> memory() {
+        int used = 0;
+        long cells = 0;
+        long bytes = 0;
+        long folded = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                used++;
+                cells += bucket.cells.size();
+                bytes += bucket.cells.memoryBytes();
+                folded += bucket.cells.folded();
+            }
+        }
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("buckets", used);
+        memory.put("retentionBuckets", buckets.length());
+        memory.put("cells", cells);
+        memory.put("bytes", bytes);
+        memory.put("maxCellsPerBucket", MAX_CELLS);
+        memory.put("maxBytesPerBucket", CubeCells.maxMemoryBytes(MAX_CELLS));
+        memory.put("maxBytes", CubeCells.maxMemoryBytes(MAX_CELLS) * buckets.length());
+        memory.put("foldedLogs", folded);
+        memory.put("lateDroppedLogs", lateDropped);
+        memory.put("futureDroppedLogs", futureDropped);
+        return memory;
+    }
+
+    /** Mémoire des cellules en rétention, en octets. */
+    public long memoryBytes() {
+        long bytes = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket bucket = buckets.get(i);
+            if (bucket != null) {
+                bytes += bucket.cells.memoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private record Bucket(long start, CubeCells cells) {
+    }
+}
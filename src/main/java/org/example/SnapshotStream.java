@@ -0,0 +1,187 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Diffusion des snapshots aux dashboards en Server-Sent Events.
+ *
+ * <ul>
+ *   <li>Chaque snapshot est sérialisé une seule fois, en entier ({@code snapshot}, le JSON déjà servi par /stats)
+ *       et en différence avec le précédent ({@code delta}, patch JSON à la RFC 7386 : seules les valeurs modifiées,
+ *       jusque dans les sous-objets comme le détail par URL ; {@code null} pour une clé supprimée), puis partagé par tous
+ *       les abonnés.</li>
+ *   <li>Un abonné reçoit le delta s'il a reçu le snapshot précédent, sinon le snapshot complet.</li>
+ *   <li>Contre-pression : chaque abonné n'a qu'une case d'attente. Si l'envoi précédent n'est pas fini,
+ *       le nouveau snapshot remplace celui en attente ; un navigateur bloqué ne fait donc pas grossir
+ *       la mémoire, et il est déconnecté après {@link #MAX_SKIPPED} snapshots sautés d'affilée.</li>
+ *   <li>Isolation : l'écriture servlet est bloquante, chaque abonné en cours d'envoi occupe donc son propre thread
+ *       (pool sans borne de threads, un au plus par abonné) ; un navigateur qui ne lit plus ne bloque que lui-même.
+ *       Un envoi en cours depuis plus de {@link #WRITE_TIMEOUT_MS} ms déconnecte l'abonné ; son thread d'envoi reste pris
+ *       jusqu'au délai d'écriture du connecteur, sans retarder les autres abonnés.</li>
+ * </ul>
+ */
+public final class SnapshotStream {
+    private static final ThrottledLog log = new ThrottledLog(SnapshotStream.class, 20);
+    static final int MAX_SKIPPED = 12;
+    static final long WRITE_TIMEOUT_MS = 10_000;
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    // Un thread par abonné en cours d'envoi au plus (drain n'est jamais lancé deux fois pour un même abonné)
+    private final ExecutorService senders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "snapshot-stream");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Frame latest;
+    // Écrit uniquement par publish(), appelé par l'epoch closer
+    private Map<String, Object> previous = Map.of();
+    private long sequence;
+
+    /** Trame sérialisée une fois par epoch et partagée par tous les abonnés. */
+    private record Frame(long sequence, String full, String delta) {
+    }
+
+    /** Publie un snapshot à tous les abonnés ; son JSON complet est réutilisé tel quel. */
+    public void publish(JsonSnapshot snapshot) {
+        Frame frame;
+        try {
+            frame = new Frame(++sequence, new String(snapshot.json(), StandardCharsets.UTF_8),
+                    mapper.writeValueAsString(delta(previous, snapshot.data())));
+        } catch (JsonProcessingException e) {
+            log.error("❌ Erreur de sérialisation du snapshot : {}", e.getMessage());
+            return;
+        }
+        previous = snapshot.data();
+        latest = frame;
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    /** Nouvel abonné : il reçoit tout de suite le dernier snapshot complet, puis les deltas. */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        Frame frame = latest;
+        if (frame != null) {
+            subscriber.offer(frame);
+        }
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Patch JSON (RFC 7386) qui transforme {@code before} en {@code after} : valeurs ajoutées ou modifiées, {@code null}
+     * pour une clé supprimée, et pour un sous-objet présent des deux côtés, son propre patch (omis s'il est vide).
+     * Les listes et les valeurs simples sont remplacées en entier.
+     */
+    static Map<String, Object> delta(Map<?, ?> before, Map<?, ?> after) {
+        Map<String, Object> patch = new LinkedHashMap<>();
+        after.forEach((key, value) -> {
+            Object old = before.get(key);
+            if (value instanceof Map<?, ?> next && old instanceof Map<?, ?> previous) {
+                Map<String, Object> nested = delta(previous, next);
+                if (!nested.isEmpty()) {
+                    patch.put(key.toString(), nested);
+                }
+            } else if (!Objects.equals(old, value)) {
+                patch.put(key.toString(), value);
+            }
+        });
+        for (Object key : before.keySet()) {
+            if (!after.containsKey(key)) {
+                patch.put(key.toString(), null);
+            }
+        }
+        return patch;
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // Case d'attente unique : le dernier snapshot pas encore envoyé
+        private final AtomicReference<Frame> pending = new AtomicReference<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Modifiés uniquement par le thread qui tient draining
+        private long lastSent = -1;
+        private volatile int skipped;
+        // Début de l'envoi en cours (System.nanoTime()), 0 si aucun
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Frame frame) {
+            long since = sendingSince;
+            if (since != 0 && System.nanoTime() - since > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MS)) {
+                // Écriture bloquée : le thread d'envoi reste pris jusqu'au timeout de la socket, mais l'abonné est retiré
+                subscribers.remove(this);
+                emitter.completeWithError(new IOException("Écriture SSE bloquée depuis plus de " + WRITE_TIMEOUT_MS + " ms"));
+                return;
+            }
+            if (pending.getAndSet(frame) != null && ++skipped > MAX_SKIPPED) {
+                // Abonné trop lent : on le coupe, EventSource se reconnectera et repartira d'un snapshot complet
+                subscribers.remove(this);
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Frame frame;
+                while ((frame = pending.getAndSet(null)) != null) {
+                    boolean incremental = lastSent == frame.sequence() - 1;
+                    sendingSince = System.nanoTime();
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(frame.sequence()))
+                            .name(incremental ? "delta" : "snapshot")
+                            .data(incremental ? frame.delta() : frame.full(), MediaType.APPLICATION_JSON));
+                    sendingSince = 0;
+                    lastSent = frame.sequence();
+                    skipped = 0;
+                }
+            } catch (IOException | IllegalStateException e) {
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                sendingSince = 0;
+                draining.set(false);
+            }
+            // Un snapshot a pu arriver entre la dernière lecture et la libération de draining
+            if (pending.get() != null && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+}
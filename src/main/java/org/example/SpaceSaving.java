@@ -0,0 +1,257 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Algorithme Space-Saving (Metwally et al.) : suit les clés les plus fréquentes d'un flux avec
+ * {@code capacity} compteurs seulement. Une clé non suivie remplace la clé de plus petit compteur
+ * et hérite de sa valeur comme erreur. Pour chaque clé suivie, {@code count − error ≤ vrai ≤ count},
+ * et toute clé de fréquence supérieure à N / capacity est forcément suivie.
+ *
+ * Une clé non suivie dont on sait déjà qu'elle ne dépasse pas le plus petit compteur (estimation
+ * Count-Min, voir {@link #admits}) peut être ignorée : l'invariant « clé non suivie ≤ plus petit compteur »
+ * reste vrai, et la longue traîne ne provoque plus d'éviction.
+ *
+ * Les clés sont identifiées par une empreinte 64 bits ; leur nom n'est fourni qu'à l'insertion.
+ * Non thread-safe : une instance par worker, fusionnées par l'epoch closer via {@link #merge}.
+ */
+public final class SpaceSaving {
+    private final int capacity;
+    private final long[] hashes;
+    private final long[] counts;
+    private final long[] errors;
+    private final String[] keys;
+    private int size;
+    // Borne basse du plus petit compteur : les compteurs ne font que croître, elle reste valide entre deux évictions
+    private long minBound;
+
+    // Index à adressage ouvert : empreinte → indice du compteur + 1 (0 = vide)
+    private final int[] index;
+    private final int indexMask;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.hashes = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.keys = new String[capacity];
+        int indexSize = Integer.highestOneBit(Math.max(2, capacity * 4 - 1)) << 1;
+        this.index = new int[indexSize];
+        this.indexMask = indexSize - 1;
+    }
+
+    /** Ajoute {@code count} à la clé si elle est suivie ; renvoie {@code false} sinon (appeler alors {@link #insert}). */
+    public boolean increment(long hash, long count) {
+        int i = find(hash);
+        if (i < 0) {
+            return false;
+        }
+        counts[i] += count;
+        return true;
+    }
+
+    /** {@code true} si une clé non suivie d'au plus {@code upperBound} occurrences doit être insérée. */
+    public boolean admits(long upperBound) {
+        return size < capacity || upperBound > minBound;
+    }
+
+    /** Ajoute une clé non suivie, en évinçant si besoin la clé de plus petit compteur. */
+    public void insert(long hash, String key, long count) {
+        if (size < capacity) {
+            put(size, hash, key, count, 0);
+            size++;
+            return;
+        }
+        int min = minIndex();
+        long minCount = counts[min];
+        remove(hashes[min]);
+        put(min, hash, key, minCount + count, minCount);
+        minBound = minCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Plus petit compteur si la structure est pleine, 0 sinon : borne de la fréquence d'une clé non suivie. */
+    public long minCount() {
+        return size < capacity ? 0 : counts[minIndex()];
+    }
+
+    public String key(int i) {
+        return keys[i];
+    }
+
+    public long count(int i) {
+        return counts[i];
+    }
+
+    public long error(int i) {
+        return errors[i];
+    }
+
+    public long hash(int i) {
+        return hashes[i];
+    }
+
+    /** Indices des compteurs, du plus grand au plus petit. */
+    public int[] ranking() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        int[] ranking = new int[size];
+        for (int i = 0; i < size; i++) {
+            ranking[i] = order[i];
+        }
+        return ranking;
+    }
+
+    /**
+     * Fusionne {@code other} (résumés fusionnables, Agarwal et al.) : une clé absente d'un résumé plein
+     * y compte pour son plus petit compteur, au titre de l'erreur ; on garde ensuite les {@code capacity} plus grands.
+     */
+    public void merge(SpaceSaving other) {
+        long minHere = minCount();
+        long minOther = other.minCount();
+        int total = size + other.size;
+        long[] mergedHashes = new long[total];
+        long[] mergedCounts = new long[total];
+        long[] mergedErrors = new long[total];
+        String[] mergedKeys = new String[total];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int j = other.find(hashes[i]);
+            mergedHashes[n] = hashes[i];
+            mergedKeys[n] = keys[i];
+            mergedCounts[n] = counts[i] + (j >= 0 ? other.counts[j] : minOther);
+            mergedErrors[n] = errors[i] + (j >= 0 ? other.errors[j] : minOther);
+            n++;
+        }
+        for (int j = 0; j < other.size; j++) {
+            if (find(other.hashes[j]) < 0) {
+                mergedHashes[n] = other.hashes[j];
+                mergedKeys[n] = other.keys[j];
+                mergedCounts[n] = other.counts[j] + minHere;
+                mergedErrors[n] = other.errors[j] + minHere;
+                n++;
+            }
+        }
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(mergedCounts[b], mergedCounts[a]));
+        reset();
+        for (int r = 0; r < Math.min(n, capacity); r++) {
+            int i = order[r];
+            put(size++, mergedHashes[i], mergedKeys[i], mergedCounts[i], mergedErrors[i]);
+        }
+        minBound = minCount();
+    }
+
+    public void reset() {
+        Arrays.fill(index, 0);
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+        minBound = 0;
+    }
+
+    int checkpointBytes() {
+        int bytes = Integer.BYTES;
+        for (int i = 0; i < size; i++) {
+            bytes += 3 * Long.BYTES + Checkpoint.stringBytes(keys[i]);
+        }
+        return bytes;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        for (int i = 0; i < size; i++) {
+            out.putLong(hashes[i]).putLong(counts[i]).putLong(errors[i]);
+            Checkpoint.putString(out, keys[i]);
+        }
+    }
+
+    /** Remplace les compteurs par ceux écrits par {@link #writeTo}. */
+    void readFrom(ByteBuffer in) {
+        int storedSize = in.getInt();
+        if (storedSize > capacity) {
+            throw new IllegalStateException("Top-K de " + storedSize + " clés incompatible avec une capacité de " + capacity);
+        }
+        reset();
+        for (int i = 0; i < storedSize; i++) {
+            long hash = in.getLong();
+            long count = in.getLong();
+            long error = in.getLong();
+            put(size++, hash, Checkpoint.getString(in), count, error);
+        }
+        minBound = minCount();
+    }
+
+    public long memoryBytes() {
+        return (long) capacity * (3 * Long.BYTES + 8) + (long) index.length * Integer.BYTES;
+    }
+
+    private void put(int i, long hash, String key, long count, long error) {
+        hashes[i] = hash;
+        keys[i] = key;
+        counts[i] = count;
+        errors[i] = error;
+        int slot = (int) (hash ^ (hash >>> 32)) & indexMask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index[slot] = i + 1;
+    }
+
+    private int find(long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & indexMask;
+        int entry;
+        while ((entry = index[slot]) != 0) {
+            if (hashes[entry - 1] == hash) {
+                return entry - 1;
+            }
+            slot = (slot + 1) & indexMask;
+        }
+        return -1;
+    }
+
+    /** Retire l'empreinte de l'index (suppression par décalage arrière, sans marqueur). */
+    private void remove(long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & indexMask;
+        while (hashes[index[slot] - 1] != hash) {
+            slot = (slot + 1) & indexMask;
+        }
+        int hole = slot;
+        int next = (hole + 1) & indexMask;
+        while (index[next] != 0) {
+            long h = hashes[index[next] - 1];
+            int home = (int) (h ^ (h >>> 32)) & indexMask;
+            // L'entrée peut combler le trou si sa position d'origine n'est pas entre le trou et elle
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+            next = (next + 1) & indexMask;
+        }
+        index[hole] = 0;
+    }
+
+    private int minIndex() {
+        int min = 0;
+        for (int i = 1; i < size; i++) {
+            if (counts[i] < counts[min]) {
+                min = i;
+            }
+        }
+        return min;
+    }
+}
@@ -1,10 +1,20 @@
 package org.example;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,61 +22,165 @@ import java.util.Map;
 @RestController
 @CrossOrigin(origins = "*")
 public class StatsController {
+    private final KafkaLogAnalyserService analyser;
 
+    public StatsController(KafkaLogAnalyserService analyser) {
+        this.analyser = analyser;
+    }
+
+    /** Snapshot de la dernière epoch, déjà sérialisé ; 304 si le client a déjà cette version. */
     @GetMapping("/stats")
-    public Map<String, Object> getStats() {
+    public ResponseEntity<byte[]> getStats(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return KafkaLogAnalyserService.latestStats.toResponse(ifNoneMatch);
+    }
 
-        return KafkaLogAnalyserService.latestStatsSnapshot;
+    /**
+     * Flux SSE des snapshots : un événement {@code snapshot} complet à la connexion, puis un {@code delta}
+     * (clés modifiées / supprimées) à chaque epoch. Remplace l'interrogation périodique de /stats.
+     */
+    @GetMapping(path = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStats() {
+        return KafkaLogAnalyserService.snapshotStream.subscribe();
     }
 
+    /**
+     * Séries temporelles entre {@code from} et {@code to} (secondes epoch), par pas de {@code step} secondes.
+     * Par défaut : les 10 dernières minutes par pas de 10 s. {@code from} est ramené à la rétention (48 h) ;
+     * 400 si {@code step} la dépasse.
+     */
     @GetMapping("/statsHistory")
-    public List<Map<String, Object>> getStatsHistory() {
-        synchronized (KafkaLogAnalyserService.statsHistory) {
-            return new ArrayList<>(KafkaLogAnalyserService.statsHistory);
+    public Map<String, Object> getStatsHistory(@RequestParam(required = false) Long from,
+                                               @RequestParam(required = false) Long to,
+                                               @RequestParam(defaultValue = "10") long step) {
+        TimeSeriesStore timeSeries = KafkaLogAnalyserService.timeSeries;
+        long retention = timeSeries.retentionSeconds();
+        if (step < 1 || step > retention) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "step doit être entre 1 et " + retention + " s");
+        }
+        long end = to != null ? to : System.currentTimeMillis() / 1000;
+        //Rien n'est gardé au-delà de la rétention : from est ramené à son début
+        long start = Math.max(from != null ? from : end - 600, end - retention);
+        if (start > end) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from doit précéder to");
         }
+        return timeSeries.query(start, end, step);
     }
+    /**
+     * Dernières fenêtres calculées sur l'heure des logs ({@code type} = tumbling ou sliding),
+     * avec le watermark courant et les compteurs de logs en retard.
+     */
+    @GetMapping("/windows")
+    public Map<String, Object> getWindows(@RequestParam(defaultValue = "tumbling") String type) {
+        Map<String, Object> view = KafkaLogAnalyserService.eventTimeWindows.view(type);
+        if (view == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Fenêtre inconnue : " + type);
+        }
+        return view;
+    }
+
+    /**
+     * Requête ad hoc sur le cube pré-agrégé, entre {@code from} et {@code to} (secondes epoch, par défaut les 10 dernières minutes).
+     * Filtres facultatifs {@code service}, {@code url}, {@code method}, {@code level}, {@code status} (ex. {@code 503} ou {@code 5xx}),
+     * valeurs séparées par des virgules ; {@code groupBy} parmi ces dimensions et {@code statusClass} ; les {@code top} groupes
+     * les plus fréquents. Ex. taux de 5xx de POST /pay du service payment : {@code /rollup?service=payment&method=POST&url=/pay}.
+     */
+    @GetMapping("/rollup")
+    public Map<String, Object> getRollup(@RequestParam(required = false) Long from,
+                                         @RequestParam(required = false) Long to,
+                                         @RequestParam(required = false) String service,
+                                         @RequestParam(required = false) String url,
+                                         @RequestParam(required = false) String method,
+                                         @RequestParam(required = false) String level,
+                                         @RequestParam(required = false) String status,
+                                         @RequestParam(defaultValue = "") String groupBy,
+                                         @RequestParam(defaultValue = "20") int top) {
+        long end = to != null ? to : System.currentTimeMillis() / 1000;
+        long start = from != null ? from : end - 600;
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        addFilter(filters, "service", service);
+        addFilter(filters, "url", url);
+        addFilter(filters, "method", method);
+        addFilter(filters, "level", level);
+        addFilter(filters, "status", status);
+        try {
+            Map<String, Object> result = KafkaLogAnalyserService.rollups.query(start, end, filters, split(groupBy), top);
+            result.put("memory", KafkaLogAnalyserService.rollups.memory());
+            return result;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    private static void addFilter(Map<String, List<String>> filters, String dimension, String values) {
+        if (values != null && !values.isBlank()) {
+            filters.put(dimension, split(values));
+        }
+    }
+
+    private static List<String> split(String values) {
+        return Arrays.stream(values.split(",")).map(String::trim).filter(value -> !value.isEmpty()).toList();
+    }
+
+    /**
+     * Alertes de la détection d'anomalies : clés en alerte ({@code active}) et dernières transitions
+     * ({@code recent}, FIRING ou RESOLVED), mises à jour à chaque epoch. Poussées aussi dans /stats/stream (clé {@code alerts}).
+     */
+    @GetMapping("/alerts")
+    public ResponseEntity<byte[]> getAlerts(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return KafkaLogAnalyserService.alerts.toResponse(ifNoneMatch);
+    }
+
+    /**
+     * Rejeu de l'archive locale entre {@code from} et {@code to} (secondes epoch, par défaut la dernière heure), pour une
+     * seule {@code url} si précisée : compteurs, latences et top-K recalculés depuis les logs archivés, avec le débit de lecture.
+     * Lecture seule ; pour compléter l'historique, voir {@link #backfill}.
+     */
+    @GetMapping("/replay")
+    public Map<String, Object> replay(@RequestParam(required = false) Long from,
+                                      @RequestParam(required = false) Long to,
+                                      @RequestParam(required = false) String url) {
+        return replay(from, to, url == null || url.isBlank() ? null : url, false);
+    }
+
+    /**
+     * Même rejeu (toutes URLs), dont les secondes et buckets absents de /statsHistory et /rollup y sont versés
+     * (périodes manquées par le service) ; ceux déjà présents ne sont pas recomptés, la requête peut donc être rejouée.
+     */
+    @PostMapping("/replay/backfill")
+    public Map<String, Object> backfill(@RequestParam(required = false) Long from,
+                                        @RequestParam(required = false) Long to) {
+        return replay(from, to, null, true);
+    }
+
+    private Map<String, Object> replay(Long from, Long to, String url, boolean backfill) {
+        long end = to != null ? to : System.currentTimeMillis() / 1000;
+        long start = from != null ? from : end - 3600;
+        if (start >= end) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from doit précéder to");
+        }
+        try {
+            return analyser.replay(start * 1000, end * 1000, url, backfill);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Archive illisible : " + e.getMessage());
+        }
+    }
+
     @GetMapping("/statsCumulative")
-    public Map<String, Object> getCumulativeStats() {
-        Map<String, Object> stats = new LinkedHashMap<>();
-        long total = KafkaLogAnalyserService.totalLogsCumulative.get();
-        long count2xx = KafkaLogAnalyserService.success2xxCumulative.get();
-        long count4xx = KafkaLogAnalyserService.error4xxCumulative.get();
-        long count5xx = KafkaLogAnalyserService.error5xxCumulative.get();
-        stats.put("totalProcessedLogs", total);
-        stats.put("success2xx", count2xx);
-        stats.put("errors4xx", count4xx);
-        stats.put("errors5xx", count5xx);
-        double errorRate = total > 0 ? (count5xx * 100.0) / total : 0;
-        stats.put("errorRatePercent", String.format("%.2f", errorRate));
-        Map<String, Object> urlStats = new LinkedHashMap<>();
-        KafkaLogAnalyserService.urlCountMapCumulative.forEach((url, count) -> {
-            double percentage = total > 0 ? (count.get() * 100.0) / total : 0;
-            Map<String, Object> details = new LinkedHashMap<>();
-            details.put("count", count.get());
-            details.put("percentage", String.format("%.1f", percentage));
-            urlStats.put(url, details);
-        });
-        Map<String, Object> urls4xx = new LinkedHashMap<>();
-        KafkaLogAnalyserService.error4xxUrlsCumulative.forEach((url, count) -> {
-            urls4xx.put(url, count.get());
-        });
-        stats.put("urls4xx", urls4xx);
-        Map<String, Object> urls5xx = new LinkedHashMap<>();
-        KafkaLogAnalyserService.error5xxUrlsCumulative.forEach((url, count) -> {
-            urls5xx.put(url, count.get());
-        });
-        stats.put("urls5xx", urls5xx);
-        stats.put("urlStats", urlStats);
-        return stats;
+    public ResponseEntity<byte[]> getCumulativeStats(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return KafkaLogAnalyserService.cumulativeStats.toResponse(ifNoneMatch);
     }
 
+    /**
+     * État réel du pipeline : UP tant que le service tourne et qu'aucun de ses threads (collecteur, workers,
+     * consumers, epoch closer) n'est bloqué ; sinon DOWN, avec un statut 503. Métriques détaillées : /actuator/prometheus.
+     */
     @GetMapping("/health")
-    public Map<String, Object> getHealth() {
-        return Map.of(
-                "status", "UP",
-                "kafkaService", "RUNNING",
-                "totalLogs", KafkaLogAnalyserService.totalProcessedLogs.get()
-        );
+    public ResponseEntity<Map<String, Object>> getHealth() {
+        Map<String, Object> health = KafkaLogAnalyserService.metrics.health(KafkaLogAnalyserService.cumulativeCounts.getTotalLogs());
+        return ResponseEntity.status("UP".equals(health.get("status")) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(health);
     }
 
 }
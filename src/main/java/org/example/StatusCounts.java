@@ -0,0 +1,155 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compteurs par classe de statut HTTP et par URL. Les compteurs par URL sont des cellules d'un
+ * {@code long[]} indexé par l'identifiant dense de l'URL ({@link KeyDictionary}) : enregistrer un log
+ * coûte quelques incréments de tableau, sans hachage ni objet créé.
+ *
+ * Non thread-safe : toujours possédé par un seul thread (un worker, puis l'epoch closer après la remise).
+ * Une même classe sert aux fenêtres des workers, aux cumuls et aux buckets event time.
+ */
+public class StatusCounts {
+    // Colonnes d'une URL dans cells
+    static final int REQUESTS = 0;
+    static final int ERRORS_4XX = 1;
+    static final int ERRORS_5XX = 2;
+    private static final int COLUMNS = 3;
+    private static final int INITIAL_URLS = 16;
+
+    long totalLogs;
+    long success2xx;
+    long error4xx;
+    long error5xx;
+
+    private long[] cells = new long[INITIAL_URLS * COLUMNS];
+
+    public void record(int urlId, int status) {
+        int base = urlId * COLUMNS;
+        if (base >= cells.length) {
+            grow(urlId + 1);
+        }
+        cells[base + REQUESTS]++;
+        //Classement selon le statut HTTP
+        if (status >= 500 && status < 600) {
+            error5xx++;
+            cells[base + ERRORS_5XX]++;
+        } else if (status >= 400 && status < 500) {
+            error4xx++;
+            cells[base + ERRORS_4XX]++;
+        } else if (status >= 200 && status < 300) {
+            success2xx++;
+        }
+        totalLogs++;
+    }
+
+    /** Ajoute les compteurs de {@code other} à ceux-ci. */
+    public void mergeCounts(StatusCounts other) {
+        totalLogs += other.totalLogs;
+        success2xx += other.success2xx;
+        error4xx += other.error4xx;
+        error5xx += other.error5xx;
+        long[] source = other.cells;
+        if (source.length > cells.length) {
+            cells = Arrays.copyOf(cells, source.length);
+        }
+        for (int i = 0; i < source.length; i++) {
+            cells[i] += source[i];
+        }
+    }
+
+    /** Valeur de la colonne {@code column} (REQUESTS, ERRORS_4XX, ERRORS_5XX) pour l'URL {@code urlId}. */
+    public long count(int urlId, int column) {
+        int i = urlId * COLUMNS + column;
+        return i < cells.length ? cells[i] : 0;
+    }
+
+    /** Borne (exclue) des identifiants d'URL pouvant avoir un compteur non nul. */
+    public int urlLimit() {
+        return cells.length / COLUMNS;
+    }
+
+    /** Compteurs non nuls d'une colonne par nom d'URL, du plus grand au plus petit. */
+    public Map<String, Long> byUrl(int column, KeyDictionary urls) {
+        int limit = Math.min(urlLimit(), urls.size());
+        Integer[] ids = new Integer[limit];
+        int n = 0;
+        for (int id = 0; id < limit; id++) {
+            if (count(id, column) > 0) {
+                ids[n++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, n, (a, b) -> Long.compare(count(b, column), count(a, column)));
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            result.put(urls.name(ids[i]), count(ids[i], column));
+        }
+        return result;
+    }
+
+    /** Copie indépendante, publiable telle quelle aux lecteurs d'autres threads. */
+    public StatusCounts copy() {
+        StatusCounts copy = new StatusCounts();
+        copy.mergeCounts(this);
+        return copy;
+    }
+
+    /** Remet les compteurs à zéro en gardant les cellules déjà allouées. */
+    public void reset() {
+        totalLogs = 0;
+        success2xx = 0;
+        error4xx = 0;
+        error5xx = 0;
+        Arrays.fill(cells, 0);
+    }
+
+    public boolean isEmpty() {
+        return totalLogs == 0;
+    }
+
+    public long getTotalLogs() {
+        return totalLogs;
+    }
+
+    public long getSuccess2xx() {
+        return success2xx;
+    }
+
+    public long getError4xx() {
+        return error4xx;
+    }
+
+    public long getError5xx() {
+        return error5xx;
+    }
+
+    int checkpointBytes() {
+        return 4 * Long.BYTES + Integer.BYTES + cells.length * Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putLong(totalLogs).putLong(success2xx).putLong(error4xx).putLong(error5xx);
+        out.putInt(cells.length);
+        out.asLongBuffer().put(cells);
+        out.position(out.position() + cells.length * Long.BYTES);
+    }
+
+    /** Remplace les compteurs par ceux écrits par {@link #writeTo}. */
+    void readFrom(ByteBuffer in) {
+        totalLogs = in.getLong();
+        success2xx = in.getLong();
+        error4xx = in.getLong();
+        error5xx = in.getLong();
+        cells = new long[in.getInt()];
+        in.asLongBuffer().get(cells);
+        in.position(in.position() + cells.length * Long.BYTES);
+    }
+
+    private void grow(int urls) {
+        cells = Arrays.copyOf(cells, Math.max(urls, urlLimit() * 2) * COLUMNS);
+    }
+}
@@ -0,0 +1,270 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Extracteur JSON en un seul passage, directement sur les octets UTF-8 du log.
+ * Il ne construit ni arbre ni Map : les chaînes sont repérées par leur position dans le tableau source,
+ * les nombres sont décodés à la volée, et la lecture s'arrête dès que tous les champs demandés sont trouvés.
+ * Seul un objet JSON au premier niveau est attendu ; les valeurs imbriquées des autres clés sont ignorées.
+ */
+public final class StreamingLogFieldExtractor implements LogFieldExtractor {
+    private final LogField[] fields;
+    private final int wantedMask;
+
+    public StreamingLogFieldExtractor(Set<LogField> fields) {
+        this.fields = EnumSet.copyOf(fields).toArray(new LogField[0]);
+        int mask = 0;
+        for (LogField field : this.fields) {
+            mask |= 1 << field.ordinal();
+        }
+        this.wantedMask = mask;
+    }
+
+    @Override
+    public boolean extract(byte[] data, int offset, int length, LogFields out) {
+        out.reset(data);
+        Cursor c = new Cursor(data, offset, offset + length);
+        try {
+            c.skipWhitespace();
+            c.expect('{');
+            c.skipWhitespace();
+            if (c.peek() == '}') {
+                return true;
+            }
+            int found = 0;
+            while (true) {
+                c.skipWhitespace();
+                c.expect('"');
+                int keyStart = c.pos;
+                int keyEnd = c.skipStringBody();
+                c.skipWhitespace();
+                c.expect(':');
+                c.skipWhitespace();
+
+                LogField field = match(data, keyStart, keyEnd - keyStart);
+                if (field == null) {
+                    c.skipValue();
+                } else {
+                    readValue(c, field, out);
+                    found |= 1 << field.ordinal();
+                    if (found == wantedMask) {
+                        return true;
+                    }
+                }
+
+                c.skipWhitespace();
+                byte b = c.next();
+                if (b == '}') {
+                    return true;
+                }
+                if (b != ',') {
+                    return false;
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private LogField match(byte[] data, int start, int length) {
+        for (LogField field : fields) {
+            byte[] key = field.keyBytes();
+            if (key.length == length && java.util.Arrays.equals(key, 0, length, data, start, start + length)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static void readValue(Cursor c, LogField field, LogFields out) {
+        if (field.isNumeric()) {
+            // Accepte aussi un nombre entre guillemets ("status": "500")
+            boolean quoted = c.peek() == '"';
+            if (quoted) {
+                c.pos++;
+            }
+            out.setNumber(field, c.readLong());
+            if (quoted) {
+                c.skipStringBody();
+            } else {
+                c.skipNumberTail();
+            }
+        } else if (field.isTimestamp()) {
+            if (c.peek() != '"') {
+                c.skipValue();
+                return;
+            }
+            c.pos++;
+            int start = c.pos;
+            long millis = IsoTimestamps.parse(c.data, start, c.skipStringBody());
+            if (millis != IsoTimestamps.INVALID) {
+                out.setNumber(field, millis);
+            }
+        } else {
+            if (c.peek() != '"') {
+                c.skipValue();
+                return;
+            }
+            c.pos++;
+            int start = c.pos;
+            int end = c.skipStringBody();
+            if (c.sawEscape) {
+                out.setText(field, unescape(c.data, start, end));
+            } else {
+                out.setRange(field, start, end - start);
+            }
+        }
+    }
+
+    /** Cas rare (séquences \" \\ \\uXXXX...) : on délègue le décodage à une vraie chaîne. */
+    private static String unescape(byte[] data, int start, int end) {
+        String raw = new String(data, start, end - start, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char ch = raw.charAt(i);
+            if (ch != '\\') {
+                sb.append(ch);
+                continue;
+            }
+            char esc = raw.charAt(++i);
+            switch (esc) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    sb.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                    i += 4;
+                }
+                default -> sb.append(esc);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Position de lecture ; allouée par appel mais éliminée par l'escape analysis du JIT. */
+    private static final class Cursor {
+        final byte[] data;
+        final int end;
+        int pos;
+        boolean sawEscape;
+
+        Cursor(byte[] data, int pos, int end) {
+            this.data = data;
+            this.pos = pos;
+            this.end = end;
+        }
+
+        byte peek() {
+            if (pos >= end) {
+                throw new IllegalStateException("fin du log");
+            }
+            return data[pos];
+        }
+
+        byte next() {
+            byte b = peek();
+            pos++;
+            return b;
+        }
+
+        void expect(char ch) {
+            if (next() != ch) {
+                throw new IllegalStateException("attendu " + ch);
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < end) {
+                byte b = data[pos];
+                if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        /** Avance jusqu'après le guillemet fermant et renvoie la position de ce guillemet. */
+        int skipStringBody() {
+            sawEscape = false;
+            while (true) {
+                byte b = next();
+                if (b == '"') {
+                    return pos - 1;
+                }
+                if (b == '\\') {
+                    sawEscape = true;
+                    pos++;
+                }
+            }
+        }
+
+        long readLong() {
+            boolean negative = peek() == '-';
+            if (negative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < end && data[pos] >= '0' && data[pos] <= '9') {
+                value = value * 10 + (data[pos++] - '0');
+                digits++;
+            }
+            if (digits == 0) {
+                throw new IllegalStateException("nombre attendu");
+            }
+            return negative ? -value : value;
+        }
+
+        /** Ignore la partie décimale / exposant d'un nombre déjà lu. */
+        void skipNumberTail() {
+            while (pos < end) {
+                byte b = data[pos];
+                if ((b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        void skipValue() {
+            byte b = peek();
+            switch (b) {
+                case '"' -> {
+                    pos++;
+                    skipStringBody();
+                }
+                case '{', '[' -> skipContainer();
+                default -> {
+                    // nombre, true, false, null
+                    while (pos < end) {
+                        byte c = data[pos];
+                        if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                            return;
+                        }
+                        pos++;
+                    }
+                }
+            }
+        }
+
+        private void skipContainer() {
+            int depth = 0;
+            do {
+                byte b = next();
+                if (b == '"') {
+                    skipStringBody();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Journal des chemins chauds (par batch, par log) : au plus {@code permitsPerSecond} messages par seconde,
+ * tous niveaux confondus. Les messages au-delà sont comptés, et leur nombre est ajouté au message suivant.
+ * Tester {@code isDebugEnabled()} / {@code isTraceEnabled()} avant d'appeler évite même la construction des arguments.
+ */
+final class ThrottledLog {
+    private final Logger logger;
+    private final int permitsPerSecond;
+    private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger used = new AtomicInteger();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    ThrottledLog(Class<?> owner, int permitsPerSecond) {
+        this.logger = LoggerFactory.getLogger(owner);
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    boolean isTraceEnabled() {
+        return logger.isTraceEnabled();
+    }
+
+    boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    void trace(String format, Object... args) {
+        if (logger.isTraceEnabled() && acquire()) {
+            logger.trace(withSuppressed(format), args);
+        }
+    }
+
+    void debug(String format, Object... args) {
+        if (logger.isDebugEnabled() && acquire()) {
+            logger.debug(withSuppressed(format), args);
+        }
+    }
+
+    void info(String format, Object... args) {
+        if (logger.isInfoEnabled() && acquire()) {
+            logger.info(withSuppressed(format), args);
+        }
+    }
+
+    void warn(String format, Object... args) {
+        if (logger.isWarnEnabled() && acquire()) {
+            logger.warn(withSuppressed(format), args);
+        }
+    }
+
+    void error(String format, Object... args) {
+        if (logger.isErrorEnabled() && acquire()) {
+            logger.error(withSuppressed(format), args);
+        }
+    }
+
+    private boolean acquire() {
+        long now = System.nanoTime() / 1_000_000_000L;
+        long current = second.get();
+        if (now != current && second.compareAndSet(current, now)) {
+            used.set(0);
+        }
+        if (used.incrementAndGet() <= permitsPerSecond) {
+            return true;
+        }
+        suppressed.incrementAndGet();
+        return false;
+    }
+
+    private String withSuppressed(String format) {
+        long skipped = suppressed.getAndSet(0);
+        return skipped == 0 ? format : format + " (" + skipped + " messages ignorés)";
+    }
+}
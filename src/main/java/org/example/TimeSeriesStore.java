@@ -0,0 +1,314 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Historique des compteurs en colonnes de {@code long[]}, stocké dans deux anneaux de taille fixe :
+ * un bucket par seconde (2 h) et un bucket par minute (48 h). Chaque colonne est un compteur
+ * (total, 2xx, 4xx, 5xx, puis une colonne par URL suivie), la mémoire ne dépend donc pas du trafic.
+ *
+ * Les logs sont rangés à la seconde de leur propre heure (event time), y compris les retardataires ; une seconde
+ * trop loin dans le futur ({@link IsoTimestamps#MAX_FUTURE_SKEW_MS}) est refusée.
+ * Un seul écrivain (l'epoch closer) ; les lectures REST sont optimistes via {@link StampedLock}
+ * et ne bloquent jamais l'écrivain.
+ */
+public final class TimeSeriesStore {
+    private static final int TOTAL = 0;
+    private static final int SUCCESS_2XX = 1;
+    private static final int ERRORS_4XX = 2;
+    private static final int ERRORS_5XX = 3;
+    private static final int FIXED_COLUMNS = 4;
+    // Nombre maximum de points renvoyés par une requête
+    static final int MAX_POINTS = 2000;
+
+    private final KeyDictionary urlDictionary;
+    private final int maxUrls;
+    // Identifiant d'URL du dictionnaire → colonne suivie + 1 (0 : pas encore rencontrée)
+    private int[] urlColumns = new int[64];
+    private final String[] urlNames;
+    private volatile int urlCount;
+
+    private final Ring seconds;
+    private final Ring minutes;
+    private final StampedLock lock = new StampedLock();
+
+    public TimeSeriesStore(KeyDictionary urls, int secondsRetention, int minutesRetention, int maxUrls) {
+        this.urlDictionary = urls;
+        this.maxUrls = maxUrls;
+        // Dernière colonne réservée aux URLs au-delà de maxUrls
+        int columns = FIXED_COLUMNS + maxUrls + 1;
+        this.urlNames = new String[maxUrls + 1];
+        this.urlNames[maxUrls] = KeyDictionary.OTHER;
+        this.seconds = new Ring(1, secondsRetention, columns);
+        this.minutes = new Ring(60, minutesRetention, columns);
+    }
+
+    /** Ajoute des compteurs au bucket de la seconde {@code epochSecond} (secondes epoch). */
+    public void record(long epochSecond, StatusCounts window) {
+        if (isFuture(epochSecond)) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            add(seconds, epochSecond, window);
+            add(minutes, epochSecond, window);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Verse des secondes rejouées ({@code epochSecond → compteurs}) dans chaque anneau, seulement là où leur bucket
+     * est absent : une seconde ou une minute déjà alimentée par le service n'est pas comptée deux fois.
+     * Renvoie le nombre de secondes versées dans au moins un anneau.
+     */
+    public int recordIfAbsent(Map<Long, StatusCounts> counts) {
+        long stamp = lock.writeLock();
+        try {
+            //Absences relevées avant toute écriture : les secondes d'une même minute la créent l'une après l'autre
+            Set<Long> absentSeconds = new HashSet<>();
+            Set<Long> absentMinutes = new HashSet<>();
+            for (long epochSecond : counts.keySet()) {
+                if (isFuture(epochSecond)) {
+                    continue;
+                }
+                if (seconds.slotIfPresent(seconds.bucket(epochSecond)) < 0) {
+                    absentSeconds.add(epochSecond);
+                }
+                if (minutes.slotIfPresent(minutes.bucket(epochSecond)) < 0) {
+                    absentMinutes.add(minutes.bucket(epochSecond));
+                }
+            }
+            int written = 0;
+            for (Map.Entry<Long, StatusCounts> entry : counts.entrySet()) {
+                long epochSecond = entry.getKey();
+                if (isFuture(epochSecond)) {
+                    continue;
+                }
+                boolean second = absentSeconds.contains(epochSecond) && add(seconds, epochSecond, entry.getValue());
+                boolean minute = absentMinutes.contains(minutes.bucket(epochSecond)) && add(minutes, epochSecond, entry.getValue());
+                if (second || minute) {
+                    written++;
+                }
+            }
+            return written;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Seconde trop loin dans le futur : refusée, elle ferait avancer {@code newest} (la résolution seconde ne serait plus
+     * choisie) et occuperait un slot où les buckets réels suivants seraient pris pour trop anciens.
+     */
+    private static boolean isFuture(long epochSecond) {
+        return IsoTimestamps.isFuture(epochSecond * 1000, System.currentTimeMillis());
+    }
+
+    /** Ajoute {@code window} au bucket de {@code ring} ; {@code false} si la seconde est plus ancienne que sa rétention. */
+    private boolean add(Ring ring, long epochSecond, StatusCounts window) {
+        if (!ring.add(epochSecond, TOTAL, window.totalLogs)) {
+            return false;
+        }
+        ring.add(epochSecond, SUCCESS_2XX, window.success2xx);
+        ring.add(epochSecond, ERRORS_4XX, window.error4xx);
+        ring.add(epochSecond, ERRORS_5XX, window.error5xx);
+        for (int id = 0, limit = window.urlLimit(); id < limit; id++) {
+            long count = window.count(id, StatusCounts.REQUESTS);
+            if (count != 0) {
+                ring.add(epochSecond, FIXED_COLUMNS + urlColumn(id), count);
+            }
+        }
+        return true;
+    }
+
+    private int urlColumn(int urlId) {
+        if (urlId >= urlColumns.length) {
+            urlColumns = Arrays.copyOf(urlColumns, Math.max(urlId + 1, urlColumns.length * 2));
+        }
+        int column = urlColumns[urlId];
+        if (column != 0) {
+            return column - 1;
+        }
+        if (urlCount == maxUrls) {
+            return maxUrls;
+        }
+        int newColumn = urlCount;
+        urlColumns[urlId] = newColumn + 1;
+        urlNames[newColumn] = urlDictionary.name(urlId);
+        urlCount = newColumn + 1;
+        return newColumn;
+    }
+
+    /**
+     * Renvoie les séries entre {@code from} et {@code to} (secondes epoch), agrégées par pas de {@code step} secondes.
+     * La résolution minute est utilisée si le pas est un multiple de 60 ou si {@code from} dépasse la rétention seconde.
+     * Un pas au-delà de la rétention ({@link #retentionSeconds()}) est refusé ({@link IllegalArgumentException}).
+     */
+    public Map<String, Object> query(long from, long to, long step) {
+        if (step < 1 || step > retentionSeconds()) {
+            throw new IllegalArgumentException("step doit être entre 1 et " + retentionSeconds() + " s : " + step);
+        }
+        long newest = seconds.newest;
+        boolean beyondSeconds = newest != Long.MIN_VALUE && from < newest - seconds.retentionSeconds();
+        boolean useMinutes = step % 60 == 0 || beyondSeconds;
+        Ring ring = useMinutes ? minutes : seconds;
+        step = Math.max(ring.resolution, step - step % ring.resolution);
+        long start = Math.floorDiv(from, step) * step;
+        long end = Math.floorDiv(to, step) * step;
+        if ((end - start) / step + 1 > MAX_POINTS) {
+            start = end - (MAX_POINTS - 1) * step;
+        }
+        int points = (int) Math.max(0, (end - start) / step + 1);
+
+        long stamp = lock.tryOptimisticRead();
+        Columns result = read(ring, start, step, points);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                result = read(ring, start, step, points);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("from", start);
+        response.put("to", end);
+        response.put("step", step);
+        response.put("resolution", useMinutes ? "minute" : "second");
+        long[] timestamps = new long[points];
+        for (int i = 0; i < points; i++) {
+            timestamps[i] = start + i * step;
+        }
+        response.put("timestamps", timestamps);
+        response.put("total", result.values[TOTAL]);
+        response.put("success2xx", result.values[SUCCESS_2XX]);
+        response.put("errors4xx", result.values[ERRORS_4XX]);
+        response.put("errors5xx", result.values[ERRORS_5XX]);
+        Map<String, long[]> urls = new LinkedHashMap<>();
+        for (int u = 0; u < result.urlNames.length; u++) {
+            if (result.urlNames[u] != null && result.nonZero[FIXED_COLUMNS + u]) {
+                urls.put(result.urlNames[u], result.values[FIXED_COLUMNS + u]);
+            }
+        }
+        response.put("urls", urls);
+        return response;
+    }
+
+    private Columns read(Ring ring, long start, long step, int points) {
+        int tracked = urlCount;
+        String[] names = new String[maxUrls + 1];
+        System.arraycopy(urlNames, 0, names, 0, tracked);
+        names[maxUrls] = KeyDictionary.OTHER;
+
+        int columns = ring.columns.length;
+        long[][] values = new long[columns][points];
+        boolean[] nonZero = new boolean[columns];
+        int capacity = ring.bucketStart.length;
+        for (int i = 0; i < points; i++) {
+            long pointStart = start + i * step;
+            if (step / ring.resolution <= capacity) {
+                for (long t = pointStart; t < pointStart + step; t += ring.resolution) {
+                    int slot = ring.slotIfPresent(t);
+                    if (slot >= 0) {
+                        addSlot(ring, slot, values, nonZero, i);
+                    }
+                }
+            } else {
+                //Pas plus long que l'anneau : chaque slot est visité une fois, jamais step / resolution fois
+                for (int slot = 0; slot < capacity; slot++) {
+                    long bucket = ring.bucketStart[slot];
+                    if (bucket != Long.MIN_VALUE && bucket >= pointStart && bucket < pointStart + step) {
+                        addSlot(ring, slot, values, nonZero, i);
+                    }
+                }
+            }
+        }
+        return new Columns(values, nonZero, names);
+    }
+
+    private static void addSlot(Ring ring, int slot, long[][] values, boolean[] nonZero, int point) {
+        for (int c = 0; c < values.length; c++) {
+            long v = ring.columns[c][slot];
+            if (v != 0) {
+                values[c][point] += v;
+                nonZero[c] = true;
+            }
+        }
+    }
+
+    /** Plus longue rétention (anneau minute), en secondes : au-delà, plus aucune donnée. */
+    public long retentionSeconds() {
+        return minutes.retentionSeconds();
+    }
+
+    /** Mémoire occupée par les colonnes des deux anneaux, en octets. */
+    public long memoryBytes() {
+        return seconds.memoryBytes() + minutes.memoryBytes();
+    }
+
+    private record Columns(long[][] values, boolean[] nonZero, String[] urlNames) {
+    }
+
+    /** Anneau de buckets d'une résolution donnée ; {@code bucketStart} détecte les slots périmés. */
+    private static final class Ring {
+        final int resolution;
+        final long[] bucketStart;
+        final long[][] columns;
+        volatile long newest = Long.MIN_VALUE;
+
+        Ring(int resolution, int capacity, int columnCount) {
+            this.resolution = resolution;
+            this.bucketStart = new long[capacity];
+            Arrays.fill(bucketStart, Long.MIN_VALUE);
+            this.columns = new long[columnCount][capacity];
+        }
+
+        /** Ajoute {@code delta} ; {@code false} si la seconde est plus ancienne que la rétention (rien n'est ajouté). */
+        boolean add(long epochSecond, int column, long delta) {
+            long bucket = bucket(epochSecond);
+            int slot = slot(bucket);
+            if (bucketStart[slot] > bucket) {
+                // Log en retard plus ancien que la rétention : le slot appartient déjà à un bucket plus récent
+                return false;
+            }
+            if (bucketStart[slot] != bucket) {
+                // Slot recyclé : on efface la valeur du tour précédent
+                for (long[] values : columns) {
+                    values[slot] = 0;
+                }
+                bucketStart[slot] = bucket;
+            }
+            columns[column][slot] += delta;
+            newest = Math.max(newest, bucket);
+            return true;
+        }
+
+        long bucket(long epochSecond) {
+            return epochSecond - Math.floorMod(epochSecond, resolution);
+        }
+
+        int slotIfPresent(long bucket) {
+            int slot = slot(bucket);
+            return bucketStart[slot] == bucket ? slot : -1;
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket / resolution, (long) bucketStart.length);
+        }
+
+        long retentionSeconds() {
+            return (long) bucketStart.length * resolution;
+        }
+
+        long memoryBytes() {
+            return (long) bucketStart.length * 8L * (columns.length + 1);
+        }
+    }
+}
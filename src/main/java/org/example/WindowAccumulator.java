@@ -0,0 +1,157 @@
+package org.example;
+
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compteurs d'une fenêtre (epoch) appartenant à un seul thread worker.
+ * Aucune synchronisation : l'objet n'est écrit que par son worker, et l'epoch closer ne le lit
+ * qu'après l'avoir retiré de son {@link WindowSlot}, une fois le worker sorti du batch en cours.
+ */
+public class WindowAccumulator extends StatusCounts {
+    static final LatencyHistogram[] NO_HISTOGRAMS = new LatencyHistogram[0];
+
+    // Latences de la fenêtre, indexées par identifiant d'URL et de service
+    LatencyHistogram[] urlLatency = NO_HISTOGRAMS;
+    LatencyHistogram[] serviceLatency = NO_HISTOGRAMS;
+
+    // Clés les plus fréquentes, en mémoire fixe quel que soit le nombre de valeurs distinctes
+    final HeavyHitters topUrls = new HeavyHitters();
+    final HeavyHitters top4xxUrls = new HeavyHitters();
+    final HeavyHitters top5xxUrls = new HeavyHitters();
+    final HeavyHitters topClientIps = new HeavyHitters();
+
+    // Mêmes compteurs ventilés par seconde de l'heure du log (event time), pour EventTimeWindows
+    final Map<Long, StatusCounts> eventSeconds = new HashMap<>();
+    private long lastEventSecond = Long.MIN_VALUE;
+    private StatusCounts lastEventCounts;
+
+    // Cellules du cube service × url × méthode × niveau × statut, par bucket de l'heure du log (voir RollupCube)
+    final Map<Long, CubeCells> rollups = new HashMap<>();
+    private long lastRollupBucket = Long.MIN_VALUE;
+    private CubeCells lastRollupCells;
+    // Tables vidées au reset, réutilisées par la fenêtre suivante sans repasser par les agrandissements
+    private final ArrayDeque<CubeCells> spareRollupCells = new ArrayDeque<>();
+
+    // Mode partition-parallèle : prochain offset de chaque partition, tous les logs d'avant étant dans cette fenêtre ou une précédente
+    final Map<TopicPartition, Long> offsets = new HashMap<>();
+
+    /** Enregistre la latence d'un log ; {@code serviceId} vaut -1 si le champ est absent. */
+    public void recordLatency(int urlId, int serviceId, long latencyMs) {
+        urlLatency = histogram(urlLatency, urlId);
+        urlLatency[urlId].record(latencyMs);
+        if (serviceId >= 0) {
+            serviceLatency = histogram(serviceLatency, serviceId);
+            serviceLatency[serviceId].record(latencyMs);
+        }
+    }
+
+    /** Compte l'URL (et l'IP client si présente) dans les top-K, selon la classe du statut. */
+    public void recordHeavyHitters(LogFields fields, int status) {
+        topUrls.add(fields, LogField.URL);
+        if (status >= 500 && status < 600) {
+            top5xxUrls.add(fields, LogField.URL);
+        } else if (status >= 400 && status < 500) {
+            top4xxUrls.add(fields, LogField.URL);
+        }
+        if (fields.has(LogField.CLIENT_IP)) {
+            topClientIps.add(fields, LogField.CLIENT_IP);
+        }
+    }
+
+    /** Range le log dans la seconde de son heure d'émission. */
+    public void recordEvent(long eventTimeMillis, int urlId, int status) {
+        long second = Math.floorDiv(eventTimeMillis, 1000);
+        // Les logs arrivent presque dans l'ordre : on évite la recherche (et le boxing) tant que la seconde ne change pas
+        if (second != lastEventSecond) {
+            lastEventSecond = second;
+            lastEventCounts = eventSeconds.computeIfAbsent(second, k -> new StatusCounts());
+        }
+        lastEventCounts.record(urlId, status);
+    }
+
+    /** Compte le log dans la cellule {@code cellKey} du bucket {@code bucketStart} ; {@code latencyMs} vaut -1 si absente. */
+    public void recordRollup(long bucketStart, long cellKey, long latencyMs) {
+        // Comme recordEvent : une seule recherche par changement de bucket
+        if (bucketStart != lastRollupBucket) {
+            lastRollupBucket = bucketStart;
+            lastRollupCells = rollups.computeIfAbsent(bucketStart, k -> newRollupCells());
+        }
+        lastRollupCells.add(cellKey, latencyMs);
+    }
+
+    private CubeCells newRollupCells() {
+        CubeCells cells = spareRollupCells.poll();
+        return cells != null ? cells : new CubeCells(RollupCube.MAX_CELLS);
+    }
+
+    /** Tous les logs de {@code partition} avant {@code nextOffset} sont comptés dans cette fenêtre ou une précédente. */
+    public void coverOffset(TopicPartition partition, long nextOffset) {
+        offsets.merge(partition, nextOffset, Math::max);
+    }
+
+    /** Vide la fenêtre pour la réutiliser à l'epoch suivante. */
+    @Override
+    public void reset() {
+        super.reset();
+        Arrays.fill(urlLatency, null);
+        Arrays.fill(serviceLatency, null);
+        topUrls.reset();
+        top4xxUrls.reset();
+        top5xxUrls.reset();
+        topClientIps.reset();
+        eventSeconds.clear();
+        lastEventSecond = Long.MIN_VALUE;
+        lastEventCounts = null;
+        for (CubeCells cells : rollups.values()) {
+            cells.reset();
+            spareRollupCells.push(cells);
+        }
+        rollups.clear();
+        lastRollupBucket = Long.MIN_VALUE;
+        lastRollupCells = null;
+        offsets.clear();
+    }
+
+    /** Ajoute les compteurs de {@code other} à cette fenêtre. */
+    public void merge(WindowAccumulator other) {
+        mergeCounts(other);
+        urlLatency = mergeHistograms(urlLatency, other.urlLatency);
+        serviceLatency = mergeHistograms(serviceLatency, other.serviceLatency);
+        topUrls.merge(other.topUrls);
+        top4xxUrls.merge(other.top4xxUrls);
+        top5xxUrls.merge(other.top5xxUrls);
+        topClientIps.merge(other.topClientIps);
+        other.eventSeconds.forEach((second, counts) ->
+                eventSeconds.computeIfAbsent(second, k -> new StatusCounts()).mergeCounts(counts));
+        other.rollups.forEach((bucket, cells) ->
+                rollups.computeIfAbsent(bucket, k -> newRollupCells()).merge(cells));
+        other.offsets.forEach(this::coverOffset);
+    }
+
+    /** Fusionne {@code source} dans {@code target} et renvoie le tableau résultant (agrandi si besoin). */
+    static LatencyHistogram[] mergeHistograms(LatencyHistogram[] target, LatencyHistogram[] source) {
+        for (int id = 0; id < source.length; id++) {
+            if (source[id] != null) {
+                target = histogram(target, id);
+                target[id].merge(source[id]);
+            }
+        }
+        return target;
+    }
+
+    /** Renvoie {@code histograms}, agrandi si besoin, avec un histogramme à l'indice {@code id}. */
+    private static LatencyHistogram[] histogram(LatencyHistogram[] histograms, int id) {
+        if (id >= histograms.length) {
+            histograms = Arrays.copyOf(histograms, Math.max(id + 1, histograms.length * 2));
+        }
+        if (histograms[id] == null) {
+            histograms[id] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+}
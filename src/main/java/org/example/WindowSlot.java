@@ -0,0 +1,57 @@
+package org.example;
+
+/**
+ * Double tampon de fenêtres d'un thread de traitement. Le thread écrit dans la fenêtre active entre
+ * {@link #begin()} et {@link #end()} ; l'epoch closer l'échange contre la fenêtre de réserve avec
+ * {@link #swap()}, attend la fin du batch éventuellement en cours, puis lit la fenêtre retirée,
+ * que plus personne ne modifie.
+ *
+ * L'écrivain n'attend jamais : begin()/end() se limitent à deux écritures volatiles et une lecture.
+ * Seul l'epoch closer attend, au plus la durée d'un batch.
+ */
+final class WindowSlot {
+    private volatile WindowAccumulator active = new WindowAccumulator();
+    // Fenêtre de réserve, manipulée uniquement par l'epoch closer
+    private WindowAccumulator spare = new WindowAccumulator();
+    // Impair pendant un batch, pair sinon ; écrit uniquement par le thread propriétaire
+    private volatile long writerSequence;
+
+    /** Début d'un batch : renvoie la fenêtre dans laquelle écrire jusqu'à {@link #end()}. */
+    WindowAccumulator begin() {
+        writerSequence++;
+        return active;
+    }
+
+    /** Fin du batch : la fenêtre obtenue par {@link #begin()} ne doit plus être modifiée. */
+    void end() {
+        writerSequence++;
+    }
+
+    /**
+     * Bascule l'écrivain sur la fenêtre de réserve et renvoie la fenêtre retirée, une fois l'écrivain sorti
+     * du batch qui l'utilisait. Un batch commencé après la bascule écrit forcément dans la nouvelle fenêtre :
+     * l'écriture de writerSequence précède la lecture de active, et la bascule précède la lecture de writerSequence.
+     */
+    WindowAccumulator swap() {
+        WindowAccumulator retired = active;
+        active = spare;
+        long sequence = writerSequence;
+        if ((sequence & 1) != 0) {
+            int spins = 0;
+            while (writerSequence == sequence) {
+                if (++spins < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+        }
+        return retired;
+    }
+
+    /** Remet à zéro la fenêtre retirée, une fois fusionnée, pour en faire la réserve de la prochaine bascule. */
+    void recycle(WindowAccumulator retired) {
+        retired.reset();
+        spare = retired;
+    }
+}